@@ -0,0 +1,388 @@
+package com.thomaz.bench;
+
+import com.thomaz.ProxyApplication;
+import com.thomaz.config.Crypto;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * End-to-end load test: boots the proxy against {@link SydleStub} and drives {@code /api/compress-pdf}
+ * with open-loop arrivals, timing each job from submit to its {@code complete} callback.
+ * <p>
+ * Ghostscript defaults to a script that copies its input after sleeping {@code fakeGsMsPerMb} per MB,
+ * which measures the proxy itself; {@code -Dgs=gs} measures what a dyno can actually compress.
+ * The stand-in only understands the process engine, so it forces {@code pdf.gs.mode=process}.
+ * <p>
+ * {@code mvn -f benchmarks/pom.xml compile exec:java -Dbench.main=com.thomaz.bench.EndToEndLoadTest -Drates=0.5,1,2}
+ * <p>
+ * Program arguments go to the proxy as Spring properties, e.g.
+ * {@code -Dexec.args="--pdf.gs.max-concurrent=2 --pdf.queue.capacity=20"}.
+ * <p>
+ * System properties: {@code rates} (arrivals per second, comma separated, default "0.5,1,2"),
+ * {@code durationSeconds} (per rate, default 60), {@code drainSeconds} (default 300),
+ * {@code arrival} ("poisson" or "constant", default "poisson"), {@code sizesMb} (default "1,10,50"),
+ * {@code corpus} (directory, default tmpdir/pdf-load-corpus), {@code tenants} (default 4),
+ * {@code gs} (binary, default the stand-in), {@code fakeGsMsPerMb} (default 200),
+ * {@code sydleLatencyMs} (default 50), {@code cache} (default false, so repeated files still run gs),
+ * {@code emptyUploadEvery} (answer every nth upload with an empty 200, default 0 for never).
+ * <p>
+ * Once every accepted job has been answered, each rate checks that the stub saw exactly one upload
+ * per completed job plus one per empty answer, and that the uploads carried bytes; the run fails
+ * with the list of violations after the last rate.
+ * <p>
+ * CPU is the whole host, since Ghostscript runs outside the JVM; RSS is this JVM, which also runs
+ * the client and the stub, plus every gs process it started.
+ */
+public final class EndToEndLoadTest {
+
+    private EndToEndLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        final List<Double> rates = Arrays.stream(System.getProperty("rates", "0.5,1,2").split(","))
+                .map(String::trim).map(Double::parseDouble).toList();
+        final long durationSeconds = Long.getLong("durationSeconds", 60);
+        final long drainSeconds = Long.getLong("drainSeconds", 300);
+        final boolean poisson = !"constant".equalsIgnoreCase(System.getProperty("arrival", "poisson"));
+        final int tenants = Integer.getInteger("tenants", 4);
+        final List<Long> sizes = Arrays.stream(System.getProperty("sizesMb", "1,10,50").split(","))
+                .map(String::trim).map(mb -> Long.parseLong(mb) * 1024 * 1024).toList();
+        final Path corpusDir = Path.of(System.getProperty("corpus", System.getProperty("java.io.tmpdir") + "/pdf-load-corpus"));
+
+        System.out.println("generating corpus in " + corpusDir);
+        final List<Path> corpus = SyntheticPdfs.noiseCorpus(corpusDir, sizes);
+        final Path work = Files.createTempDirectory("pdf-load-");
+        final String token = UUID.randomUUID().toString();
+        final int port = freePort();
+
+        final List<String> violations = new ArrayList<>();
+        try (SydleStub sydle = new SydleStub(Long.getLong("sydleLatencyMs", 50), Integer.getInteger("emptyUploadEvery", 0))) {
+            final List<String> springArgs = proxyArgs(port, token, work, sydle.baseUrl(), tenants, Boolean.getBoolean("cache"),
+                    Long.getLong("fakeGsMsPerMb", 200));
+            springArgs.addAll(Arrays.asList(args));
+
+            try (ConfigurableApplicationContext _ = SpringApplication.run(ProxyApplication.class, springArgs.toArray(String[]::new));
+                 HttpClient client = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build()) {
+                final URI endpoint = URI.create("http://127.0.0.1:" + port + "/api/compress-pdf");
+                System.out.printf("%8s %8s %8s %8s %8s %8s %8s %8s %8s %8s %10s %9s %9s %9s %9s %8s %8s %9s%n",
+                        "rate/s", "sent", "accepted", "rejected", "errors", "complete", "failed", "uploads", "empty",
+                        "up MB", "done/s", "p50 ms", "p95 ms", "p99 ms", "max ms", "cpu avg", "cpu max", "rss MB");
+                for (double rate : rates) {
+                    final Run run = new Run(client, endpoint, token, sydle, corpus, tenants);
+                    run.drive(rate, durationSeconds, poisson, drainSeconds);
+                    violations.addAll(run.report(rate));
+                }
+            }
+        }
+        if (!violations.isEmpty()) {
+            throw new IllegalStateException("callback checks failed:\n" + String.join("\n", violations));
+        }
+    }
+
+    private static final class Run {
+        private final HttpClient client;
+        private final URI endpoint;
+        private final String token;
+        private final SydleStub sydle;
+        private final List<Path> corpus;
+        private final int tenants;
+        private final Queue<Submission> submissions = new ConcurrentLinkedQueue<>();
+        private final Sampler sampler = new Sampler();
+        // the stub outlives a run, so its counters are read as deltas from here
+        private final long uploadsBefore;
+        private final long uploadedBytesBefore;
+        private final long emptyUploadsBefore;
+
+        private Run(HttpClient client, URI endpoint, String token, SydleStub sydle, List<Path> corpus, int tenants) {
+            this.client = client;
+            this.endpoint = endpoint;
+            this.token = token;
+            this.sydle = sydle;
+            this.corpus = corpus;
+            this.tenants = tenants;
+            this.uploadsBefore = sydle.uploads();
+            this.uploadedBytesBefore = sydle.uploadedBytes();
+            this.emptyUploadsBefore = sydle.emptyUploads();
+        }
+
+        private void drive(double rate, long durationSeconds, boolean poisson, long drainSeconds) throws InterruptedException {
+            final Random random = new Random(42);
+            final long start = System.nanoTime();
+            final long end = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+            sampler.start();
+            try {
+                // open loop: arrivals follow the schedule whether or not earlier jobs were answered
+                try (ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor()) {
+                    double next = start;
+                    for (int i = 0; System.nanoTime() < end; i++) {
+                        next += 1e9 * (poisson ? -Math.log(1 - random.nextDouble()) : 1) / rate;
+                        if (next >= end) {
+                            break;
+                        }
+                        LockSupport.parkNanos((long) next - System.nanoTime());
+                        final int n = i;
+                        senders.execute(() -> submit(n));
+                    }
+                }
+                final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(drainSeconds);
+                while (pending() > 0 && System.nanoTime() < deadline) {
+                    Thread.sleep(200);
+                }
+            } finally {
+                sampler.stop();
+            }
+        }
+
+        private void submit(int n) {
+            final Path file = corpus.get(n % corpus.size());
+            final String compressionId = "load-" + UUID.randomUUID();
+            final long submittedAt = System.nanoTime();
+            int status;
+            try {
+                final HttpRequest request = compressRequest(endpoint, token, compressionId, "load-" + n % tenants, file);
+                status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+            } catch (IOException _) {
+                status = -1;
+            } catch (InterruptedException _) {
+                Thread.currentThread().interrupt();
+                status = -1;
+            }
+            submissions.add(new Submission(compressionId, submittedAt, status));
+        }
+
+        // an empty upload answer is not tied to a compression id, so those jobs are subtracted by count
+        private long pending() {
+            return submissions.stream()
+                    .filter(s -> s.status() == 200 && sydle.completedAt(s.compressionId()) == null && sydle.failedAt(s.compressionId()) == null)
+                    .count() - (sydle.emptyUploads() - emptyUploadsBefore);
+        }
+
+        private List<String> report(double rate) {
+            final List<Submission> all = List.copyOf(submissions);
+            final long accepted = all.stream().filter(s -> s.status() == 200).count();
+            final long rejected = all.stream().filter(s -> s.status() == 429 || s.status() == 503).count();
+            final long failed = all.stream().filter(s -> s.status() == 200 && sydle.failedAt(s.compressionId()) != null).count();
+            final List<Long> latencies = new ArrayList<>();
+            long first = Long.MAX_VALUE;
+            long last = Long.MIN_VALUE;
+            for (Submission s : all) {
+                first = Math.min(first, s.submittedAt());
+                final Long done = sydle.completedAt(s.compressionId());
+                if (s.status() == 200 && done != null) {
+                    latencies.add(done - s.submittedAt());
+                    last = Math.max(last, done);
+                }
+            }
+            final long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+            final double seconds = sorted.length == 0 ? 0 : (last - first) / 1e9;
+            final long uploads = sydle.uploads() - uploadsBefore;
+            final long uploadedBytes = sydle.uploadedBytes() - uploadedBytesBefore;
+            final long empty = sydle.emptyUploads() - emptyUploadsBefore;
+            System.out.printf("%8.2f %8d %8d %7.1f%% %8d %8d %8d %8d %8d %8d %10.2f %9d %9d %9d %9d %7.0f%% %7.0f%% %9d%n",
+                    rate, all.size(), accepted, 100.0 * rejected / Math.max(1, all.size()),
+                    all.size() - accepted - rejected, sorted.length, failed, uploads, empty, uploadedBytes / (1024 * 1024),
+                    seconds == 0 ? 0 : sorted.length / seconds,
+                    percentileMs(sorted, 0.50), percentileMs(sorted, 0.95), percentileMs(sorted, 0.99),
+                    percentileMs(sorted, 1.0),
+                    100 * sampler.averageCpu(), 100 * sampler.peakCpu(), sampler.peakRssKb() / 1024);
+            final long unanswered = accepted - sorted.length - failed - empty;
+            if (unanswered > 0) {
+                System.out.printf("%8s %d accepted jobs had no callback before the drain timeout%n", "", unanswered);
+                // an upload still waiting for its complete callback would throw the counts off
+                return List.of();
+            }
+            final List<String> violations = new ArrayList<>();
+            // a failed compression never uploads; a retried or duplicated upload shows up as a surplus here
+            if (uploads != sorted.length + empty) {
+                violations.add("rate %.2f: %d uploads for %d completed jobs and %d empty answers"
+                        .formatted(rate, uploads, sorted.length, empty));
+            }
+            if (uploads > 0 && uploadedBytes == 0) {
+                violations.add("rate %.2f: %d uploads carried no bytes".formatted(rate, uploads));
+            }
+            return violations;
+        }
+    }
+
+    private record Submission(String compressionId, long submittedAt, int status) {
+    }
+
+    private static final class Sampler {
+        private final com.sun.management.OperatingSystemMXBean os =
+                (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("load-sampler").daemon(true).factory());
+        private double cpuTotal;
+        private double cpuPeak;
+        private int samples;
+        private long rssPeakKb = -1;
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private void start() {
+            timer.scheduleAtFixedRate(this::sample, 0, 500, TimeUnit.MILLISECONDS);
+        }
+
+        private void stop() {
+            timer.shutdownNow();
+        }
+
+        private void sample() {
+            lock.lock();
+            try {
+                final double cpu = os.getCpuLoad();
+                if (cpu >= 0) {
+                    cpuTotal += cpu;
+                    cpuPeak = Math.max(cpuPeak, cpu);
+                    samples++;
+                }
+                rssPeakKb = Math.max(rssPeakKb, ProcStats.treeRssKb());
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private double averageCpu() {
+            lock.lock();
+            try {
+                return samples == 0 ? 0 : cpuTotal / samples;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private double peakCpu() {
+            lock.lock();
+            try {
+                return cpuPeak;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private long peakRssKb() {
+            lock.lock();
+            try {
+                return rssPeakKb;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // the proxy's command line for a run against the stub; -Dgs picks a real binary instead of the stand-in
+    static List<String> proxyArgs(int port, String token, Path work, String sydleBaseUrl, int tenants, boolean cache,
+                                  long fakeGsMsPerMb) throws IOException {
+        final List<String> springArgs = new ArrayList<>(List.of(
+                "--server.port=" + port,
+                "--secrets.api-token=" + token,
+                "--secrets.sd_login=unused",
+                "--secrets.sd_password=unused",
+                "--rest.client.sd.create.draft.form.url=unused",
+                "--rest.client.sd.patch.form.url=unused",
+                "--callback.tenants-file=" + tenantsFile(work, tenants, sydleBaseUrl),
+                "--callback.http.http2=false",
+                "--callback.outbox.directory=" + work.resolve("outbox"),
+                "--callback.outbox.key-secret=" + Crypto.newBase64Secret256(),
+                "--pdf.cache.directory=" + work.resolve("cache"),
+                "--pdf.cache.enabled=" + cache
+        ));
+        final String gs = System.getProperty("gs");
+        if (gs == null) {
+            springArgs.add("--pdf.gs.path=" + fakeGs(work, fakeGsMsPerMb));
+            springArgs.add("--pdf.gs.mode=process");
+        } else {
+            springArgs.add("--pdf.gs.path=" + gs);
+        }
+        return springArgs;
+    }
+
+    static HttpRequest compressRequest(URI endpoint, String token, String compressionId, String organizationId, Path file)
+            throws IOException {
+        final String boundary = "load-" + UUID.randomUUID();
+        return HttpRequest.newBuilder(endpoint)
+                .timeout(Duration.ofMinutes(10))
+                .header("Authorization", "Bearer " + token)
+                .header("Compression-Id", compressionId)
+                .header("Organization-Id", organizationId)
+                .header("Decrypt-Key", "unused")
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.concat(
+                        HttpRequest.BodyPublishers.ofString("--" + boundary + "\r\n"
+                                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + file.getFileName() + "\"\r\n"
+                                + "Content-Type: application/pdf\r\n\r\n"),
+                        HttpRequest.BodyPublishers.ofFile(file),
+                        HttpRequest.BodyPublishers.ofString("\r\n--" + boundary + "--\r\n")))
+                .build();
+    }
+
+    static long percentileMs(long[] sortedNanos, double p) {
+        if (sortedNanos.length == 0) {
+            return 0;
+        }
+        final int index = (int) Math.ceil(p * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, index)] / 1_000_000;
+    }
+
+    private static Path tenantsFile(Path dir, int tenants, String callbackBaseUrl) throws IOException {
+        final StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < tenants; i++) {
+            json.append(i == 0 ? "" : ",")
+                    .append("{\"organizationId\":\"load-").append(i)
+                    .append("\",\"callbackBaseUrl\":\"").append(callbackBaseUrl).append("\"}");
+        }
+        return Files.writeString(dir.resolve("tenants.json"), json.append("]").toString());
+    }
+
+    // copies the last argument to -sOutputFile after sleeping in proportion to its size
+    private static Path fakeGs(Path dir, long msPerMb) throws IOException {
+        final Path script = dir.resolve("fake-gs");
+        Files.writeString(script, """
+                #!/bin/sh
+                out=""
+                in=""
+                for arg in "$@"; do
+                  case "$arg" in
+                    -sOutputFile=*) out="${arg#-sOutputFile=}" ;;
+                    -*) ;;
+                    *) in="$arg" ;;
+                  esac
+                done
+                size=$(wc -c < "$in")
+                sleep $(awk -v s="$size" 'BEGIN { printf "%%.3f", s / 1048576 * %d / 1000 }')
+                if [ "$out" = "-" ]; then cat "$in"; else cp "$in" "$out"; fi
+                """.formatted(msPerMb));
+        Files.setPosixFilePermissions(script, PosixFilePermissions.fromString("rwxr-xr-x"));
+        return script;
+    }
+
+    static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.thomaz.bench;
+
+import com.thomaz.config.PdfCallbackProperties;
+import com.thomaz.config.PdfCompressionProperties;
+import com.thomaz.form.QualityTier;
+import com.thomaz.service.CompressionJobQueue;
+import com.thomaz.service.ProxyMetrics;
+import com.thomaz.service.TenantRegistry;
+import com.thomaz.service.Util;
+import com.thomaz.service.compressor.GhostscriptCompressor;
+import com.thomaz.service.compressor.LosslessPdfCompressor;
+import com.thomaz.service.compressor.PdfCompressor;
+import com.thomaz.service.gs.PageRangeCompressor;
+import com.thomaz.service.gs.ProcessGhostscriptEngine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compares output size and time of each {@code PdfCompressor} on the same inputs.
+ * <p>
+ * {@code mvn -f benchmarks/pom.xml compile exec:java -Dbench.main=com.thomaz.bench.EngineComparisonBenchmark -Dexec.args="a.pdf b.pdf"}
+ * <p>
+ * System properties: {@code gs} (binary, default "gs"), {@code profile} (default "ebook"),
+ * {@code iterations} (default 3).
+ */
+public final class EngineComparisonBenchmark {
+
+    private EngineComparisonBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("usage: EngineComparisonBenchmark <pdf>...");
+            System.exit(2);
+        }
+        final int iterations = Integer.getInteger("iterations", 3);
+
+        final PdfCompressionProperties props = new PdfCompressionProperties();
+        props.getGs().setPath(System.getProperty("gs", "gs"));
+        props.getGs().setProfile(System.getProperty("profile", "ebook"));
+        props.getGs().setTimeoutSeconds(3600);
+        props.getSplit().setEnabled(false);
+
+        // never started: no workers take jobs, so every split part after the first runs on a lent slot
+        final TenantRegistry tenants = new TenantRegistry(new PdfCallbackProperties(), JsonMapper.builder().build());
+        final CompressionJobQueue slots = new CompressionJobQueue(props, tenants,
+                new ProxyMetrics(new SimpleMeterRegistry(), tenants), false);
+        final PageRangeCompressor splitter = new PageRangeCompressor(props, slots);
+        final GhostscriptCompressor ghostscript = new GhostscriptCompressor(props, new ProcessGhostscriptEngine(props.getGs()), splitter);
+        final List<PdfCompressor> compressors = List.of(ghostscript, new LosslessPdfCompressor());
+
+        System.out.printf("%-40s %-12s %12s %12s %8s %10s%n", "file", "engine", "input", "output", "ratio", "median ms");
+        try {
+            for (String arg : args) {
+                final Path in = Path.of(arg);
+                final long inputBytes = Files.size(in);
+                for (PdfCompressor compressor : compressors) {
+                    final Path out = Files.createTempFile("bench-out-", ".pdf");
+                    try {
+                        final long[] ms = new long[iterations];
+                        for (int i = 0; i < iterations; i++) {
+                            final long start = System.nanoTime();
+                            compressor.compress(in, out, QualityTier.FULL);
+                            ms[i] = (System.nanoTime() - start) / 1_000_000;
+                        }
+                        final long outputBytes = Files.size(out);
+                        System.out.printf("%-40s %-12s %12d %12d %7.1f%% %10d%n",
+                                in.getFileName(), compressor.name(), inputBytes, outputBytes,
+                                100.0 * outputBytes / Math.max(1, inputBytes), median(ms));
+                    } finally {
+                        Util.safeDelete(out);
+                    }
+                }
+            }
+        } finally {
+            splitter.stop();
+        }
+    }
+
+    private static long median(long[] values) {
+        final long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,306 @@
+package com.thomaz.bench;
+
+import com.thomaz.form.QualityTier;
+import com.thomaz.service.PdfCompressionService;
+import com.thomaz.service.Util;
+import com.thomaz.service.gs.GsSettings;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Sweeps Ghostscript settings over a corpus and reports which ones are Pareto-optimal in output
+ * ratio, time and fidelity, per document category and overall, with the current default marked.
+ * <p>
+ * Without arguments it generates one document per {@link SyntheticPdfs.Kind}; arguments add PDFs,
+ * and a directory argument adds every PDF in it under the directory's name as category.
+ * <p>
+ * {@code mvn -f benchmarks/pom.xml compile exec:java -Dbench.main=com.thomaz.bench.GsParameterSweep -Dexec.args="scans/ contracts/"}
+ * <p>
+ * System properties: {@code gs} (binary, default "gs"), {@code profiles} (default "screen,ebook,printer"),
+ * {@code dpis} (default "72,100,125,150,200"), {@code monoDpis} (default "220"),
+ * {@code downsample} (default "/Bicubic,/Average"), {@code compat} (CompatibilityLevel, default "1.4,1.7"),
+ * {@code iterations} (default 1), {@code timeoutSeconds} (default 600), {@code qualityPages} (default 2),
+ * {@code corpus} (generated corpus directory, default tmpdir/pdf-sweep-corpus),
+ * {@code report} (default "benchmarks/target/gs-sweep").
+ * <p>
+ * Fidelity is the PSNR of the first {@code qualityPages} pages rendered in grey at 72 dpi against the input.
+ * Peak RSS is the gs process's VmHWM, polled every 20 ms, so growth in its last moments can be missed.
+ */
+public final class GsParameterSweep {
+
+    private GsParameterSweep() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        final String gs = System.getProperty("gs", "gs");
+        final int iterations = Integer.getInteger("iterations", 1);
+        final long timeoutSeconds = Long.getLong("timeoutSeconds", 600);
+        final int qualityPages = Integer.getInteger("qualityPages", 2);
+        final Path reportDir = Files.createDirectories(Path.of(System.getProperty("report", "benchmarks/target/gs-sweep")));
+
+        final Map<Path, String> corpus = corpus(args);
+        // what buildGsCommand produces for a full-quality job under the same GS_PROFILE as the app
+        final Candidate current = new Candidate(PdfCompressionService.settingsFor(
+                PdfCompressionService.normalizeProfile(System.getenv("GS_PROFILE")), QualityTier.FULL), "1.4");
+        final List<Candidate> candidates = candidates();
+        if (!candidates.contains(current)) {
+            candidates.add(current);
+        }
+        System.out.printf("%d files x %d settings x %d iterations%n", corpus.size(), candidates.size(), iterations);
+
+        final List<Measurement> measurements = new ArrayList<>();
+        final Path out = Files.createTempFile("sweep-out-", ".pdf");
+        try (PrintWriter csv = new PrintWriter(Files.newBufferedWriter(reportDir.resolve("results.csv")))) {
+            csv.println("category,file,settings,input_bytes,output_bytes,ratio,median_ms,peak_rss_kb,psnr_db");
+            for (Map.Entry<Path, String> file : corpus.entrySet()) {
+                final Path in = file.getKey();
+                final List<BufferedImage> reference = render(in, qualityPages);
+                for (Candidate candidate : candidates) {
+                    final long[] ms = new long[iterations];
+                    long peakKb = -1;
+                    boolean failed = false;
+                    for (int i = 0; i < iterations && !failed; i++) {
+                        final long start = System.nanoTime();
+                        final long kb = run(gs, candidate.switches(), in, out, timeoutSeconds);
+                        ms[i] = (System.nanoTime() - start) / 1_000_000;
+                        failed = kb == Long.MIN_VALUE;
+                        peakKb = Math.max(peakKb, kb);
+                    }
+                    if (failed) {
+                        System.out.printf("%-28s %-44s failed%n", in.getFileName(), candidate.label());
+                        continue;
+                    }
+                    final Measurement m = new Measurement(file.getValue(), in.getFileName().toString(), candidate,
+                            Files.size(in), Files.size(out), median(ms), peakKb, psnr(reference, render(out, qualityPages)));
+                    measurements.add(m);
+                    csv.printf("%s,%s,%s,%d,%d,%.4f,%d,%d,%.2f%n", m.category(), m.file(), candidate.label(),
+                            m.inputBytes(), m.outputBytes(), m.ratio(), m.ms(), m.peakRssKb(), m.psnr());
+                    System.out.printf("%-28s %-44s %6.1f%% %8d ms %7d MB %6.1f dB%n", m.file(), candidate.label(),
+                            100 * m.ratio(), m.ms(), m.peakRssKb() / 1024, m.psnr());
+                }
+            }
+        } finally {
+            Util.safeDelete(out);
+        }
+
+        final Map<String, List<Measurement>> groups = new TreeMap<>();
+        for (Measurement m : measurements) {
+            groups.computeIfAbsent(m.category(), _ -> new ArrayList<>()).add(m);
+        }
+        groups.put("all", measurements);
+
+        try (PrintWriter md = new PrintWriter(Files.newBufferedWriter(reportDir.resolve("pareto.md")))) {
+            md.println("# Ghostscript settings sweep");
+            md.println();
+            md.println("Ratio is the geometric mean of output/input, time the sum of median run times, fidelity the");
+            md.println("lowest PSNR over the group. `*` marks Pareto-optimal settings (no other setting is at least as");
+            md.println("good on ratio, time and fidelity and better on one); `current` is what `buildGsCommand` uses today.");
+            for (Map.Entry<String, List<Measurement>> group : groups.entrySet()) {
+                final List<Aggregate> aggregates = aggregate(group.getValue());
+                final List<Aggregate> front = aggregates.stream().filter(a -> isParetoOptimal(a, aggregates)).toList();
+                md.println();
+                md.println("## " + group.getKey());
+                md.println();
+                md.println("| | settings | ratio | time ms | peak RSS MB | min PSNR dB |");
+                md.println("|---|---|---:|---:|---:|---:|");
+                System.out.println();
+                System.out.println("== " + group.getKey() + " (" + front.size() + " Pareto-optimal of " + aggregates.size() + ")");
+                for (Aggregate a : aggregates) {
+                    final boolean optimal = front.contains(a);
+                    final boolean isCurrent = a.candidate().equals(current);
+                    final String mark = (optimal ? "*" : "") + (isCurrent ? " current" : "");
+                    md.printf("| %s | `%s` | %.1f%% | %d | %d | %.1f |%n", mark.trim(), a.candidate().label(),
+                            100 * a.ratio(), a.ms(), a.peakRssKb() / 1024, a.minPsnr());
+                    if (optimal || isCurrent) {
+                        System.out.printf("%-9s %-44s %6.1f%% %9d ms %7d MB %6.1f dB%n", mark.trim(), a.candidate().label(),
+                                100 * a.ratio(), a.ms(), a.peakRssKb() / 1024, a.minPsnr());
+                    }
+                }
+            }
+        }
+        System.out.println();
+        System.out.println("wrote " + reportDir.resolve("results.csv") + " and " + reportDir.resolve("pareto.md"));
+    }
+
+    private static Map<Path, String> corpus(String[] args) throws IOException {
+        final Map<Path, String> corpus = new LinkedHashMap<>();
+        if (args.length == 0) {
+            final Path dir = Path.of(System.getProperty("corpus", System.getProperty("java.io.tmpdir") + "/pdf-sweep-corpus"));
+            System.out.println("generating corpus in " + dir);
+            for (Path pdf : SyntheticPdfs.representativeCorpus(dir)) {
+                corpus.put(pdf, pdf.getFileName().toString().replace(".pdf", ""));
+            }
+            return corpus;
+        }
+        for (String arg : args) {
+            final Path path = Path.of(arg);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> files = Files.list(path)) {
+                    files.filter(p -> p.getFileName().toString().toLowerCase().endsWith(".pdf")).sorted()
+                            .forEach(p -> corpus.put(p, path.getFileName().toString()));
+                }
+            } else {
+                corpus.put(path, "files");
+            }
+        }
+        return corpus;
+    }
+
+    private static List<Candidate> candidates() {
+        final List<Candidate> candidates = new ArrayList<>();
+        for (String compat : list("compat", "1.4,1.7")) {
+            for (String profile : list("profiles", "screen,ebook,printer")) {
+                for (String dpi : list("dpis", "72,100,125,150,200")) {
+                    for (String mono : list("monoDpis", "220")) {
+                        for (String downsample : list("downsample", "/Bicubic,/Average")) {
+                            candidates.add(new Candidate(new GsSettings(profile, Integer.parseInt(dpi), Integer.parseInt(mono),
+                                    downsample, true), compat));
+                        }
+                    }
+                }
+            }
+        }
+        return candidates;
+    }
+
+    // returns the peak RSS in kB, or Long.MIN_VALUE when gs failed or timed out
+    private static long run(String gs, List<String> switches, Path in, Path out, long timeoutSeconds)
+            throws IOException, InterruptedException {
+        final List<String> cmd = new ArrayList<>();
+        cmd.add(gs);
+        cmd.addAll(switches);
+        cmd.addAll(List.of("-dNOPAUSE", "-dBATCH", "-dSAFER", "-dQUIET", "-sOutputFile=" + out.toAbsolutePath(), in.toAbsolutePath().toString()));
+        final Process process = new ProcessBuilder(cmd)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        long peakKb = -1;
+        while (!process.waitFor(20, TimeUnit.MILLISECONDS)) {
+            peakKb = Math.max(peakKb, ProcStats.peakRssKb(process.pid()));
+            if (System.nanoTime() > deadline) {
+                process.destroyForcibly();
+                return Long.MIN_VALUE;
+            }
+        }
+        return process.exitValue() == 0 ? peakKb : Long.MIN_VALUE;
+    }
+
+    private static List<BufferedImage> render(Path pdf, int pages) throws IOException {
+        try (PDDocument document = Loader.loadPDF(pdf.toFile())) {
+            final PDFRenderer renderer = new PDFRenderer(document);
+            final List<BufferedImage> images = new ArrayList<>();
+            for (int i = 0; i < Math.min(pages, document.getNumberOfPages()); i++) {
+                images.add(renderer.renderImageWithDPI(i, 72, ImageType.GRAY));
+            }
+            return images;
+        }
+    }
+
+    // 99 dB stands for identical renders
+    private static double psnr(List<BufferedImage> reference, List<BufferedImage> candidate) {
+        double squaredError = 0;
+        long pixels = 0;
+        for (int i = 0; i < Math.min(reference.size(), candidate.size()); i++) {
+            final BufferedImage a = reference.get(i);
+            final BufferedImage b = candidate.get(i);
+            final int width = Math.min(a.getWidth(), b.getWidth());
+            final int height = Math.min(a.getHeight(), b.getHeight());
+            final int[] rowA = new int[width];
+            final int[] rowB = new int[width];
+            for (int y = 0; y < height; y++) {
+                a.getRaster().getSamples(0, y, width, 1, 0, rowA);
+                b.getRaster().getSamples(0, y, width, 1, 0, rowB);
+                for (int x = 0; x < width; x++) {
+                    final int d = rowA[x] - rowB[x];
+                    squaredError += d * d;
+                }
+            }
+            pixels += (long) width * height;
+        }
+        if (pixels == 0) {
+            return 0;
+        }
+        final double mse = squaredError / pixels;
+        return mse == 0 ? 99 : Math.min(99, 10 * Math.log10(255.0 * 255.0 / mse));
+    }
+
+    private static List<Aggregate> aggregate(List<Measurement> measurements) {
+        final Map<Candidate, List<Measurement>> byCandidate = new LinkedHashMap<>();
+        for (Measurement m : measurements) {
+            byCandidate.computeIfAbsent(m.candidate(), _ -> new ArrayList<>()).add(m);
+        }
+        return byCandidate.entrySet().stream()
+                .map(e -> new Aggregate(e.getKey(),
+                        Math.exp(e.getValue().stream().mapToDouble(m -> Math.log(Math.max(1e-6, m.ratio()))).average().orElse(0)),
+                        e.getValue().stream().mapToLong(Measurement::ms).sum(),
+                        e.getValue().stream().mapToLong(Measurement::peakRssKb).max().orElse(-1),
+                        e.getValue().stream().mapToDouble(Measurement::psnr).min().orElse(0)))
+                .sorted(Comparator.comparingDouble(Aggregate::ratio))
+                .toList();
+    }
+
+    private static boolean isParetoOptimal(Aggregate a, List<Aggregate> all) {
+        for (Aggregate b : all) {
+            final boolean noWorse = b.ratio() <= a.ratio() && b.ms() <= a.ms() && b.minPsnr() >= a.minPsnr();
+            final boolean better = b.ratio() < a.ratio() || b.ms() < a.ms() || b.minPsnr() > a.minPsnr();
+            if (b != a && noWorse && better) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<String> list(String property, String defaults) {
+        return Arrays.stream(System.getProperty(property, defaults).split(",")).map(String::trim).toList();
+    }
+
+    private static long median(long[] values) {
+        final long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    // GsSettings pins CompatibilityLevel 1.4; 1.5+ lets pdfwrite use object and xref streams
+    private record Candidate(GsSettings settings, String compatibilityLevel) {
+
+        private List<String> switches() {
+            return settings.switches().stream()
+                    .map(s -> s.startsWith("-dCompatibilityLevel=") ? "-dCompatibilityLevel=" + compatibilityLevel : s)
+                    .toList();
+        }
+
+        private String label() {
+            return "%s %ddpi mono%d %s %s".formatted(settings.profile(), settings.imageDpi(), settings.monoDpi(),
+                    settings.downsampleType().substring(1), compatibilityLevel);
+        }
+    }
+
+    private record Measurement(String category, String file, Candidate candidate, long inputBytes, long outputBytes,
+                               long ms, long peakRssKb, double psnr) {
+
+        private double ratio() {
+            return (double) outputBytes / Math.max(1, inputBytes);
+        }
+    }
+
+    private record Aggregate(Candidate candidate, double ratio, long ms, long peakRssKb, double minPsnr) {
+    }
+}
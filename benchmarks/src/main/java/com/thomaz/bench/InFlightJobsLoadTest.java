@@ -0,0 +1,168 @@
+package com.thomaz.bench;
+
+import com.thomaz.ProxyApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures how many compressed jobs can sit in the delivery stage at once: the 3 s minimum
+ * response delay followed by the callback upload.
+ * <p>
+ * Boots the proxy against {@link SydleStub} with an instant Ghostscript stand-in, posts each burst
+ * of jobs to {@code /api/compress-pdf} at once and samples how many accepted jobs are still waiting
+ * for their {@code complete} callback, together with the JVM's live thread count.
+ * <p>
+ * {@code mvn -f benchmarks/pom.xml compile exec:java -Dbench.main=com.thomaz.bench.InFlightJobsLoadTest}
+ * <p>
+ * Every burst runs once per mode, each against a freshly booted proxy, and the results are printed
+ * side by side: {@code platform} is the thread model before the switch
+ * ({@code spring.threads.virtual.enabled=false}), {@code virtual} the current default. The minimum
+ * response delay is a scheduled continuation in both, so the gap is what the thread model alone buys.
+ * <p>
+ * Program arguments go to the proxy as Spring properties, as in {@link EndToEndLoadTest}.
+ * <p>
+ * System properties: {@code jobs} (burst sizes, comma separated, default "100,1000"),
+ * {@code modes} (comma separated, default "platform,virtual"),
+ * {@code uploadMs} (stub latency per callback, default 300), {@code drainSeconds} (default 120),
+ * {@code sizeKb} (default 64).
+ */
+public final class InFlightJobsLoadTest {
+
+    private InFlightJobsLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        final List<Integer> bursts = Arrays.stream(System.getProperty("jobs", "100,1000").split(","))
+                .map(String::trim).map(Integer::parseInt).toList();
+        final List<String> modes = Arrays.stream(System.getProperty("modes", "platform,virtual").split(","))
+                .map(String::trim).toList();
+        final long drainSeconds = Long.getLong("drainSeconds", 120);
+        final Path work = Files.createTempDirectory("pdf-inflight-");
+        final List<Path> corpus = SyntheticPdfs.noiseCorpus(work.resolve("corpus"), List.of(Long.getLong("sizeKb", 64) * 1024));
+        final String token = UUID.randomUUID().toString();
+        final int maxBurst = bursts.stream().mapToInt(Integer::intValue).max().orElse(0);
+
+        final Map<String, List<Result>> results = new LinkedHashMap<>();
+        try (SydleStub sydle = new SydleStub(Long.getLong("uploadMs", 300), 0)) {
+            for (String mode : modes) {
+                final int port = EndToEndLoadTest.freePort();
+                final List<String> springArgs = new ArrayList<>(EndToEndLoadTest.proxyArgs(port, token, work, sydle.baseUrl(), 1, false, 0));
+                // admit the whole burst so the numbers show delivery, not queue rejections
+                springArgs.add("--pdf.queue.capacity=" + maxBurst);
+                // platform is the model before the switch: a pooled thread per request and per stage worker
+                springArgs.add("--spring.threads.virtual.enabled=" + switch (mode) {
+                    case "platform" -> false;
+                    case "virtual" -> true;
+                    default -> throw new IllegalArgumentException("unknown mode " + mode + ", expected platform or virtual");
+                });
+                springArgs.addAll(Arrays.asList(args));
+
+                try (ConfigurableApplicationContext _ = SpringApplication.run(ProxyApplication.class, springArgs.toArray(String[]::new));
+                     HttpClient client = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build()) {
+                    final URI endpoint = URI.create("http://127.0.0.1:" + port + "/api/compress-pdf");
+                    final List<Result> rows = new ArrayList<>();
+                    for (int jobs : bursts) {
+                        rows.add(burst(client, endpoint, token, sydle, corpus.getFirst(), jobs, drainSeconds));
+                    }
+                    results.put(mode, rows);
+                }
+            }
+        }
+
+        final StringBuilder header = new StringBuilder(String.format("%8s", "jobs"));
+        for (String mode : results.keySet()) {
+            header.append(String.format(" | %-8s %8s %8s %10s %9s %9s %9s",
+                    mode, "accepted", "complete", "peak out", "p50 ms", "max ms", "threads"));
+        }
+        System.out.println(header);
+        for (int i = 0; i < bursts.size(); i++) {
+            final StringBuilder row = new StringBuilder(String.format("%8d", bursts.get(i)));
+            for (List<Result> rows : results.values()) {
+                final Result r = rows.get(i);
+                row.append(String.format(" | %-8s %8d %8d %10d %9d %9d %9d",
+                        "", r.accepted(), r.completed(), r.peakOut(), r.p50Ms(), r.maxMs(), r.peakThreads()));
+            }
+            System.out.println(row);
+        }
+    }
+
+    private static Result burst(HttpClient client, URI endpoint, String token, SydleStub sydle, Path file, int jobs,
+                                long drainSeconds) throws InterruptedException {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        final int finishedBefore = sydle.finished();
+        final AtomicInteger accepted = new AtomicInteger();
+        final Queue<Submission> submissions = new ConcurrentLinkedQueue<>();
+
+        try (ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < jobs; i++) {
+                senders.execute(() -> {
+                    final String compressionId = "inflight-" + UUID.randomUUID();
+                    final long submittedAt = System.nanoTime();
+                    try {
+                        final int status = client.send(EndToEndLoadTest.compressRequest(endpoint, token, compressionId, "load-0", file),
+                                HttpResponse.BodyHandlers.discarding()).statusCode();
+                        if (status == 200) {
+                            accepted.incrementAndGet();
+                            submissions.add(new Submission(compressionId, submittedAt));
+                        }
+                    } catch (IOException _) {
+                        // counted as not accepted
+                    } catch (InterruptedException _) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+        }
+
+        int peakOut = 0;
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(drainSeconds);
+        int out;
+        do {
+            out = accepted.get() - (sydle.finished() - finishedBefore);
+            peakOut = Math.max(peakOut, out);
+            Thread.sleep(50);
+        } while (out > 0 && System.nanoTime() < deadline);
+
+        final long[] latencies = submissions.stream()
+                .map(s -> {
+                    final Long done = sydle.completedAt(s.compressionId());
+                    return done == null ? null : done - s.submittedAt();
+                })
+                .filter(Objects::nonNull)
+                .mapToLong(Long::longValue)
+                .sorted()
+                .toArray();
+        return new Result(accepted.get(), latencies.length, peakOut,
+                EndToEndLoadTest.percentileMs(latencies, 0.50), EndToEndLoadTest.percentileMs(latencies, 1.0),
+                threads.getPeakThreadCount());
+    }
+
+    private record Result(int accepted, int completed, int peakOut, long p50Ms, long maxMs, int peakThreads) {
+    }
+
+    private record Submission(String compressionId, long submittedAt) {
+    }
+}
@@ -0,0 +1,121 @@
+package com.thomaz.bench;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import org.jspecify.annotations.Nullable;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Compares a JMH JSON result with the checked-in baseline and exits non-zero when a benchmark got
+ * slower beyond both runs' error margins plus a tolerance, or allocates more per operation. A missing
+ * or empty baseline or result fails too, so the gate cannot pass by having nothing to compare.
+ * <p>
+ * {@code mvn -f benchmarks/pom.xml compile exec:exec@jmh}, then
+ * {@code mvn -f benchmarks/pom.xml exec:java -Dbench.main=com.thomaz.bench.JmhBaselineCheck}
+ * <p>
+ * To move the baseline, run JMH on the reference machine with
+ * {@code -Djmh.args="-prof gc -rf json -rff baseline/jmh-hotpath.json"} and commit the file
+ * together with the change that explains it.
+ * <p>
+ * System properties: {@code baseline} (default "benchmarks/baseline/jmh-hotpath.json"),
+ * {@code result} (default "benchmarks/target/jmh-result.json"), {@code tolerance} (percent, default 10),
+ * {@code allocTolerance} (percent, default 5).
+ */
+public final class JmhBaselineCheck {
+
+    private static final String ALLOC_NORM = "·gc.alloc.rate.norm";
+
+    private JmhBaselineCheck() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        final JsonMapper jsonMapper = JsonMapper.builder().build();
+        final Path baselinePath = Path.of(System.getProperty("baseline", "benchmarks/baseline/jmh-hotpath.json"));
+        final Path resultPath = Path.of(System.getProperty("result", "benchmarks/target/jmh-result.json"));
+        final Map<String, Result> baseline = read(jsonMapper, baselinePath);
+        final Map<String, Result> current = read(jsonMapper, resultPath);
+        if (baseline.isEmpty()) {
+            System.err.println("no baseline recorded in " + baselinePath + "; run JMH on the reference machine with"
+                    + " -Djmh.args=\"-prof gc -rf json -rff baseline/jmh-hotpath.json\" and commit the file");
+            System.exit(2);
+        }
+        if (current.isEmpty()) {
+            System.err.println("no JMH results in " + resultPath + "; run exec:exec@jmh first");
+            System.exit(2);
+        }
+        final double tolerance = Double.parseDouble(System.getProperty("tolerance", "10")) / 100;
+        final double allocTolerance = Double.parseDouble(System.getProperty("allocTolerance", "5")) / 100;
+
+        int regressions = 0;
+        System.out.printf("%-70s %14s %14s %8s %12s %12s  %s%n", "benchmark", "baseline", "current", "delta", "B/op before", "B/op now", "");
+        for (Map.Entry<String, Result> entry : current.entrySet()) {
+            final Result now = entry.getValue();
+            final Result before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("%-70s %14s %14s %8s %12s %12.0f  new%n", entry.getKey(), "-",
+                        format(now.primaryMetric()), "-", "-", now.allocated());
+                continue;
+            }
+            final double delta = now.primaryMetric().score() / before.primaryMetric().score() - 1;
+            final double margin = (error(before.primaryMetric()) + error(now.primaryMetric())) / before.primaryMetric().score();
+            final boolean slower = delta > margin + tolerance;
+            final boolean allocates = now.allocated() > before.allocated() * (1 + allocTolerance) + 1;
+            if (slower || allocates) {
+                regressions++;
+            }
+            System.out.printf("%-70s %14s %14s %+7.1f%% %12.0f %12.0f  %s%n", entry.getKey(),
+                    format(before.primaryMetric()), format(now.primaryMetric()), 100 * delta,
+                    before.allocated(), now.allocated(),
+                    slower && allocates ? "SLOWER, MORE ALLOCATION" : slower ? "SLOWER" : allocates ? "MORE ALLOCATION" : "");
+        }
+        baseline.keySet().stream().filter(k -> !current.containsKey(k))
+                .forEach(k -> System.out.printf("%-70s not run%n", k));
+
+        if (regressions > 0) {
+            System.err.println(regressions + " benchmark(s) regressed against the baseline");
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, Result> read(JsonMapper jsonMapper, Path path) throws Exception {
+        if (!Files.exists(path)) {
+            return Map.of();
+        }
+        return Arrays.stream(jsonMapper.readValue(Files.readString(path), Result[].class))
+                .collect(Collectors.toMap(Result::key, Function.identity(), (a, _) -> a, LinkedHashMap::new));
+    }
+
+    private static double error(Metric metric) {
+        return Double.isNaN(metric.scoreError()) ? 0 : metric.scoreError();
+    }
+
+    private static String format(Metric metric) {
+        return String.format("%.1f %s", metric.score(), metric.scoreUnit());
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private record Result(String benchmark, @Nullable Map<String, String> params, Metric primaryMetric,
+                          @Nullable Map<String, Metric> secondaryMetrics) {
+
+        private String key() {
+            return params == null || params.isEmpty() ? benchmark : benchmark + new TreeMap<>(params);
+        }
+
+        private double allocated() {
+            final Metric alloc = secondaryMetrics == null ? null : secondaryMetrics.get(ALLOC_NORM);
+            return alloc == null ? 0 : alloc.score();
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private record Metric(double score, double scoreError, String scoreUnit) {
+    }
+}
@@ -0,0 +1,46 @@
+package com.thomaz.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reads memory figures from {@code /proc}; every method returns -1 where that is unavailable.
+ */
+final class ProcStats {
+
+    private ProcStats() {
+    }
+
+    // resident set of this JVM plus every process it started, e.g. gs workers
+    static long treeRssKb() {
+        final long self = rssKb(ProcessHandle.current().pid());
+        if (self < 0) {
+            return -1;
+        }
+        return self + ProcessHandle.current().descendants()
+                .mapToLong(p -> Math.max(0, rssKb(p.pid())))
+                .sum();
+    }
+
+    static long rssKb(long pid) {
+        return statusKb(pid, "VmRSS:");
+    }
+
+    // high-water mark of the resident set, only readable while the process is alive
+    static long peakRssKb(long pid) {
+        return statusKb(pid, "VmHWM:");
+    }
+
+    private static long statusKb(long pid, String field) {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc", Long.toString(pid), "status"))) {
+                if (line.startsWith(field)) {
+                    return Long.parseLong(line.substring(field.length()).replace("kB", "").trim());
+                }
+            }
+        } catch (IOException | NumberFormatException _) {
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,113 @@
+package com.thomaz.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * Discrete-event simulation of the compression queue comparing FIFO with aged
+ * shortest-expected-job-first, the two {@code pdf.queue.policy} values.
+ * <p>
+ * Jobs arrive as a Poisson stream. 85% are small documents (0.3-3 s of Ghostscript) and 15% are
+ * large scans (20-120 s). The scheduler only sees a noisy estimate of each job's runtime
+ * (log-normal error), like the online cost model does.
+ * <p>
+ * {@code mvn -f benchmarks/pom.xml compile exec:java -Dbench.main=com.thomaz.bench.SchedulingSimulation}
+ * <p>
+ * System properties: {@code jobs} (default 20000), {@code workers} (default 2), {@code load} (utilisation,
+ * default 0.85), {@code aging} (seconds of estimate forgiven per second waited, default 0.2),
+ * {@code noise} (sigma of the log-normal estimate error, default 0.5), {@code seed} (default 42).
+ */
+public final class SchedulingSimulation {
+
+    private SchedulingSimulation() {
+    }
+
+    public static void main(String[] args) {
+        final int jobs = Integer.getInteger("jobs", 20_000);
+        final int workers = Integer.getInteger("workers", 2);
+        final double load = Double.parseDouble(System.getProperty("load", "0.85"));
+        final double aging = Double.parseDouble(System.getProperty("aging", "0.2"));
+        final double noise = Double.parseDouble(System.getProperty("noise", "0.5"));
+        final long seed = Long.getLong("seed", 42);
+
+        final List<Job> workload = workload(jobs, workers, load, noise, new Random(seed));
+
+        System.out.printf("%d jobs, %d workers, load %.2f, aging %.2f, estimate noise %.2f%n",
+                jobs, workers, load, aging, noise);
+        System.out.printf("%-6s %10s %10s %10s %14s %14s%n", "policy", "mean s", "p95 s", "p99 s", "small p95 s", "large p95 s");
+        report("fifo", workload, simulate(workload, workers, now -> Comparator.comparingLong(Job::id)));
+        report("sjf", workload, simulate(workload, workers, now -> Comparator
+                .comparingDouble((Job j) -> j.estimate() - aging * (now - j.arrival()))
+                .thenComparingLong(Job::id)));
+    }
+
+    private static List<Job> workload(int jobs, int workers, double load, double noise, Random random) {
+        final double meanService = 0.85 * 1.65 + 0.15 * 70;
+        final double arrivalRate = load * workers / meanService;
+        final List<Job> workload = new ArrayList<>(jobs);
+        double clock = 0;
+        for (int i = 0; i < jobs; i++) {
+            clock += -Math.log(1 - random.nextDouble()) / arrivalRate;
+            final boolean large = random.nextDouble() < 0.15;
+            final double service = large ? 20 + random.nextDouble() * 100 : 0.3 + random.nextDouble() * 2.7;
+            final double estimate = service * Math.exp(random.nextGaussian() * noise);
+            workload.add(new Job(i, clock, service, estimate, large));
+        }
+        return workload;
+    }
+
+    private static double[] simulate(List<Job> workload, int workers, Function<Double, Comparator<Job>> policy) {
+        final PriorityQueue<Double> freeAt = new PriorityQueue<>();
+        for (int i = 0; i < workers; i++) {
+            freeAt.add(0.0);
+        }
+        final List<Job> waiting = new ArrayList<>();
+        final double[] latency = new double[workload.size()];
+        int next = 0;
+        int done = 0;
+        while (done < workload.size()) {
+            final double now = waiting.isEmpty() && next < workload.size()
+                    ? Math.max(freeAt.peek(), workload.get(next).arrival())
+                    : freeAt.peek();
+            while (next < workload.size() && workload.get(next).arrival() <= now) {
+                waiting.add(workload.get(next++));
+            }
+            final Job job = waiting.stream().min(policy.apply(now)).orElseThrow();
+            waiting.remove(job);
+            freeAt.poll();
+            final double finish = now + job.service();
+            freeAt.add(finish);
+            latency[job.id()] = finish - job.arrival();
+            done++;
+        }
+        return latency;
+    }
+
+    private static void report(String policy, List<Job> workload, double[] latency) {
+        final double[] small = workload.stream().filter(j -> !j.large()).mapToDouble(j -> latency[j.id()]).toArray();
+        final double[] large = workload.stream().filter(Job::large).mapToDouble(j -> latency[j.id()]).toArray();
+        System.out.printf("%-6s %10.1f %10.1f %10.1f %14.1f %14.1f%n", policy,
+                Arrays.stream(latency).average().orElse(0),
+                percentile(latency, 0.95),
+                percentile(latency, 0.99),
+                percentile(small, 0.95),
+                percentile(large, 0.95));
+    }
+
+    private static double percentile(double[] values, double p) {
+        if (values.length == 0) {
+            return 0;
+        }
+        final double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    private record Job(int id, double arrival, double service, double estimate, boolean large) {
+    }
+}
@@ -0,0 +1,108 @@
+package com.thomaz.bench;
+
+import com.thomaz.config.PdfCallbackProperties;
+import com.thomaz.config.PdfCompressionProperties;
+import com.thomaz.service.CompressionJobQueue;
+import com.thomaz.service.PdfCompressionService;
+import com.thomaz.service.ProxyMetrics;
+import com.thomaz.service.TenantRegistry;
+import com.thomaz.service.Util;
+import com.thomaz.service.gs.PageRangeCompressor;
+import com.thomaz.service.gs.ProcessGhostscriptEngine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compares the single-process Ghostscript path with page-range splitting.
+ * <p>
+ * {@code mvn -f benchmarks/pom.xml compile exec:java -Dexec.args="big-scan.pdf other.pdf"}
+ * <p>
+ * System properties: {@code gs} (binary, default "gs"), {@code profile} (default "ebook"),
+ * {@code iterations} (default 3), {@code parallelism} (default available processors).
+ */
+public final class SplitCompressionBenchmark {
+
+    private SplitCompressionBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("usage: SplitCompressionBenchmark <pdf>...");
+            System.exit(2);
+        }
+        final int iterations = Integer.getInteger("iterations", 3);
+
+        final PdfCompressionProperties props = new PdfCompressionProperties();
+        props.getGs().setPath(System.getProperty("gs", "gs"));
+        props.getGs().setTimeoutSeconds(3600);
+        props.getSplit().setEnabled(true);
+        props.getSplit().setMinBytes(0);
+        props.getSplit().setMinPages(2);
+        props.getSplit().setMinPagesPerPart(1);
+        final int parallelism = Integer.getInteger("parallelism", 0);
+        props.getSplit().setParallelism(parallelism);
+        // one gs slot per part, as on an otherwise idle server
+        props.getGs().setMaxConcurrent(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+
+        final ProcessGhostscriptEngine single = new ProcessGhostscriptEngine(props.getGs());
+        // never started: no workers take jobs, so every split part after the first runs on a lent slot
+        final TenantRegistry tenants = new TenantRegistry(new PdfCallbackProperties(), JsonMapper.builder().build());
+        final CompressionJobQueue slots = new CompressionJobQueue(props, tenants,
+                new ProxyMetrics(new SimpleMeterRegistry(), tenants), false);
+        final PageRangeCompressor splitter = new PageRangeCompressor(props, slots);
+        final List<String> switches = PdfCompressionService.buildGsCommand(
+                PdfCompressionService.normalizeProfile(System.getProperty("profile", "ebook")));
+
+        System.out.printf("%-40s %6s %12s %6s %12s %12s %12s %12s %8s%n",
+                "file", "pages", "input", "parts", "single ms", "split ms", "single out", "split out", "speedup");
+        try {
+            for (String arg : args) {
+                final Path in = Path.of(arg);
+                final PageRangeCompressor.Plan plan = splitter.plan(in);
+                final Path out = Files.createTempFile("bench-out-", ".pdf");
+                try {
+                    final long[] singleMs = new long[iterations];
+                    final long[] splitMs = new long[iterations];
+                    long singleBytes = 0;
+                    long splitBytes = 0;
+                    for (int i = 0; i < iterations; i++) {
+                        long start = System.nanoTime();
+                        single.run(switches, in, out);
+                        singleMs[i] = (System.nanoTime() - start) / 1_000_000;
+                        singleBytes = Files.size(out);
+
+                        start = System.nanoTime();
+                        if (plan.split()) {
+                            splitter.compress(switches, in, out, plan);
+                        } else {
+                            single.run(switches, in, out);
+                        }
+                        splitMs[i] = (System.nanoTime() - start) / 1_000_000;
+                        splitBytes = Files.size(out);
+                    }
+                    final long singleMedian = median(singleMs);
+                    final long splitMedian = median(splitMs);
+                    System.out.printf("%-40s %6d %12d %6d %12d %12d %12d %12d %7.2fx%n",
+                            in.getFileName(), plan.pages(), Files.size(in), plan.parts(),
+                            singleMedian, splitMedian, singleBytes, splitBytes,
+                            (double) singleMedian / Math.max(1, splitMedian));
+                } finally {
+                    Util.safeDelete(out);
+                }
+            }
+        } finally {
+            splitter.stop();
+        }
+    }
+
+    private static long median(long[] values) {
+        final long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
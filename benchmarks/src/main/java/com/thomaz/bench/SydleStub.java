@@ -0,0 +1,120 @@
+package com.thomaz.bench;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stands in for the Sydle callback API: {@code _upload} drains the PDF and answers with a
+ * {@code FileResponse}, {@code complete} and {@code setToError} record when each compression
+ * finished. Every call waits {@code latencyMs} first, to model the network.
+ * <p>
+ * With {@code emptyUploadEvery} above zero, every nth upload is answered with a 200 and no body,
+ * which the proxy must dead-letter instead of completing; such a job gets no further callback.
+ */
+final class SydleStub implements AutoCloseable {
+
+    private final HttpServer server;
+    private final long latencyMs;
+    private final int emptyUploadEvery;
+    private final Map<String, Long> completed = new ConcurrentHashMap<>();
+    private final Map<String, Long> failed = new ConcurrentHashMap<>();
+    private final AtomicLong uploads = new AtomicLong();
+    private final AtomicLong uploadedBytes = new AtomicLong();
+    private final AtomicLong emptyUploads = new AtomicLong();
+
+    SydleStub(long latencyMs, int emptyUploadEvery) throws IOException {
+        this.latencyMs = latencyMs;
+        this.emptyUploadEvery = emptyUploadEvery;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    // nanoTime at which the completion callback arrived, null while the job is still out
+    @Nullable Long completedAt(String compressionId) {
+        return completed.get(compressionId);
+    }
+
+    @Nullable Long failedAt(String compressionId) {
+        return failed.get(compressionId);
+    }
+
+    // jobs whose last callback has arrived, counting those cut short by an empty upload answer
+    int finished() {
+        return completed.size() + failed.size() + (int) emptyUploads.get();
+    }
+
+    long uploads() {
+        return uploads.get();
+    }
+
+    long uploadedBytes() {
+        return uploadedBytes.get();
+    }
+
+    long emptyUploads() {
+        return emptyUploads.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange; InputStream body = exchange.getRequestBody()) {
+            final long bytes = body.transferTo(OutputStream.nullOutputStream());
+            if (latencyMs > 0) {
+                Thread.sleep(latencyMs);
+            }
+            final String path = exchange.getRequestURI().getPath();
+            final String id = path.substring(path.lastIndexOf('/') + 1);
+            if (path.endsWith("/_upload")) {
+                final long n = uploads.incrementAndGet();
+                uploadedBytes.addAndGet(bytes);
+                if (emptyUploadEvery > 0 && n % emptyUploadEvery == 0) {
+                    emptyUploads.incrementAndGet();
+                    exchange.sendResponseHeaders(200, -1);
+                    return;
+                }
+                respond(exchange, 200, "{\"_id\":\"" + UUID.randomUUID() + "\",\"hash\":\"\",\"contentType\":\"application/pdf\",\"length\":" + bytes + "}");
+            } else if (path.contains("/complete/")) {
+                completed.putIfAbsent(id, System.nanoTime());
+                respond(exchange, 200, "{}");
+            } else if (path.contains("/setToError/")) {
+                failed.putIfAbsent(id, System.nanoTime());
+                respond(exchange, 200, "{}");
+            } else {
+                respond(exchange, 404, "{}");
+            }
+        } catch (InterruptedException _) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        final byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.thomaz.bench;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.pdfbox.pdmodel.graphics.image.JPEGFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.jspecify.annotations.Nullable;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generates PDFs for the benchmarks, so runs are reproducible without shipping sample files.
+ */
+final class SyntheticPdfs {
+
+    private static final int MAX_PAGE_BYTES = 4 * 1024 * 1024;
+    private static final float A4_WIDTH = PDRectangle.A4.getWidth();
+    private static final float A4_HEIGHT = PDRectangle.A4.getHeight();
+    private static final String[] WORDS = {
+            "contrato", "cláusula", "parte", "prazo", "valor", "pagamento", "rescisão", "multa", "anexo",
+            "assinatura", "vigência", "objeto", "serviço", "entrega", "garantia", "foro", "data", "total"
+    };
+
+    private SyntheticPdfs() {
+    }
+
+    enum Kind {
+        // 200 dpi grayscale page photos, JPEG encoded as scanners do
+        SCANNED,
+        // text and line art only
+        VECTOR,
+        // text pages, about half of them with a photo
+        MIXED,
+        // full-page 300 dpi photos, stored losslessly
+        IMAGE_HEAVY,
+        // text with small, low-quality JPEGs: little left for Ghostscript to take
+        ALREADY_COMPRESSED
+    }
+
+    // one PDF per kind, reused across runs while the file is still there
+    static List<Path> representativeCorpus(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        final List<Path> corpus = new ArrayList<>();
+        for (Kind kind : Kind.values()) {
+            final Path pdf = dir.resolve(kind.name().toLowerCase(Locale.ROOT).replace('_', '-') + ".pdf");
+            if (!Files.exists(pdf)) {
+                generate(kind, pdf, kind.ordinal());
+            }
+            corpus.add(pdf);
+        }
+        return corpus;
+    }
+
+    static void generate(Kind kind, Path out, long seed) throws IOException {
+        final Random random = new Random(seed);
+        try (PDDocument document = new PDDocument()) {
+            switch (kind) {
+                case SCANNED -> {
+                    for (int i = 0; i < 8; i++) {
+                        fullPageImage(document, JPEGFactory.createFromImage(document, scan(1654, 2339, random), 0.85f));
+                    }
+                }
+                case VECTOR -> {
+                    for (int i = 0; i < 20; i++) {
+                        try (PDPageContentStream content = newPage(document)) {
+                            text(content, random, 40);
+                            lineArt(content, random);
+                        }
+                    }
+                }
+                case MIXED -> {
+                    for (int i = 0; i < 10; i++) {
+                        final @Nullable PDImageXObject photo = i % 2 == 0
+                                ? JPEGFactory.createFromImage(document, photo(1600, 1067, random), 0.9f)
+                                : null;
+                        try (PDPageContentStream content = newPage(document)) {
+                            text(content, random, photo == null ? 40 : 18);
+                            if (photo != null) {
+                                content.drawImage(photo, 56, 56, A4_WIDTH - 112, (A4_WIDTH - 112) * 2 / 3);
+                            }
+                        }
+                    }
+                }
+                case IMAGE_HEAVY -> {
+                    for (int i = 0; i < 6; i++) {
+                        fullPageImage(document, LosslessFactory.createFromImage(document, photo(2480, 3508, random)));
+                    }
+                }
+                case ALREADY_COMPRESSED -> {
+                    for (int i = 0; i < 10; i++) {
+                        final PDImageXObject photo = JPEGFactory.createFromImage(document, photo(480, 320, random), 0.5f);
+                        try (PDPageContentStream content = newPage(document)) {
+                            text(content, random, 18);
+                            content.drawImage(photo, 56, 56, A4_WIDTH - 112, (A4_WIDTH - 112) * 2 / 3);
+                        }
+                    }
+                }
+            }
+            document.save(out.toFile());
+        }
+    }
+
+    // one PDF per size, reused across runs while the file is still there
+    static List<Path> noiseCorpus(Path dir, List<Long> sizes) throws IOException {
+        Files.createDirectories(dir);
+        final List<Path> corpus = new ArrayList<>();
+        for (long size : sizes) {
+            final Path pdf = dir.resolve("noise-" + size + ".pdf");
+            if (!Files.exists(pdf)) {
+                noise(pdf, size, size);
+            }
+            corpus.add(pdf);
+        }
+        return corpus;
+    }
+
+    // A4 pages, each one full-page noise image: it neither compresses losslessly nor is a
+    // candidate for pass-through, so every byte goes through Ghostscript's downsampling
+    static void noise(Path out, long targetBytes, long seed) throws IOException {
+        final Random random = new Random(seed);
+        final long pageBytes = Math.max(64 * 1024, Math.min(targetBytes, MAX_PAGE_BYTES));
+        final int pages = (int) Math.max(1, (targetBytes + pageBytes - 1) / pageBytes);
+        // 3 bytes per pixel and A4's 1:1.414 aspect ratio
+        final int width = (int) Math.sqrt(pageBytes / 3.0 / 1.414);
+        final int height = (int) (width * 1.414);
+        try (PDDocument document = new PDDocument()) {
+            for (int i = 0; i < pages; i++) {
+                fullPageImage(document, LosslessFactory.createFromImage(document, noiseImage(width, height, random)));
+            }
+            document.save(out.toFile());
+        }
+    }
+
+    private static PDPageContentStream newPage(PDDocument document) throws IOException {
+        final PDPage page = new PDPage(PDRectangle.A4);
+        document.addPage(page);
+        return new PDPageContentStream(document, page);
+    }
+
+    private static void fullPageImage(PDDocument document, PDImageXObject image) throws IOException {
+        try (PDPageContentStream content = newPage(document)) {
+            content.drawImage(image, 0, 0, A4_WIDTH, A4_HEIGHT);
+        }
+    }
+
+    // lines of random words from the top margin down
+    private static void text(PDPageContentStream content, Random random, int lines) throws IOException {
+        content.beginText();
+        content.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), 10);
+        content.setLeading(14);
+        content.newLineAtOffset(56, A4_HEIGHT - 72);
+        for (int i = 0; i < lines; i++) {
+            final StringBuilder line = new StringBuilder();
+            while (line.length() < 90) {
+                line.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            content.showText(line.toString().trim());
+            content.newLine();
+        }
+        content.endText();
+    }
+
+    // a line chart in the lower part of the page
+    private static void lineArt(PDPageContentStream content, Random random) throws IOException {
+        content.setLineWidth(0.5f);
+        for (int series = 0; series < 4; series++) {
+            content.setStrokingColor(new Color(random.nextInt(200), random.nextInt(200), random.nextInt(200)));
+            float y = 80 + random.nextFloat() * 100;
+            content.moveTo(56, y);
+            for (float x = 60; x < A4_WIDTH - 56; x += 4) {
+                y = Math.max(60, Math.min(200, y + (random.nextFloat() - 0.5f) * 8));
+                content.lineTo(x, y);
+            }
+            content.stroke();
+        }
+    }
+
+    // paper-grey background with dark word-sized blocks and sensor noise
+    private static BufferedImage scan(int width, int height, Random random) {
+        final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        final Graphics2D g = image.createGraphics();
+        g.setColor(new Color(235, 235, 230));
+        g.fillRect(0, 0, width, height);
+        g.setColor(new Color(40, 40, 40));
+        for (int y = height / 12; y < height - height / 12; y += height / 60) {
+            for (int x = width / 10; x < width - width / 10; ) {
+                final int word = width / 60 + random.nextInt(width / 20);
+                g.fillRect(x, y, Math.min(word, width - width / 10 - x), height / 120);
+                x += word + width / 100;
+            }
+        }
+        g.dispose();
+        final byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (byte) Math.max(0, Math.min(255, (pixels[i] & 0xFF) + random.nextInt(17) - 8));
+        }
+        return image;
+    }
+
+    // smooth colour fields with mild noise: compresses like a photo, not like noise or flat fills
+    private static BufferedImage photo(int width, int height, Random random) {
+        final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        final int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        final double[][] columns = new double[3][width];
+        final double[][] rows = new double[3][height];
+        for (int c = 0; c < 3; c++) {
+            final double fx = (1 + random.nextInt(6)) * Math.PI / width;
+            final double fy = (1 + random.nextInt(6)) * Math.PI / height;
+            final double phase = random.nextDouble() * Math.PI;
+            for (int x = 0; x < width; x++) {
+                columns[c][x] = 60 * Math.sin(fx * x + phase);
+            }
+            for (int y = 0; y < height; y++) {
+                rows[c][y] = 60 * Math.cos(fy * y + phase);
+            }
+        }
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int rgb = 0;
+                for (int c = 0; c < 3; c++) {
+                    final int v = (int) (128 + columns[c][x] + rows[c][y]) + random.nextInt(9) - 4;
+                    rgb = rgb << 8 | Math.max(0, Math.min(255, v));
+                }
+                pixels[y * width + x] = rgb;
+            }
+        }
+        return image;
+    }
+
+    private static BufferedImage noiseImage(int width, int height, Random random) {
+        final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        final int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt() & 0xFFFFFF;
+        }
+        return image;
+    }
+}
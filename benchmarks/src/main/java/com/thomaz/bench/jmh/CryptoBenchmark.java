@@ -0,0 +1,64 @@
+package com.thomaz.bench.jmh;
+
+import com.thomaz.config.Crypto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.SecretKey;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AES-GCM round trips as the proxy does them for tenant tokens and SD credentials.
+ * {@code decryptWith} parses the Base64 key into a {@code SecretKeySpec} on every call;
+ * {@code decryptPreparedKey} is the same work with the key built once, so the gap between
+ * the two is what key parsing costs per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CryptoBenchmark {
+
+    // a Bearer token and an SD password are both well under 100 characters
+    @Param({"32", "256"})
+    public int plainTextLength;
+
+    private String base64Key;
+    private SecretKey secretKey;
+    private String plainText;
+    private String cipherText;
+
+    @Setup
+    public void setUp() {
+        base64Key = Crypto.newBase64Secret256();
+        secretKey = Crypto.secretKey(base64Key);
+        plainText = "x".repeat(plainTextLength);
+        cipherText = Crypto.encrypt(plainText, base64Key);
+    }
+
+    @Benchmark
+    public String encrypt() {
+        return Crypto.encrypt(plainText, base64Key);
+    }
+
+    @Benchmark
+    public String decryptWith() {
+        return Crypto.decryptWith(cipherText, base64Key);
+    }
+
+    @Benchmark
+    public String decryptPreparedKey() {
+        return Crypto.decrypt(cipherText, secretKey);
+    }
+}
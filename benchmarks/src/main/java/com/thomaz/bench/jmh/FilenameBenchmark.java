@@ -0,0 +1,40 @@
+package com.thomaz.bench.jmh;
+
+import com.thomaz.form.CompressParameters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CompressParameters#headerSafeFilename}, which runs once per upload: NFD normalization
+ * followed by a chain of {@code replaceAll} calls, each compiling its pattern.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilenameBenchmark {
+
+    @Param({
+            "relatorio-final.pdf",
+            "Relatório de Inspeção  — Ação nº 42 (versão revisada).pdf",
+            "scan_2024_10_17___página___001___de___120___frente_e_verso_digitalizado_com_ocr.pdf"
+    })
+    public String filename;
+
+    @Benchmark
+    public String headerSafeFilename() {
+        return CompressParameters.headerSafeFilename(filename);
+    }
+}
@@ -0,0 +1,66 @@
+package com.thomaz.bench.jmh;
+
+import com.thomaz.form.CompressParameters;
+import com.thomaz.form.CompressionPriority;
+import com.thomaz.form.FileResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The JSON each job goes through: {@code CompressParameters} into the callback outbox, the
+ * {@code FileResponse} Sydle returns from {@code _upload}, and the {@code complete} body.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+    private CompressParameters params;
+    private FileResponse fileResponse;
+    private String fileResponseJson;
+
+    @Setup
+    public void setUp() {
+        params = new CompressParameters("Relatório de Inspeção.pdf", "Relatorio_de_Inspecao.pdf",
+                "6712f0c2a4b1e23d9c0f7a15", "org-4f9c2e", CompressionPriority.NORMAL, null, "not-serialized");
+        fileResponse = new FileResponse("6712f0c9a4b1e23d9c0f7a19",
+                "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08", "application/pdf", 1_843_227);
+        fileResponseJson = jsonMapper.writeValueAsString(fileResponse);
+    }
+
+    @Benchmark
+    public String writeCompressParameters() {
+        return jsonMapper.writeValueAsString(params);
+    }
+
+    @Benchmark
+    public String writeFileResponse() {
+        return jsonMapper.writeValueAsString(fileResponse);
+    }
+
+    @Benchmark
+    public FileResponse readFileResponse() {
+        return jsonMapper.readValue(fileResponseJson, FileResponse.class);
+    }
+
+    @Benchmark
+    public String writeCompleteBody() {
+        return jsonMapper.writeValueAsString(Map.of("compressedFile", fileResponse));
+    }
+}
@@ -0,0 +1,173 @@
+package com.thomaz.bench.jmh;
+
+import com.thomaz.api.StreamingPdfIngest;
+import com.thomaz.config.PdfCallbackProperties;
+import com.thomaz.config.PdfCompressionProperties;
+import com.thomaz.form.IngestedPdf;
+import com.thomaz.form.PreflightReport;
+import com.thomaz.service.PdfPreflight;
+import com.thomaz.service.ProxyMetrics;
+import com.thomaz.service.TenantRegistry;
+import com.thomaz.service.Util;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The checks that replaced {@code Util.requireProbablyPdf}: the upload ingest, which parses the
+ * multipart body and runs the marker scan and SHA-256 over every byte on its way to disk, and the
+ * memory-mapped preflight of the validate stage.
+ * <p>
+ * The input is a synthetic PDF of 100 KB pages: an object header and a binary stream each,
+ * which is the shape the preflight skips over by {@code /Length}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PdfCheckBenchmark {
+
+    private static final String BOUNDARY = "----bench7MA4YWxkTrZu0gW";
+
+    @Param({"10", "500"})
+    public int pages;
+
+    private byte[] body;
+    private Path file;
+    private Path target;
+    private StreamingPdfIngest ingest;
+    private PdfPreflight preflight;
+
+    @Setup
+    public void setUp() throws IOException {
+        final byte[] pdf = syntheticPdf(pages, 100 * 1024);
+        body = multipart(pdf);
+        file = Files.createTempFile("bench-preflight-", ".pdf");
+        Files.write(file, pdf);
+        target = Files.createTempFile("bench-ingest-", ".pdf");
+        final PdfCompressionProperties props = new PdfCompressionProperties();
+        props.setMaxInputBytes(pdf.length);
+        final TenantRegistry tenants = new TenantRegistry(new PdfCallbackProperties(), JsonMapper.builder().build());
+        ingest = new StreamingPdfIngest(props, new ProxyMetrics(new SimpleMeterRegistry(), tenants));
+        preflight = new PdfPreflight(props);
+    }
+
+    @TearDown
+    public void tearDown() {
+        Util.safeDelete(file);
+        Util.safeDelete(target);
+    }
+
+    @Benchmark
+    public IngestedPdf ingest() throws IOException {
+        return ingest.ingest(request(body), target);
+    }
+
+    @Benchmark
+    public PreflightReport preflight() throws IOException {
+        return preflight.analyze(file);
+    }
+
+    // just the calls StreamingPdfIngest makes; anything else is a bug in the benchmark
+    private static HttpServletRequest request(byte[] body) {
+        final ServletInputStream in = new BodyInputStream(body);
+        return (HttpServletRequest) Proxy.newProxyInstance(PdfCheckBenchmark.class.getClassLoader(),
+                new Class<?>[]{HttpServletRequest.class}, (_, method, _) -> switch (method.getName()) {
+                    case "getContentType" -> "multipart/form-data; boundary=" + BOUNDARY;
+                    case "getContentLengthLong" -> (long) body.length;
+                    case "getInputStream" -> in;
+                    case "getHeader" -> null;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static byte[] multipart(byte[] pdf) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"bench.pdf\"\r\n"
+                + "Content-Type: application/pdf\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.writeBytes(pdf);
+        out.writeBytes(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        return out.toByteArray();
+    }
+
+    private static byte[] syntheticPdf(int pages, int streamBytes) throws IOException {
+        final Random random = new Random(42);
+        final byte[] stream = new byte[streamBytes];
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write("%PDF-1.7\n%âãÏÓ\n".getBytes(StandardCharsets.ISO_8859_1));
+        out.write("1 0 obj\n<< /Type /Catalog /Pages 2 0 R >>\nendobj\n".getBytes(StandardCharsets.US_ASCII));
+        out.write(("2 0 obj\n<< /Type /Pages /Count " + pages + " >>\nendobj\n").getBytes(StandardCharsets.US_ASCII));
+        int id = 3;
+        for (int i = 0; i < pages; i++) {
+            random.nextBytes(stream);
+            out.write((id++ + " 0 obj\n<< /Type /Page /Parent 2 0 R /Contents " + id + " 0 R >>\nendobj\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            out.write((id++ + " 0 obj\n<< /Length " + streamBytes + " /Filter /FlateDecode >>\nstream\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            out.write(stream);
+            out.write("\nendstream\nendobj\n".getBytes(StandardCharsets.US_ASCII));
+        }
+        out.write("trailer\n<< /Root 1 0 R >>\nstartxref\n0\n%%EOF\n".getBytes(StandardCharsets.US_ASCII));
+        return out.toByteArray();
+    }
+
+    private static final class BodyInputStream extends ServletInputStream {
+        private final ByteArrayInputStream in;
+
+        private BodyInputStream(byte[] body) {
+            this.in = new ByteArrayInputStream(body);
+        }
+
+        @Override
+        public int read() {
+            return in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            return in.read(b, off, len);
+        }
+
+        @Override
+        public boolean isFinished() {
+            return in.available() == 0;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
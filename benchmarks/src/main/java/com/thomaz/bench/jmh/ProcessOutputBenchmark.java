@@ -0,0 +1,55 @@
+package com.thomaz.bench.jmh;
+
+import com.thomaz.service.Util;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Util#readProcessOutputBounded} with the 64 000 character cap the Ghostscript engines use.
+ * A quiet run prints nothing; a file full of broken fonts can print megabytes of warnings, of
+ * which only the first 64 000 characters are decoded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProcessOutputBenchmark {
+
+    private static final String WARNING = "   **** Error: can't process embedded font stream,\n"
+            + "        attempting to load the font using its name.\n";
+
+    @Param({"0", "16384", "1048576"})
+    public int outputBytes;
+
+    private byte[] output;
+
+    @Setup
+    public void setUp() {
+        final StringBuilder sb = new StringBuilder(outputBytes);
+        while (sb.length() < outputBytes) {
+            sb.append(WARNING);
+        }
+        output = sb.substring(0, outputBytes).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String readBounded() throws IOException {
+        return Util.readProcessOutputBounded(new ByteArrayInputStream(output), 64_000);
+    }
+}
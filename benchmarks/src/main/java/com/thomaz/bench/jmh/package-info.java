@@ -0,0 +1,13 @@
+/**
+ * JMH microbenchmarks for the per-request hot path.
+ * <p>
+ * {@code mvn -f benchmarks/pom.xml compile exec:exec@jmh}
+ * <p>
+ * {@code -Djmh.args="..."} replaces the default {@code -prof gc -rf json -rff target/jmh-result.json};
+ * pass a class name regex to run a subset. {@link com.thomaz.bench.JmhBaselineCheck} then compares
+ * the result with {@code baseline/jmh-hotpath.json}.
+ */
+@NullMarked
+package com.thomaz.bench.jmh;
+
+import org.jspecify.annotations.NullMarked;
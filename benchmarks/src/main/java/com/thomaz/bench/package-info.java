@@ -0,0 +1,4 @@
+@NullMarked
+package com.thomaz.bench;
+
+import org.jspecify.annotations.NullMarked;
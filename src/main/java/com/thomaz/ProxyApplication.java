@@ -1,6 +1,5 @@
 package com.thomaz;
 
-import com.thomaz.config.Crypto;
 import com.thomaz.config.PdfCallbackProperties;
 import com.thomaz.config.PdfCompressionProperties;
 import jakarta.annotation.PostConstruct;
@@ -24,7 +23,6 @@ public class ProxyApplication {
     @PostConstruct
     public void init() {
         TimeZone.setDefault(TimeZone.getTimeZone("America/Sao_Paulo"));
-        Crypto.setCipher();
     }
 
     public static void main(String[] args) {
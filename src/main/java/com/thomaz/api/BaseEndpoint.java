@@ -2,22 +2,41 @@ package com.thomaz.api;
 
 import com.thomaz.config.Crypto;
 import com.thomaz.config.exception.AuthorizationException;
+import com.thomaz.form.CacheStats;
+import com.thomaz.form.CallbackHostStats;
+import com.thomaz.form.CompressJobResponse;
 import com.thomaz.form.CompressParameters;
+import com.thomaz.form.CompressionPriority;
+import com.thomaz.form.IngestedPdf;
+import com.thomaz.form.QualityTier;
+import com.thomaz.form.StageStats;
+import com.thomaz.form.TenantQueueStats;
+import com.thomaz.service.CallbackClientStats;
+import com.thomaz.service.CompressionJobQueue;
+import com.thomaz.service.CompressionResultCache;
 import com.thomaz.service.PdfCompressionService;
 import com.thomaz.service.SdRequestService;
 import com.thomaz.service.Util;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.jspecify.annotations.Nullable;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Base64;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -27,24 +46,42 @@ public class BaseEndpoint {
 
     private final SdRequestService service;
     private final PdfCompressionService compressionService;
-
-    public BaseEndpoint(SdRequestService service, PdfCompressionService compressionService) {
+    private final CompressionResultCache resultCache;
+    private final StreamingPdfIngest pdfIngest;
+    private final CallbackClientStats callbackStats;
+    private final CompressionJobQueue jobQueue;
+
+    public BaseEndpoint(SdRequestService service,
+                        PdfCompressionService compressionService,
+                        CompressionResultCache resultCache,
+                        StreamingPdfIngest pdfIngest,
+                        CallbackClientStats callbackStats,
+                        CompressionJobQueue jobQueue) {
         this.service = service;
         this.compressionService = compressionService;
+        this.resultCache = resultCache;
+        this.pdfIngest = pdfIngest;
+        this.callbackStats = callbackStats;
+        this.jobQueue = jobQueue;
     }
 
     @PostMapping(value = "/compress-pdf", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<CompressParameters> compress(@RequestParam("file") MultipartFile file, HttpServletRequest request) throws IOException {
+    public ResponseEntity<CompressJobResponse> compress(HttpServletRequest request) throws IOException {
+
+        // headers and queue room are checked before the upload is read, so neither a bad request
+        // nor a 429 costs the ingest of a large file
+        final CompressParameters headers = CompressParameters.fromRequest(request, null);
+        jobQueue.requireCapacity();
 
         final Path tmpDir = Paths.get(System.getProperty("java.io.tmpdir"));
         final Path in = Files.createTempFile(tmpDir, "pdf-in-", ".pdf");
         final Path out = Files.createTempFile(tmpDir, "pdf-out-", ".pdf");
 
         try {
-            final var compressParams = CompressParameters.fromMultipartRequest(request, file);
-            file.transferTo(in);
-            compressionService.compress(compressParams, in, out);
-            return ResponseEntity.ok(compressParams);
+            final IngestedPdf pdf = pdfIngest.ingest(request, in);
+            final var compressParams = headers.withOriginalFilename(pdf.originalFilename());
+            final int queuePosition = compressionService.compress(compressParams, pdf, out);
+            return ResponseEntity.ok(new CompressJobResponse(compressParams, queuePosition));
 
         } catch (Exception e) {
             Util.safeDelete(in);
@@ -53,28 +90,76 @@ public class BaseEndpoint {
         }
     }
 
-//    @PostMapping(value = "/compress-pdf-sync", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-//    public ResponseEntity<byte[]> compressSync(@RequestParam("file") MultipartFile file) throws Exception {
-//        byte[] input = file.getBytes();
-//        PdfCompressionService.requireProbablyPdf(input);
-//        byte[] compressed = pdfCompressionService.compressSync(input);
-//
-//        return ResponseEntity.ok()
-//                .contentType(MediaType.APPLICATION_PDF)
-//                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + file.getOriginalFilename() + "-compressed.pdf")
-//                .body(compressed);
-//    }
+    @GetMapping("/compress-pdf/cache")
+    public ResponseEntity<CacheStats> cacheStats() {
+        return ResponseEntity.ok(resultCache.stats());
+    }
+
+    @GetMapping("/compress-pdf/callbacks")
+    public ResponseEntity<List<CallbackHostStats>> callbackStats() {
+        return ResponseEntity.ok(callbackStats.snapshot());
+    }
+
+    @GetMapping("/compress-pdf/queue")
+    public ResponseEntity<List<TenantQueueStats>> queueStats() {
+        return ResponseEntity.ok(jobQueue.stats());
+    }
+
+    @GetMapping("/compress-pdf/stages")
+    public ResponseEntity<List<StageStats>> stageStats() {
+        return ResponseEntity.ok(compressionService.stageStats());
+    }
+
+    @PostMapping(value = "/compress-pdf-sync", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public void compressSync(HttpServletRequest request, HttpServletResponse response) throws IOException, InterruptedException {
+
+        final CompressionPriority priority = CompressionPriority.fromHeader(request.getHeader("Compression-Priority"));
+        jobQueue.requireCapacity();
+
+        final Path tmpDir = Paths.get(System.getProperty("java.io.tmpdir"));
+        final Path in = Files.createTempFile(tmpDir, "pdf-in-", ".pdf");
+        final Path out = Files.createTempFile(tmpDir, "pdf-out-", ".pdf");
+
+        try {
+            final IngestedPdf pdf = pdfIngest.ingest(request, in);
+            final QualityTier tier = compressionService.compressSync(priority, pdf, out);
+
+            final String originalName = Util.toCompressedFileName(Optional.ofNullable(pdf.originalFilename()).orElse("original.pdf"));
+            response.setContentType(MediaType.APPLICATION_PDF_VALUE);
+            response.setHeader("Compression-Quality-Tier", tier.name());
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                    .filename(CompressParameters.headerSafeFilename(originalName))
+                    .filename(originalName, StandardCharsets.UTF_8)
+                    .build()
+                    .toString());
+
+            // FileChannel.transferTo streams the file straight into the servlet stream, a chunk at a time;
+            // Tomcat sendfile would save that copy too, but it writes after this method has returned
+            // and deleted the temp file
+            try (FileChannel file = FileChannel.open(out, StandardOpenOption.READ)) {
+                final long size = file.size();
+                response.setContentLengthLong(size);
+                final WritableByteChannel body = Channels.newChannel(response.getOutputStream());
+                for (long position = 0; position < size; ) {
+                    position += file.transferTo(position, size - position, body);
+                }
+            }
+        } finally {
+            Util.safeDelete(in);
+            Util.safeDelete(out);
+        }
+    }
 
     @GetMapping("/encrypt-utils")
     public ResponseEntity<Map<String, Object>> healthCheck(HttpServletRequest request,
                                                            @Nullable @RequestParam(required = false) String encrypt) {
-        Crypto.setSecretKey(getHeader(request, "Encrypt-Key"));
+        final String encryptKey = getHeader(request, "Encrypt-Key");
         return ResponseEntity.ok(
                 Map.of(
                         "status", "UP",
                         "version", "1.0.0",
                         "new_key", Crypto.newBase64Secret256(),
-                        "encrypted_sample", Crypto.encrypt(Base64.getEncoder().encodeToString(encrypt.getBytes()))
+                        "encrypted_sample", Crypto.encrypt(Base64.getEncoder().encodeToString(encrypt.getBytes()), encryptKey)
                 )
         );
     }
@@ -0,0 +1,196 @@
+package com.thomaz.api;
+
+import com.thomaz.config.exception.InvalidRequestException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+final class MultipartStream {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_HEADER_BYTES = 16 * 1024;
+
+    private final InputStream in;
+    private final byte[] firstDelimiter;
+    private final byte[] delimiter;
+    private final byte[] buf = new byte[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+    private boolean eof;
+    private boolean started;
+    private boolean finished;
+
+    MultipartStream(InputStream in, String boundary) {
+        this.in = in;
+        this.firstDelimiter = ("--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    @FunctionalInterface
+    interface Sink {
+        void write(byte[] b, int off, int len) throws IOException;
+    }
+
+    static String boundaryOf(String contentType) {
+        for (String param : contentType.split(";")) {
+            final String p = param.trim();
+            if (p.toLowerCase(Locale.ROOT).startsWith("boundary=")) {
+                String boundary = p.substring("boundary=".length());
+                if (boundary.length() > 1 && boundary.startsWith("\"") && boundary.endsWith("\"")) {
+                    boundary = boundary.substring(1, boundary.length() - 1);
+                }
+                if (!boundary.isEmpty()) {
+                    return boundary;
+                }
+            }
+        }
+        throw new InvalidRequestException("Missing multipart boundary.");
+    }
+
+    boolean nextPart() throws IOException {
+        if (!started) {
+            started = true;
+            copyUntil(firstDelimiter, (b, off, len) -> { });
+        }
+        if (finished) {
+            return false;
+        }
+        ensure(2);
+        if (limit - pos >= 2 && buf[pos] == '-' && buf[pos + 1] == '-') {
+            finished = true;
+            return false;
+        }
+        readLine();
+        return true;
+    }
+
+    Map<String, String> readHeaders() throws IOException {
+        final Map<String, String> headers = new LinkedHashMap<>();
+        int total = 0;
+        String line;
+        while (!(line = readLine()).isEmpty()) {
+            total += line.length();
+            if (total > MAX_HEADER_BYTES) {
+                throw new InvalidRequestException("Multipart headers too large.");
+            }
+            final int colon = line.indexOf(':');
+            if (colon > 0) {
+                headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT), line.substring(colon + 1).trim());
+            }
+        }
+        return headers;
+    }
+
+    void copyBody(Sink sink) throws IOException {
+        copyUntil(delimiter, sink);
+    }
+
+    void skipBody() throws IOException {
+        copyUntil(delimiter, (b, off, len) -> { });
+    }
+
+    static String dispositionParam(String disposition, String name) {
+        for (String param : disposition.split(";")) {
+            final String p = param.trim();
+            final int eq = p.indexOf('=');
+            if (eq > 0 && p.substring(0, eq).trim().equalsIgnoreCase(name)) {
+                String value = p.substring(eq + 1).trim();
+                if (value.length() > 1 && value.startsWith("\"") && value.endsWith("\"")) {
+                    value = value.substring(1, value.length() - 1);
+                }
+                return value;
+            }
+        }
+        return "";
+    }
+
+    private void copyUntil(byte[] marker, Sink sink) throws IOException {
+        while (true) {
+            ensure(marker.length);
+            final int found = indexOf(marker);
+            if (found >= 0) {
+                if (found > pos) {
+                    sink.write(buf, pos, found - pos);
+                }
+                pos = found + marker.length;
+                return;
+            }
+            if (eof) {
+                throw new InvalidRequestException("Unexpected end of multipart body.");
+            }
+            final int safe = limit - marker.length + 1;
+            if (safe > pos) {
+                sink.write(buf, pos, safe - pos);
+                pos = safe;
+            }
+            fill();
+        }
+    }
+
+    private String readLine() throws IOException {
+        final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        while (true) {
+            if (pos >= limit) {
+                fill();
+                if (pos >= limit) {
+                    throw new InvalidRequestException("Unexpected end of multipart body.");
+                }
+            }
+            final byte b = buf[pos++];
+            if (b == '\n') {
+                final byte[] bytes = line.toByteArray();
+                final int len = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+                return new String(bytes, 0, len, StandardCharsets.UTF_8);
+            }
+            if (line.size() >= MAX_HEADER_BYTES) {
+                throw new InvalidRequestException("Multipart headers too large.");
+            }
+            line.write(b);
+        }
+    }
+
+    private void ensure(int bytes) throws IOException {
+        while (limit - pos < bytes && !eof) {
+            fill();
+        }
+    }
+
+    private void fill() throws IOException {
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        if (limit == buf.length) {
+            return;
+        }
+        final int n = in.read(buf, limit, buf.length - limit);
+        if (n < 0) {
+            eof = true;
+        } else {
+            limit += n;
+        }
+    }
+
+    private int indexOf(byte[] marker) {
+        final int last = limit - marker.length;
+        outer:
+        for (int i = pos; i <= last; i++) {
+            if (buf[i] != marker[0]) {
+                continue;
+            }
+            for (int j = 1; j < marker.length; j++) {
+                if (buf[i + j] != marker[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,65 @@
+package com.thomaz.api;
+
+import com.thomaz.form.PdfFeatures;
+
+import java.nio.charset.StandardCharsets;
+
+final class PdfMarkerScanner {
+
+    private static final byte[] PAGE = "/Page".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] IMAGE = "/Image".getBytes(StandardCharsets.US_ASCII);
+
+    private int pageMatch;
+    private int imageMatch;
+    private boolean pageCandidate;
+    private boolean imageCandidate;
+    private int pages;
+    private int images;
+
+    void update(byte[] b, int off, int len) {
+        for (int i = off; i < off + len; i++) {
+            final byte c = b[i];
+            if (pageCandidate) {
+                pageCandidate = false;
+                if (isDelimiter(c)) {
+                    pages++;
+                }
+            }
+            if (imageCandidate) {
+                imageCandidate = false;
+                if (isDelimiter(c)) {
+                    images++;
+                }
+            }
+            pageMatch = advance(PAGE, pageMatch, c);
+            if (pageMatch == PAGE.length) {
+                pageCandidate = true;
+                pageMatch = 0;
+            }
+            imageMatch = advance(IMAGE, imageMatch, c);
+            if (imageMatch == IMAGE.length) {
+                imageCandidate = true;
+                imageMatch = 0;
+            }
+        }
+    }
+
+    PdfFeatures features() {
+        return new PdfFeatures(pages, images);
+    }
+
+    // both tokens contain '/' only as their first byte, so a mismatch can only restart at that byte
+    private static int advance(byte[] token, int matched, byte c) {
+        if (c == token[matched]) {
+            return matched + 1;
+        }
+        return c == token[0] ? 1 : 0;
+    }
+
+    private static boolean isDelimiter(byte c) {
+        return switch (c) {
+            case 0, '\t', '\n', '\f', '\r', ' ', '(', ')', '<', '>', '[', ']', '{', '}', '/', '%' -> true;
+            default -> false;
+        };
+    }
+}
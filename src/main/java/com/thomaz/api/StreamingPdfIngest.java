@@ -0,0 +1,115 @@
+package com.thomaz.api;
+
+import com.thomaz.config.PdfCompressionProperties;
+import com.thomaz.config.exception.InvalidRequestException;
+import com.thomaz.form.IngestedPdf;
+import com.thomaz.service.ProxyMetrics;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+
+@Component
+public class StreamingPdfIngest {
+
+    private static final byte[] PDF_MAGIC = {'%', 'P', 'D', 'F', '-'};
+    private static final long MULTIPART_OVERHEAD_BYTES = 64 * 1024;
+
+    private final long maxInputBytes;
+    private final ProxyMetrics metrics;
+
+    public StreamingPdfIngest(PdfCompressionProperties props, ProxyMetrics metrics) {
+        this.maxInputBytes = props.getMaxInputBytes();
+        this.metrics = metrics;
+    }
+
+    public IngestedPdf ingest(HttpServletRequest request, Path target) throws IOException {
+        final long start = System.nanoTime();
+        final IngestedPdf pdf = receive(request, target);
+        metrics.uploadReceived(request.getHeader("Organization-Id"), System.nanoTime() - start, pdf.size());
+        return pdf;
+    }
+
+    private IngestedPdf receive(HttpServletRequest request, Path target) throws IOException {
+        final String contentType = Optional.ofNullable(request.getContentType())
+                .orElseThrow(() -> new InvalidRequestException("Missing Content-Type header"));
+        if (request.getContentLengthLong() > maxInputBytes + MULTIPART_OVERHEAD_BYTES) {
+            throw tooLarge();
+        }
+
+        final MultipartStream multipart = new MultipartStream(request.getInputStream(), MultipartStream.boundaryOf(contentType));
+        while (multipart.nextPart()) {
+            final Map<String, String> headers = multipart.readHeaders();
+            final String disposition = headers.getOrDefault("content-disposition", "");
+            if (!"file".equals(MultipartStream.dispositionParam(disposition, "name"))) {
+                multipart.skipBody();
+                continue;
+            }
+            final String filename = MultipartStream.dispositionParam(disposition, "filename");
+            try (FileChannel channel = FileChannel.open(target, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                final PdfSink sink = new PdfSink(channel);
+                multipart.copyBody(sink);
+                if (sink.size == 0) {
+                    throw new InvalidRequestException("Empty file.");
+                }
+                if (sink.size < PDF_MAGIC.length) {
+                    throw new InvalidRequestException("File does not look like a PDF.");
+                }
+                return new IngestedPdf(target, sink.size, HexFormat.of().formatHex(sink.digest.digest()),
+                        filename.isBlank() ? null : filename, sink.markers.features());
+            }
+        }
+        throw new InvalidRequestException("Missing file part");
+    }
+
+    private InvalidRequestException tooLarge() {
+        return new InvalidRequestException("File exceeds the maximum size of " + maxInputBytes + " bytes.");
+    }
+
+    private final class PdfSink implements MultipartStream.Sink {
+        private final FileChannel channel;
+        private final MessageDigest digest = sha256();
+        private final PdfMarkerScanner markers = new PdfMarkerScanner();
+        private long size;
+
+        private PdfSink(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            for (int i = 0; i < len && size + i < PDF_MAGIC.length; i++) {
+                if (b[off + i] != PDF_MAGIC[(int) size + i]) {
+                    throw new InvalidRequestException("File does not look like a PDF.");
+                }
+            }
+            size += len;
+            if (size > maxInputBytes) {
+                throw tooLarge();
+            }
+            digest.update(b, off, len);
+            markers.update(b, off, len);
+            final ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.thomaz.config;
 
 import com.thomaz.config.exception.CryptoException;
+import com.thomaz.jfr.CryptoEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -11,6 +12,8 @@ import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
 import java.util.Base64;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 public final class Crypto {
 
@@ -18,25 +21,17 @@ public final class Crypto {
     private static final String ALGORITHM = "AES/GCM/NoPadding";
     private static final String ENCRYPTED_PREFIX = "Encrypted: ";
     private static final int GCM_TAG_LENGTH = 128;
-    private static SecretKey secretKey;
-    private static Cipher cipher;
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final Queue<Cipher> CIPHERS = new ConcurrentLinkedQueue<>();
 
     private Crypto() {
         throw new IllegalStateException("Utility class");
     }
 
-    public static void setCipher() {
+    public static SecretKey secretKey(String base64Key) {
         try {
-            cipher = Cipher.getInstance(ALGORITHM);
-        } catch (Exception e) {
-            throw new CryptoException(e.getMessage(), e);
-        }
-    }
-
-    public static void setSecretKey(String secretKeyString) {
-        try {
-            byte[] keyBytes = Base64.getDecoder().decode(secretKeyString);
-            secretKey = new SecretKeySpec(keyBytes, "AES");
+            byte[] keyBytes = Base64.getDecoder().decode(base64Key);
+            return new SecretKeySpec(keyBytes, "AES");
         } catch (Exception e) {
             throw new CryptoException(e.getMessage(), e);
         }
@@ -57,19 +52,22 @@ public final class Crypto {
         }
     }
 
-    public static String encrypt(String plainText) {
+    public static String encrypt(String plainText, String base64Key) {
         if (plainText == null) {
             return null;
         }
         if (plainText.isEmpty()) {
             return "";
         }
+        final CryptoEvent event = new CryptoEvent();
+        event.begin();
+        final Cipher cipher = borrowCipher();
         try {
             byte[] iv = new byte[12];
-            new SecureRandom().nextBytes(iv);
+            RANDOM.nextBytes(iv);
 
             GCMParameterSpec parameterSpec = new GCMParameterSpec(GCM_TAG_LENGTH, iv);
-            cipher.init(Cipher.ENCRYPT_MODE, secretKey, parameterSpec);
+            cipher.init(Cipher.ENCRYPT_MODE, secretKey(base64Key), parameterSpec);
 
             byte[] cipherText = cipher.doFinal(plainText.getBytes());
             byte[] cipherPlusIv = new byte[iv.length + cipherText.length];
@@ -77,21 +75,19 @@ public final class Crypto {
             System.arraycopy(iv, 0, cipherPlusIv, 0, iv.length);
             System.arraycopy(cipherText, 0, cipherPlusIv, iv.length, cipherText.length);
 
+            event.succeeded = true;
             return ENCRYPTED_PREFIX + Base64.getEncoder().encodeToString(cipherPlusIv);
 
         } catch (Exception e) {
             throw new CryptoException(e.getMessage(), e);
+        } finally {
+            CIPHERS.offer(cipher);
+            commit(event, "encrypt", plainText.length());
         }
     }
 
     public static String decryptWith(String cipherText, String externalKey) {
-        byte[] keyBytes = Base64.getDecoder().decode(externalKey);
-        SecretKey externalSecretKey = new SecretKeySpec(keyBytes, "AES");
-        return decrypt(cipherText, externalSecretKey);
-    }
-
-    public static String decrypt(String cipherText) {
-        return decrypt(cipherText, secretKey);
+        return decrypt(cipherText, secretKey(externalKey));
     }
 
     public static String decrypt(String cipherText, SecretKey secretKey) {
@@ -105,6 +101,10 @@ public final class Crypto {
             LOGGER.warn("Text passed for decode but is not encrypted: {}", cipherText);
             return cipherText;
         }
+        final CryptoEvent event = new CryptoEvent();
+        event.begin();
+        final int length = cipherText.length();
+        final Cipher cipher = borrowCipher();
         try {
             cipherText = cipherText.replace(ENCRYPTED_PREFIX, "");
             byte[] cipherData = Base64.getDecoder().decode(cipherText);
@@ -115,10 +115,15 @@ public final class Crypto {
 
             cipher.init(Cipher.DECRYPT_MODE, secretKey, parameterSpec);
 
-            return new String(cipher.doFinal(cipherData, iv.length, cipherData.length - iv.length));
+            final String plainText = new String(cipher.doFinal(cipherData, iv.length, cipherData.length - iv.length));
+            event.succeeded = true;
+            return plainText;
 
         } catch (Exception e) {
             throw new CryptoException(e.getMessage(), e);
+        } finally {
+            CIPHERS.offer(cipher);
+            commit(event, "decrypt", length);
         }
     }
 
@@ -132,9 +137,29 @@ public final class Crypto {
 
     public static String newBase64Secret256() {
         byte[] bytes = new byte[32];
-        new SecureRandom().nextBytes(bytes);
+        RANDOM.nextBytes(bytes);
         return Base64.getEncoder().encodeToString(bytes);
     }
 
+    private static void commit(CryptoEvent event, String operation, long bytes) {
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
+    private static Cipher borrowCipher() {
+        final Cipher pooled = CIPHERS.poll();
+        if (pooled != null) {
+            return pooled;
+        }
+        try {
+            return Cipher.getInstance(ALGORITHM);
+        } catch (Exception e) {
+            throw new CryptoException(e.getMessage(), e);
+        }
+    }
+
 
 }
@@ -0,0 +1,26 @@
+package com.thomaz.config;
+
+import com.thomaz.service.gs.GhostscriptEngine;
+import com.thomaz.service.gs.LibgsGhostscriptEngine;
+import com.thomaz.service.gs.PooledGhostscriptEngine;
+import com.thomaz.service.gs.ProcessGhostscriptEngine;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Locale;
+
+@Configuration
+public class GhostscriptConfig {
+
+    @Bean(destroyMethod = "close")
+    public GhostscriptEngine ghostscriptEngine(PdfCompressionProperties props) {
+        final PdfCompressionProperties.Gs gs = props.getGs();
+        return switch (gs.getMode().trim().toLowerCase(Locale.ROOT)) {
+            case "process" -> new ProcessGhostscriptEngine(gs);
+            case "pool" -> new PooledGhostscriptEngine(gs);
+            case "ffm" -> new LibgsGhostscriptEngine(gs);
+            default -> throw new IllegalStateException("Unknown pdf.gs.mode: " + gs.getMode());
+        };
+    }
+
+}
@@ -3,14 +3,36 @@ package com.thomaz.config;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.MediaType;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.web.client.RestClient;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+
 @Configuration
 public class HttpClientsConfig {
 
+    // The pool's keep-alive is JVM-wide in the JDK client and read once, when the first client is
+    // built: it is set with -Djdk.httpclient.keepalive.timeout=<seconds> on the command line (see
+    // the Procfile), never from here. The per-host connection limit is enforced by CallbackClientStats.
+    @Bean(destroyMethod = "close")
+    public HttpClient callbackHttpClient(PdfCallbackProperties props) {
+        final PdfCallbackProperties.Http http = props.getHttp();
+        return HttpClient.newBuilder()
+                .version(http.isHttp2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(http.getConnectTimeoutSeconds()))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+    }
+
     @Bean
-    public RestClient restClient() {
+    public RestClient restClient(HttpClient callbackHttpClient, PdfCallbackProperties props) {
+        final JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(callbackHttpClient);
+        // the JDK request timeout runs from sending the request, upload body included, to the
+        // response, so it bounds the whole call without a thread standing by to cancel it
+        requestFactory.setReadTimeout(Duration.ofSeconds(props.getHttp().getTotalTimeoutSeconds()));
         return RestClient.builder()
+                .requestFactory(requestFactory)
                 .defaultHeader("Accept", MediaType.APPLICATION_JSON_VALUE)
                 .defaultHeader("Content-Type", MediaType.APPLICATION_JSON_VALUE)
                 .build();
@@ -2,16 +2,18 @@ package com.thomaz.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
-import java.util.Objects;
-import java.util.Optional;
-import java.util.stream.Stream;
+import java.util.List;
 
 @ConfigurationProperties(prefix = "callback")
 public class PdfCallbackProperties {
     private String fileClassId;
+    private String tenantsFile = "";
+    private int tenantsReloadSeconds = 10;
     private final Dev dev = new Dev();
     private final Hom hom = new Hom();
     private final Prd prd = new Prd();
+    private final Http http = new Http();
+    private final Outbox outbox = new Outbox();
 
     public String getFileClassId() {
         return fileClassId;
@@ -21,6 +23,22 @@ public class PdfCallbackProperties {
         this.fileClassId = fileClassId;
     }
 
+    public String getTenantsFile() {
+        return tenantsFile;
+    }
+
+    public void setTenantsFile(String tenantsFile) {
+        this.tenantsFile = tenantsFile;
+    }
+
+    public int getTenantsReloadSeconds() {
+        return tenantsReloadSeconds;
+    }
+
+    public void setTenantsReloadSeconds(int tenantsReloadSeconds) {
+        this.tenantsReloadSeconds = tenantsReloadSeconds;
+    }
+
     public Dev getDev() {
         return dev;
     }
@@ -33,21 +51,22 @@ public class PdfCallbackProperties {
         return prd;
     }
 
-    public Optional<String> getTokenForOrg(String organizationId) {
-        return Stream.of(dev, hom, prd)
-                .filter(env -> env.matchesOrgId(organizationId))
-                .findFirst()
-                .map(EnvironmentConfig::getToken);
+    public Http getHttp() {
+        return http;
     }
 
-    interface EnvironmentConfig {
+    public Outbox getOutbox() {
+        return outbox;
+    }
+
+    public List<EnvironmentConfig> environments() {
+        return List.of(dev, hom, prd);
+    }
+
+    public interface EnvironmentConfig {
         String getOrganizationId();
 
         String getToken();
-
-        default boolean matchesOrgId(String organizationId) {
-            return Objects.equals(getOrganizationId(), organizationId);
-        }
     }
 
     public static class Dev implements EnvironmentConfig {
@@ -113,5 +132,108 @@ public class PdfCallbackProperties {
         }
     }
 
+    public static class Http {
+        private int connectTimeoutSeconds = 5;
+        private int totalTimeoutSeconds = 120;
+        private int maxConnectionsPerHost = 64;
+        private boolean http2 = true;
+
+        public int getConnectTimeoutSeconds() {
+            return connectTimeoutSeconds;
+        }
+
+        public void setConnectTimeoutSeconds(int connectTimeoutSeconds) {
+            this.connectTimeoutSeconds = connectTimeoutSeconds;
+        }
+
+        public int getTotalTimeoutSeconds() {
+            return totalTimeoutSeconds;
+        }
+
+        public void setTotalTimeoutSeconds(int totalTimeoutSeconds) {
+            this.totalTimeoutSeconds = totalTimeoutSeconds;
+        }
 
+        public int getMaxConnectionsPerHost() {
+            return maxConnectionsPerHost;
+        }
+
+        public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+            this.maxConnectionsPerHost = maxConnectionsPerHost;
+        }
+
+        public boolean isHttp2() {
+            return http2;
+        }
+
+        public void setHttp2(boolean http2) {
+            this.http2 = http2;
+        }
+    }
+
+    public static class Outbox {
+        private String directory = System.getProperty("java.io.tmpdir") + "/pdf-outbox";
+        private int retentionHours = 24;
+        private int initialBackoffSeconds = 5;
+        private int maxBackoffSeconds = 600;
+        private int breakerFailureThreshold = 5;
+        private int breakerOpenSeconds = 60;
+        private String keySecret = "";
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public int getRetentionHours() {
+            return retentionHours;
+        }
+
+        public void setRetentionHours(int retentionHours) {
+            this.retentionHours = retentionHours;
+        }
+
+        public int getInitialBackoffSeconds() {
+            return initialBackoffSeconds;
+        }
+
+        public void setInitialBackoffSeconds(int initialBackoffSeconds) {
+            this.initialBackoffSeconds = initialBackoffSeconds;
+        }
+
+        public int getMaxBackoffSeconds() {
+            return maxBackoffSeconds;
+        }
+
+        public void setMaxBackoffSeconds(int maxBackoffSeconds) {
+            this.maxBackoffSeconds = maxBackoffSeconds;
+        }
+
+        public int getBreakerFailureThreshold() {
+            return breakerFailureThreshold;
+        }
+
+        public void setBreakerFailureThreshold(int breakerFailureThreshold) {
+            this.breakerFailureThreshold = breakerFailureThreshold;
+        }
+
+        public int getBreakerOpenSeconds() {
+            return breakerOpenSeconds;
+        }
+
+        public void setBreakerOpenSeconds(int breakerOpenSeconds) {
+            this.breakerOpenSeconds = breakerOpenSeconds;
+        }
+
+        public String getKeySecret() {
+            return keySecret;
+        }
+
+        public void setKeySecret(String keySecret) {
+            this.keySecret = keySecret;
+        }
+    }
 }
@@ -6,8 +6,17 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 public class PdfCompressionProperties {
 
     private long maxInputBytes = 25L * 1024 * 1024;
+    private long syncTimeoutSeconds = 120;
 
     private final Gs gs = new Gs();
+    private final Queue queue = new Queue();
+    private final Cache cache = new Cache();
+    private final Split split = new Split();
+    private final Stages stages = new Stages();
+    private final Preflight preflight = new Preflight();
+    private final Quality quality = new Quality();
+    private final TargetSize targetSize = new TargetSize();
+    private final Engine engine = new Engine();
 
     public long getMaxInputBytes() {
         return maxInputBytes;
@@ -17,15 +26,59 @@ public class PdfCompressionProperties {
         this.maxInputBytes = maxInputBytes;
     }
 
-    public Gs gs() {
+    public long getSyncTimeoutSeconds() {
+        return syncTimeoutSeconds;
+    }
+
+    public void setSyncTimeoutSeconds(long syncTimeoutSeconds) {
+        this.syncTimeoutSeconds = syncTimeoutSeconds;
+    }
+
+    public Gs getGs() {
         return gs;
     }
 
+    public Queue getQueue() {
+        return queue;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public Split getSplit() {
+        return split;
+    }
+
+    public Stages getStages() {
+        return stages;
+    }
+
+    public Preflight getPreflight() {
+        return preflight;
+    }
+
+    public Quality getQuality() {
+        return quality;
+    }
+
+    public TargetSize getTargetSize() {
+        return targetSize;
+    }
+
+    public Engine getEngine() {
+        return engine;
+    }
+
     public static class Gs {
         private String path = "gs";
         private String profile = "ebook";
         private int timeoutSeconds = 30;
         private int maxConcurrent = 1;
+        private String mode = "process";
+        private String library = "libgs.so.10";
+        private boolean pipeOutput = false;
+        private final Pool pool = new Pool();
 
         public String getPath() {
             return path;
@@ -58,6 +111,304 @@ public class PdfCompressionProperties {
         public void setMaxConcurrent(int maxConcurrent) {
             this.maxConcurrent = maxConcurrent;
         }
+
+        public String getMode() {
+            return mode;
+        }
+
+        public void setMode(String mode) {
+            this.mode = mode;
+        }
+
+        public String getLibrary() {
+            return library;
+        }
+
+        public void setLibrary(String library) {
+            this.library = library;
+        }
+
+        public boolean isPipeOutput() {
+            return pipeOutput;
+        }
+
+        public void setPipeOutput(boolean pipeOutput) {
+            this.pipeOutput = pipeOutput;
+        }
+
+        public Pool getPool() {
+            return pool;
+        }
+    }
+
+    public static class Pool {
+        private int maxJobsPerWorker = 200;
+        private long maxRssMb = 512;
+        private long healthCheckSeconds = 60;
+
+        public int getMaxJobsPerWorker() {
+            return maxJobsPerWorker;
+        }
+
+        public void setMaxJobsPerWorker(int maxJobsPerWorker) {
+            this.maxJobsPerWorker = maxJobsPerWorker;
+        }
+
+        public long getMaxRssMb() {
+            return maxRssMb;
+        }
+
+        public void setMaxRssMb(long maxRssMb) {
+            this.maxRssMb = maxRssMb;
+        }
+
+        public long getHealthCheckSeconds() {
+            return healthCheckSeconds;
+        }
+
+        public void setHealthCheckSeconds(long healthCheckSeconds) {
+            this.healthCheckSeconds = healthCheckSeconds;
+        }
+    }
+
+    public static class Queue {
+        private int capacity = 100;
+        private long retryAfterSeconds = 30;
+        private String policy = "sjf";
+        private double agingFactor = 0.2;
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public void setCapacity(int capacity) {
+            this.capacity = capacity;
+        }
+
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+
+        public void setRetryAfterSeconds(long retryAfterSeconds) {
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public String getPolicy() {
+            return policy;
+        }
+
+        public void setPolicy(String policy) {
+            this.policy = policy;
+        }
+
+        public double getAgingFactor() {
+            return agingFactor;
+        }
+
+        public void setAgingFactor(double agingFactor) {
+            this.agingFactor = agingFactor;
+        }
+    }
+
+    public static class Cache {
+        private boolean enabled = true;
+        private String directory = System.getProperty("java.io.tmpdir") + "/pdf-cache";
+        private long maxBytes = 512L * 1024 * 1024;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public long getMaxBytes() {
+            return maxBytes;
+        }
+
+        public void setMaxBytes(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+    }
+
+    public static class Split {
+        private boolean enabled = false;
+        private long minBytes = 8L * 1024 * 1024;
+        private int minPages = 40;
+        private int minPagesPerPart = 10;
+        private int parallelism = 0;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getMinBytes() {
+            return minBytes;
+        }
+
+        public void setMinBytes(long minBytes) {
+            this.minBytes = minBytes;
+        }
+
+        public int getMinPages() {
+            return minPages;
+        }
+
+        public void setMinPages(int minPages) {
+            this.minPages = minPages;
+        }
+
+        public int getMinPagesPerPart() {
+            return minPagesPerPart;
+        }
+
+        public void setMinPagesPerPart(int minPagesPerPart) {
+            this.minPagesPerPart = minPagesPerPart;
+        }
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+    }
+
+    public static class Preflight {
+        private boolean passThrough = true;
+        private long passThroughMaxBytesPerPage = 100L * 1024;
+
+        public boolean isPassThrough() {
+            return passThrough;
+        }
+
+        public void setPassThrough(boolean passThrough) {
+            this.passThrough = passThrough;
+        }
+
+        public long getPassThroughMaxBytesPerPage() {
+            return passThroughMaxBytesPerPage;
+        }
+
+        public void setPassThroughMaxBytesPerPage(long passThroughMaxBytesPerPage) {
+            this.passThroughMaxBytesPerPage = passThroughMaxBytesPerPage;
+        }
+    }
+
+    public static class Quality {
+        private boolean adaptive = false;
+        private double reduceAt = 0.5;
+        private double minimalAt = 0.8;
+        private double hysteresis = 0.15;
+
+        public boolean isAdaptive() {
+            return adaptive;
+        }
+
+        public void setAdaptive(boolean adaptive) {
+            this.adaptive = adaptive;
+        }
+
+        public double getReduceAt() {
+            return reduceAt;
+        }
+
+        public void setReduceAt(double reduceAt) {
+            this.reduceAt = reduceAt;
+        }
+
+        public double getMinimalAt() {
+            return minimalAt;
+        }
+
+        public void setMinimalAt(double minimalAt) {
+            this.minimalAt = minimalAt;
+        }
+
+        public double getHysteresis() {
+            return hysteresis;
+        }
+
+        public void setHysteresis(double hysteresis) {
+            this.hysteresis = hysteresis;
+        }
+    }
+
+    public static class Engine {
+        private String mode = "auto";
+
+        public String getMode() {
+            return mode;
+        }
+
+        public void setMode(String mode) {
+            this.mode = mode;
+        }
+    }
+
+    public static class TargetSize {
+        private int maxParallel = 3;
+
+        public int getMaxParallel() {
+            return maxParallel;
+        }
+
+        public void setMaxParallel(int maxParallel) {
+            this.maxParallel = maxParallel;
+        }
+    }
+
+    public static class Stages {
+        private final Stage validate = new Stage(Runtime.getRuntime().availableProcessors(), 50);
+        private final Stage deliver = new Stage(16, 200);
+
+        public Stage getValidate() {
+            return validate;
+        }
+
+        public Stage getDeliver() {
+            return deliver;
+        }
+    }
+
+    public static class Stage {
+        private int concurrency;
+        private int queueCapacity;
+
+        public Stage(int concurrency, int queueCapacity) {
+            this.concurrency = concurrency;
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        public void setConcurrency(int concurrency) {
+            this.concurrency = concurrency;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
     }
 
 }
@@ -0,0 +1,27 @@
+package com.thomaz.config;
+
+import com.thomaz.service.PipelineStage;
+import com.thomaz.service.ProxyMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class PipelineConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public PipelineStage validateStage(PdfCompressionProperties props, ProxyMetrics metrics,
+                                       @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        final PdfCompressionProperties.Stage stage = props.getStages().getValidate();
+        return new PipelineStage("validate", stage.getConcurrency(), stage.getQueueCapacity(),
+                props.getQueue().getRetryAfterSeconds(), virtualThreads, metrics);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public PipelineStage deliverStage(PdfCompressionProperties props, ProxyMetrics metrics,
+                                      @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        final PdfCompressionProperties.Stage stage = props.getStages().getDeliver();
+        return new PipelineStage("deliver", stage.getConcurrency(), stage.getQueueCapacity(),
+                props.getQueue().getRetryAfterSeconds(), virtualThreads, metrics);
+    }
+}
@@ -0,0 +1,23 @@
+package com.thomaz.config.exception;
+
+public class CompressionTimeoutException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public CompressionTimeoutException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    @Override
+    public String toString() {
+        return "CompressionTimeoutException{" +
+                "message=" + getMessage() +
+                ", retryAfterSeconds=" + retryAfterSeconds +
+                '}';
+    }
+}
@@ -3,6 +3,8 @@ package com.thomaz.config.exception;
 import org.jspecify.annotations.NonNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -26,6 +28,28 @@ public class RestControllerAdvice {
         return handleError(e, 401);
     }
 
+    @ExceptionHandler(ServerBusyException.class)
+    public ResponseEntity<@NonNull Map<String, Object>> handleServerBusyException(ServerBusyException e) {
+        LOGGER.warn("Rejected request: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(Map.of(
+                        "message", "Erro: " + safeGetMessage(e),
+                        "retryAfterSeconds", e.getRetryAfterSeconds()
+                ));
+    }
+
+    @ExceptionHandler(CompressionTimeoutException.class)
+    public ResponseEntity<@NonNull Map<String, Object>> handleCompressionTimeoutException(CompressionTimeoutException e) {
+        LOGGER.warn("Compression timed out: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(Map.of(
+                        "message", "Erro: " + safeGetMessage(e),
+                        "retryAfterSeconds", e.getRetryAfterSeconds()
+                ));
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<@NonNull Map<String, Object>> handleUnexpectedException(Exception e) {
         return handleError(e, 500);
@@ -0,0 +1,23 @@
+package com.thomaz.config.exception;
+
+public class ServerBusyException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public ServerBusyException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    @Override
+    public String toString() {
+        return "ServerBusyException{" +
+                "message=" + getMessage() +
+                ", retryAfterSeconds=" + retryAfterSeconds +
+                '}';
+    }
+}
@@ -0,0 +1,11 @@
+package com.thomaz.form;
+
+public record CacheStats(
+        long hits,
+        long misses,
+        long coalesced,
+        long evictions,
+        int entries,
+        long bytes,
+        long maxBytes
+) {}
@@ -0,0 +1,13 @@
+package com.thomaz.form;
+
+public record CallbackHostStats(
+        String host,
+        int activeConnections,
+        int idleConnections,
+        int pendingConnections,
+        long requests,
+        long failures,
+        long timeouts,
+        long meanMillis,
+        long maxMillis
+) {}
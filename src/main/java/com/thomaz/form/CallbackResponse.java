@@ -0,0 +1,29 @@
+package com.thomaz.form;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.Optional;
+
+// status is 0 when no response arrived (timeout, connection error)
+public record CallbackResponse<T>(
+        int status,
+        @Nullable T body
+) {
+
+    public static <T> CallbackResponse<T> noResponse() {
+        return new CallbackResponse<>(0, null);
+    }
+
+    public boolean delivered() {
+        return status >= 200 && status < 300;
+    }
+
+    // a 4xx will not change on retry, except a timeout or rate limit on the other side
+    public boolean permanent() {
+        return status >= 400 && status < 500 && status != 408 && status != 429;
+    }
+
+    public Optional<T> payload() {
+        return delivered() ? Optional.ofNullable(body) : Optional.empty();
+    }
+}
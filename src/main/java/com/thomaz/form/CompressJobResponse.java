@@ -0,0 +1,9 @@
+package com.thomaz.form;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+
+public record CompressJobResponse(
+        @JsonUnwrapped
+        CompressParameters parameters,
+        int queuePosition
+) {}
@@ -2,9 +2,9 @@ package com.thomaz.form;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.thomaz.config.exception.AuthorizationException;
+import com.thomaz.config.exception.InvalidRequestException;
 import jakarta.servlet.http.HttpServletRequest;
 import org.jspecify.annotations.Nullable;
-import org.springframework.web.multipart.MultipartFile;
 
 import java.text.Normalizer;
 import java.util.Optional;
@@ -14,21 +14,47 @@ public record CompressParameters(
         String fallbackFilename,
         String compressionId,
         String organizationId,
+        CompressionPriority priority,
+        @Nullable Long targetBytes,
         @JsonIgnore
         String decryptKey
 ) {
 
-    public static CompressParameters fromMultipartRequest(HttpServletRequest request, MultipartFile file) {
+    public static CompressParameters fromRequest(HttpServletRequest request, @Nullable String originalFilename) {
         String compressionId = getHeader(request, "Compression-Id");
         String organizationId = getHeader(request, "Organization-Id");
         String decryptKey = getHeader(request, "Decrypt-Key");
-        String fileName = Optional.ofNullable(file.getOriginalFilename()).orElse("original.pdf");
-        String fallbackFilename = Optional.ofNullable(file.getOriginalFilename()).map(CompressParameters::headerSafeFilename).orElse("original.pdf");
+        CompressionPriority priority = CompressionPriority.fromHeader(request.getHeader("Compression-Priority"));
+        Long targetBytes = parseTargetBytes(request.getHeader("Compression-Target-Size"));
+        String fileName = Optional.ofNullable(originalFilename).orElse("original.pdf");
+        String fallbackFilename = Optional.ofNullable(originalFilename).map(CompressParameters::headerSafeFilename).orElse("original.pdf");
 
-        return new CompressParameters(fileName, fallbackFilename, compressionId, organizationId, decryptKey);
+        return new CompressParameters(fileName, fallbackFilename, compressionId, organizationId, priority, targetBytes, decryptKey);
     }
 
 
+    // the filename only arrives with the file part, after the headers have been checked
+    public CompressParameters withOriginalFilename(@Nullable String originalFilename) {
+        return new CompressParameters(
+                Optional.ofNullable(originalFilename).orElse("original.pdf"),
+                Optional.ofNullable(originalFilename).map(CompressParameters::headerSafeFilename).orElse("original.pdf"),
+                compressionId, organizationId, priority, targetBytes, decryptKey);
+    }
+
+    private static @Nullable Long parseTargetBytes(@Nullable String header) {
+        if (header == null || header.isBlank()) {
+            return null;
+        }
+        try {
+            final long bytes = Long.parseLong(header.trim());
+            if (bytes > 0) {
+                return bytes;
+            }
+        } catch (NumberFormatException _) {
+        }
+        throw new InvalidRequestException("Compression-Target-Size must be a positive number of bytes");
+    }
+
     private static String getHeader(HttpServletRequest request, String header) {
         return Optional.ofNullable(request.getHeader(header))
                 .orElseThrow(() -> new AuthorizationException("Missing " + header + " header"));
@@ -0,0 +1,18 @@
+package com.thomaz.form;
+
+import java.util.Optional;
+
+public record CompressionError(
+        String message,
+        String exception,
+        String cause
+) {
+
+    public static CompressionError from(Exception e) {
+        return new CompressionError(
+                e.getMessage() != null ? e.getMessage() : "Erro inesperado",
+                e.getClass().getSimpleName(),
+                Optional.ofNullable(e.getCause()).orElse(e).getClass().getSimpleName()
+        );
+    }
+}
@@ -0,0 +1,22 @@
+package com.thomaz.form;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.Locale;
+
+public enum CompressionPriority {
+    HIGH,
+    NORMAL,
+    LOW;
+
+    public static CompressionPriority fromHeader(@Nullable String header) {
+        if (header == null || header.isBlank()) {
+            return NORMAL;
+        }
+        return switch (header.trim().toLowerCase(Locale.ROOT)) {
+            case "high" -> HIGH;
+            case "low" -> LOW;
+            default -> NORMAL;
+        };
+    }
+}
@@ -0,0 +1,18 @@
+package com.thomaz.form;
+
+import org.jspecify.annotations.Nullable;
+
+import java.nio.file.Path;
+
+public record IngestedPdf(
+        Path path,
+        long size,
+        String sha256,
+        @Nullable String originalFilename,
+        PdfFeatures features
+) {
+
+    public IngestedPdf withFeatures(PdfFeatures features) {
+        return new IngestedPdf(path, size, sha256, originalFilename, features);
+    }
+}
@@ -0,0 +1,9 @@
+package com.thomaz.form;
+
+public record PdfFeatures(
+        int pages,
+        int images
+) {
+
+    public static final PdfFeatures UNKNOWN = new PdfFeatures(0, 0);
+}
@@ -0,0 +1,29 @@
+package com.thomaz.form;
+
+import java.util.Set;
+
+public record PreflightReport(
+        int pages,
+        boolean encrypted,
+        boolean linearized,
+        boolean truncated,
+        int images,
+        Set<String> imageFilters,
+        long imageBytes,
+        int streams,
+        int unfilteredStreams,
+        boolean uncertain
+) {
+
+    public boolean textOnly() {
+        return images == 0;
+    }
+
+    public boolean fullyCompressed() {
+        return streams > 0 && unfilteredStreams == 0;
+    }
+
+    public PdfFeatures features() {
+        return new PdfFeatures(pages, images);
+    }
+}
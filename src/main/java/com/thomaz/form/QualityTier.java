@@ -0,0 +1,9 @@
+package com.thomaz.form;
+
+public enum QualityTier {
+    ORIGINAL,
+    FULL,
+    REDUCED,
+    MINIMAL,
+    TARGET_SIZE
+}
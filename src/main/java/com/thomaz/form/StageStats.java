@@ -0,0 +1,11 @@
+package com.thomaz.form;
+
+public record StageStats(
+        String stage,
+        int concurrency,
+        int capacity,
+        int active,
+        int queued,
+        long completed,
+        long rejected
+) {}
@@ -0,0 +1,12 @@
+package com.thomaz.form;
+
+public record TenantQueueStats(
+        String organizationId,
+        int weight,
+        int maxInFlight,
+        int queued,
+        int inFlight,
+        long dispatched,
+        long meanWaitMillis,
+        long maxWaitMillis
+) {}
@@ -0,0 +1,29 @@
+package com.thomaz.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.jspecify.annotations.Nullable;
+
+@Name("com.thomaz.Callback")
+@Label("Sydle Callback")
+@Category({"Proxy", "Callback"})
+@StackTrace(false)
+public class CallbackEvent extends jdk.jfr.Event {
+
+    @Label("Endpoint")
+    public @Nullable String endpoint;
+
+    @Label("Compression Id")
+    public @Nullable String compressionId;
+
+    @Label("Organization")
+    public @Nullable String organizationId;
+
+    @Label("Outcome")
+    public @Nullable String outcome;
+
+    @Label("Status Code")
+    public int statusCode;
+}
@@ -0,0 +1,46 @@
+package com.thomaz.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.jspecify.annotations.Nullable;
+
+@Name("com.thomaz.Compression")
+@Label("PDF Compression")
+@Description("One compression job, from cache lookup to the result file being written")
+@Category({"Proxy", "Compression"})
+@StackTrace(false)
+public class CompressionEvent extends jdk.jfr.Event {
+
+    @Label("Compression Id")
+    public @Nullable String compressionId;
+
+    @Label("Organization")
+    public @Nullable String organizationId;
+
+    @Label("Engine")
+    public @Nullable String engine;
+
+    @Label("Profile")
+    public @Nullable String profile;
+
+    @Label("Quality Tier")
+    public @Nullable String qualityTier;
+
+    @Label("Input Size")
+    @DataAmount
+    public long inputBytes;
+
+    @Label("Output Size")
+    @DataAmount
+    public long outputBytes;
+
+    @Label("Cache Hit")
+    public boolean cacheHit;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+}
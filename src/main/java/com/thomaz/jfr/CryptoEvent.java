@@ -0,0 +1,25 @@
+package com.thomaz.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.jspecify.annotations.Nullable;
+
+@Name("com.thomaz.Crypto")
+@Label("AES-GCM Operation")
+@Category({"Proxy", "Crypto"})
+@StackTrace(false)
+public class CryptoEvent extends jdk.jfr.Event {
+
+    @Label("Operation")
+    public @Nullable String operation;
+
+    @Label("Size")
+    @DataAmount
+    public long bytes;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+}
@@ -0,0 +1,37 @@
+package com.thomaz.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.jspecify.annotations.Nullable;
+
+@Name("com.thomaz.Ghostscript")
+@Label("Ghostscript Run")
+@Description("A single Ghostscript invocation; page-range splits and target-size attempts emit one each")
+@Category({"Proxy", "Compression"})
+@StackTrace(false)
+public class GhostscriptEvent extends jdk.jfr.Event {
+
+    public static final int NO_EXIT_CODE = Integer.MIN_VALUE;
+
+    @Label("Mode")
+    @Description("process, piped, pool or libgs")
+    public @Nullable String mode;
+
+    @Label("Exit Code")
+    public int exitCode = NO_EXIT_CODE;
+
+    @Label("Timed Out")
+    public boolean timedOut;
+
+    @Label("Input Size")
+    @DataAmount
+    public long inputBytes;
+
+    @Label("Output Size")
+    @DataAmount
+    public long outputBytes;
+}
@@ -0,0 +1,4 @@
+@NullMarked
+package com.thomaz.jfr;
+
+import org.jspecify.annotations.NullMarked;
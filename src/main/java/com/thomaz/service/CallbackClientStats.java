@@ -0,0 +1,181 @@
+package com.thomaz.service;
+
+import com.thomaz.config.PdfCallbackProperties;
+import com.thomaz.form.CallbackHostStats;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+// The JDK client keeps its connection pool to itself, so the pool is tracked at the call boundary:
+// a call holds one of max-connections-per-host permits while it runs (active), waits for one when
+// all are taken (pending), and leaves its connection in the pool when it ends (idle) until the
+// JVM-wide jdk.httpclient.keepalive.timeout closes it. Over HTTP/2 every call to a host shares one
+// connection, so the same numbers count streams.
+@Component
+public class CallbackClientStats {
+
+    private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+    private final ProxyMetrics metrics;
+    private final int maxConnectionsPerHost;
+    private final long keepAliveNanos;
+
+    public CallbackClientStats(ProxyMetrics metrics, PdfCallbackProperties props) {
+        this.metrics = metrics;
+        this.maxConnectionsPerHost = Math.max(1, props.getHttp().getMaxConnectionsPerHost());
+        this.keepAliveNanos = TimeUnit.SECONDS.toNanos(Long.getLong("jdk.httpclient.keepalive.timeout", 30));
+    }
+
+    public Call start(String uri, String endpoint, String organizationId) {
+        final Host host = hosts.computeIfAbsent(hostOf(uri), name -> {
+            final Host created = new Host();
+            metrics.callbackConnectionGauges(name, () -> created.toStats(name));
+            return created;
+        });
+        return new Call(host, endpoint, organizationId, System.nanoTime());
+    }
+
+    public List<CallbackHostStats> snapshot() {
+        return hosts.entrySet().stream()
+                .map(e -> e.getValue().toStats(e.getKey()))
+                .sorted(Comparator.comparing(CallbackHostStats::host))
+                .toList();
+    }
+
+    private static String hostOf(String uri) {
+        try {
+            final String host = URI.create(uri).getHost();
+            return host != null ? host : "unknown";
+        } catch (IllegalArgumentException _) {
+            return "unknown";
+        }
+    }
+
+    public enum Outcome { SUCCESS, FAILURE, TIMEOUT }
+
+    public final class Call {
+        private final Host host;
+        private final String endpoint;
+        private final String organizationId;
+        private final long startNanos;
+        private boolean connected;
+
+        private Call(Host host, String endpoint, String organizationId, long startNanos) {
+            this.host = host;
+            this.endpoint = endpoint;
+            this.organizationId = organizationId;
+            this.startNanos = startNanos;
+        }
+
+        // waits for one of the host's connections; the time spent here shows as pending
+        public void connect(Duration timeout) throws InterruptedException, TimeoutException {
+            host.pending.incrementAndGet();
+            try {
+                if (!host.permits.tryAcquire(timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                    throw new TimeoutException("no callback connection free after " + timeout);
+                }
+            } finally {
+                host.pending.decrementAndGet();
+            }
+            connected = true;
+            host.checkOut();
+        }
+
+        public void end(Outcome outcome) {
+            final long nanos = System.nanoTime() - startNanos;
+            metrics.callback(endpoint, organizationId, outcome.name().toLowerCase(Locale.ROOT), nanos);
+            if (connected) {
+                host.checkIn();
+                host.permits.release();
+            }
+            host.requests.incrementAndGet();
+            host.totalNanos.addAndGet(nanos);
+            host.maxNanos.accumulateAndGet(nanos, Math::max);
+            switch (outcome) {
+                case FAILURE -> host.failures.incrementAndGet();
+                case TIMEOUT -> host.timeouts.incrementAndGet();
+                case SUCCESS -> { }
+            }
+        }
+    }
+
+    private final class Host {
+        private final Semaphore permits = new Semaphore(maxConnectionsPerHost, true);
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong timeouts = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final ReentrantLock lock = new ReentrantLock();
+        // when each pooled connection went idle, most recent last
+        private final Deque<Long> idleSince = new ArrayDeque<>();
+
+        // a call takes a connection left idle in the pool if there is one, or opens a new one
+        private void checkOut() {
+            lock.lock();
+            try {
+                expire(System.nanoTime());
+                idleSince.pollLast();
+                active.incrementAndGet();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void checkIn() {
+            lock.lock();
+            try {
+                active.decrementAndGet();
+                idleSince.addLast(System.nanoTime());
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private int idle() {
+            lock.lock();
+            try {
+                expire(System.nanoTime());
+                return idleSince.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void expire(long now) {
+            while (!idleSince.isEmpty() && now - idleSince.peekFirst() >= keepAliveNanos) {
+                idleSince.pollFirst();
+            }
+        }
+
+        private CallbackHostStats toStats(String host) {
+            final long count = requests.get();
+            return new CallbackHostStats(
+                    host,
+                    active.get(),
+                    idle(),
+                    pending.get(),
+                    count,
+                    failures.get(),
+                    timeouts.get(),
+                    count == 0 ? 0 : totalNanos.get() / count / 1_000_000,
+                    maxNanos.get() / 1_000_000
+            );
+        }
+    }
+}
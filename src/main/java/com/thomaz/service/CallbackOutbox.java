@@ -0,0 +1,351 @@
+package com.thomaz.service;
+
+import com.thomaz.config.Crypto;
+import com.thomaz.config.PdfCallbackProperties;
+import com.thomaz.config.exception.CryptoException;
+import com.thomaz.form.CallbackResponse;
+import com.thomaz.form.CompressParameters;
+import com.thomaz.form.CompressionError;
+import com.thomaz.form.FileResponse;
+import com.thomaz.form.QualityTier;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+@Component
+public class CallbackOutbox {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CallbackOutbox.class);
+    private static final String ENTRY_SUFFIX = ".json";
+    private static final String KEY_SUFFIX = ".key";
+    private static final String FILE_SUFFIX = ".pdf";
+    private static final String DEAD_LETTER_DIRECTORY = "dead-letter";
+
+    private final PdfCallbackSenderService callbackSender;
+    private final JsonMapper jsonMapper;
+    private final PipelineStage deliverStage;
+    private final PdfCallbackProperties.Outbox props;
+    private final Path directory;
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    // Decrypt-Key per entry id; only its encrypted form is ever written to disk
+    private final Map<String, String> keys = new ConcurrentHashMap<>();
+    private final String keySecret;
+
+    public CallbackOutbox(PdfCallbackSenderService callbackSender,
+                          JsonMapper jsonMapper,
+                          PdfCallbackProperties props,
+                          @Qualifier("deliverStage") PipelineStage deliverStage) {
+        this.callbackSender = callbackSender;
+        this.jsonMapper = jsonMapper;
+        this.deliverStage = deliverStage;
+        this.props = props.getOutbox();
+        this.directory = Path.of(this.props.getDirectory());
+        // without it every pending callback would be dead-lettered on the next restart, so refuse to start
+        if (this.props.getKeySecret().isBlank()) {
+            throw new IllegalStateException("callback.outbox.key-secret (CALLBACK_OUTBOX_KEY_SECRET) is not set; "
+                    + "generate a base64 AES-256 key and configure it so pending callbacks survive a restart");
+        }
+        this.keySecret = this.props.getKeySecret();
+        // a malformed key would otherwise only show up at the first callback
+        Crypto.encrypt("outbox", keySecret);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resume() throws IOException {
+        Files.createDirectories(directory);
+        final List<Path> pending;
+        final List<Path> keyFiles;
+        try (Stream<Path> files = Files.list(directory)) {
+            final List<Path> all = files.toList();
+            pending = all.stream().filter(f -> f.getFileName().toString().endsWith(ENTRY_SUFFIX)).toList();
+            keyFiles = all.stream().filter(f -> f.getFileName().toString().endsWith(KEY_SUFFIX)).toList();
+        }
+        // a key whose entry was never written, or was removed while the app was down
+        for (Path key : keyFiles) {
+            final String name = key.getFileName().toString();
+            if (!Files.exists(entryOf(name.substring(0, name.length() - KEY_SUFFIX.length())))) {
+                Util.safeDelete(key);
+            }
+        }
+        for (Path file : pending) {
+            try {
+                final Entry entry = jsonMapper.readValue(Files.readAllBytes(file), Entry.class);
+                schedule(entry, entry.nextAttemptAt());
+            } catch (IOException | JacksonException e) {
+                LOGGER.error("dropping unreadable outbox entry {}", file, e);
+                discard(idOf(file));
+            }
+        }
+        LOGGER.info("callback outbox at {} resumed {} pending entries", directory, pending.size());
+    }
+
+    public void enqueueUpload(CompressParameters params, Path out, QualityTier tier) throws IOException {
+        final Entry entry = Entry.create(Step.UPLOAD, params, null, null, tier);
+        Files.createDirectories(directory);
+        Files.move(out, fileOf(entry.id()), StandardCopyOption.REPLACE_EXISTING);
+        persist(entry, params.decryptKey());
+        attempt(entry);
+    }
+
+    public void enqueueError(CompressParameters params, CompressionError error) throws IOException {
+        final Entry entry = Entry.create(Step.SET_TO_ERROR, params, null, error, null);
+        Files.createDirectories(directory);
+        persist(entry, params.decryptKey());
+        attempt(entry);
+    }
+
+    public void enqueueComplete(CompressParameters params, FileResponse uploaded, QualityTier tier) throws IOException {
+        final Entry entry = Entry.create(Step.COMPLETE, params, uploaded, null, tier);
+        Files.createDirectories(directory);
+        persist(entry, params.decryptKey());
+        attempt(entry);
+    }
+
+    private void attempt(Entry entry) {
+        final Instant now = Instant.now();
+        if (now.isAfter(entry.createdAt().plus(Duration.ofHours(props.getRetentionHours())))) {
+            deadLetter(entry, "retention expired after " + entry.attempts() + " attempts");
+            return;
+        }
+        final Optional<CompressParameters> params = readKey(entry.id()).map(entry::paramsWithKey);
+        if (params.isEmpty()) {
+            deadLetter(entry, "decrypt key is missing");
+            return;
+        }
+
+        final CircuitBreaker breaker = breakers.computeIfAbsent(entry.params().organizationId(),
+                _ -> new CircuitBreaker(props.getBreakerFailureThreshold(), Duration.ofSeconds(props.getBreakerOpenSeconds())));
+        final Optional<Instant> blockedUntil = breaker.blockedUntil(now);
+        if (blockedUntil.isPresent()) {
+            schedule(entry, blockedUntil.get());
+            return;
+        }
+
+        final Delivery delivery = switch (entry.step()) {
+            case UPLOAD -> {
+                final CallbackResponse<FileResponse> response = callbackSender.uploadPdf(fileOf(entry.id()), params.get());
+                if (response.payload().isPresent()) {
+                    LOGGER.info("compression [{}] uploaded with response: {}", entry.params().compressionId(), response.body());
+                    advance(entry.completing(response.payload().get()));
+                    yield Delivery.DELIVERED;
+                }
+                if (response.delivered()) {
+                    // uploading again would only add a second copy of a file we cannot reference
+                    LOGGER.error("upload for compression [{}] was accepted without a file reference", entry.params().compressionId());
+                    yield Delivery.REJECTED;
+                }
+                yield outcomeOf(response);
+            }
+            case COMPLETE -> outcomeOf(callbackSender.completeCompression(params.get(), requireNonNull(entry.fileResponse()), entry.qualityTier()));
+            case SET_TO_ERROR -> outcomeOf(callbackSender.logCompressionError(params.get(), requireNonNull(entry.error())));
+        };
+
+        if (delivery == Delivery.DELIVERED) {
+            breaker.onSuccess();
+            if (entry.step() != Step.UPLOAD) {
+                LOGGER.info("{} callback for compression [{}] delivered", entry.step(), entry.params().compressionId());
+                discard(entry.id());
+            }
+            return;
+        }
+        if (delivery == Delivery.REJECTED) {
+            // the host answered, so it is not down; this callback will just never be accepted
+            breaker.onSuccess();
+            deadLetter(entry, "rejected by the callback host");
+            return;
+        }
+        breaker.onFailure(now);
+        final Entry retry = entry.retrying(now.plus(backoff(entry.attempts() + 1)));
+        try {
+            persist(retry, null);
+        } catch (IOException e) {
+            LOGGER.error("could not persist retry of outbox entry {}", entry.id(), e);
+        }
+        LOGGER.warn("{} callback for compression [{}] failed (attempt {}), retrying at {}",
+                entry.step(), entry.params().compressionId(), retry.attempts(), retry.nextAttemptAt());
+        schedule(retry, retry.nextAttemptAt());
+    }
+
+    private static Delivery outcomeOf(CallbackResponse<?> response) {
+        if (response.delivered()) {
+            return Delivery.DELIVERED;
+        }
+        return response.permanent() ? Delivery.REJECTED : Delivery.RETRY;
+    }
+
+    private void advance(Entry next) {
+        try {
+            persist(next, null);
+        } catch (IOException e) {
+            LOGGER.error("could not persist outbox entry {}", next.id(), e);
+        }
+        Util.safeDelete(fileOf(next.id()));
+        deliverStage.execute(() -> attempt(next));
+    }
+
+    private void schedule(Entry entry, Instant at) {
+        final long delayMs = Math.max(0, Duration.between(Instant.now(), at).toMillis());
+        CompletableFuture.delayedExecutor(delayMs, TimeUnit.MILLISECONDS, deliverStage).execute(() -> attempt(entry));
+    }
+
+    private Duration backoff(int attempt) {
+        final long initial = Math.max(1, props.getInitialBackoffSeconds()) * 1000L;
+        final long max = Math.max(initial, props.getMaxBackoffSeconds() * 1000L);
+        final long exponential = attempt >= 31 ? max : Math.min(max, initial << (attempt - 1));
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(exponential / 2, exponential + 1));
+    }
+
+    private void persist(Entry entry, @Nullable String decryptKey) throws IOException {
+        final Path target = entryOf(entry.id());
+        final Path tmp = directory.resolve(entry.id() + ENTRY_SUFFIX + ".tmp");
+        try {
+            if (decryptKey != null) {
+                keys.put(entry.id(), decryptKey);
+                writeKey(entry.id(), decryptKey);
+            }
+            Files.write(tmp, jsonMapper.writeValueAsBytes(entry));
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            if (decryptKey != null) {
+                keys.remove(entry.id());
+                Util.safeDelete(keyOf(entry.id()));
+            }
+            throw e;
+        }
+    }
+
+    // the key file is encrypted with the outbox secret and created owner-only, or not written at all
+    private void writeKey(String id, String decryptKey) throws IOException {
+        if (!FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            LOGGER.warn("not persisting the key of outbox entry {}: owner-only permissions are not supported here", id);
+            return;
+        }
+        final Path key = keyOf(id);
+        Files.deleteIfExists(key);
+        Files.createFile(key, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        Files.writeString(key, Crypto.encrypt(decryptKey, keySecret), StandardCharsets.UTF_8);
+    }
+
+    private Optional<String> readKey(String id) {
+        final String cached = keys.get(id);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        try {
+            final String decryptKey = Crypto.decryptWith(Files.readString(keyOf(id), StandardCharsets.UTF_8), keySecret);
+            keys.put(id, decryptKey);
+            return Optional.of(decryptKey);
+        } catch (IOException | CryptoException _) {
+            return Optional.empty();
+        }
+    }
+
+    private void discard(String id) {
+        keys.remove(id);
+        Util.safeDelete(keyOf(id));
+        Util.safeDelete(entryOf(id));
+        Util.safeDelete(fileOf(id));
+    }
+
+    // keeps the entry and its PDF for an operator to inspect or replay; the key never goes along
+    private void deadLetter(Entry entry, String reason) {
+        LOGGER.error("dead-lettering {} callback for compression [{}]: {}", entry.step(), entry.params().compressionId(), reason);
+        keys.remove(entry.id());
+        Util.safeDelete(keyOf(entry.id()));
+        try {
+            final Path deadLetters = Files.createDirectories(directory.resolve(DEAD_LETTER_DIRECTORY));
+            for (Path file : List.of(entryOf(entry.id()), fileOf(entry.id()))) {
+                if (Files.exists(file)) {
+                    Files.move(file, deadLetters.resolve(file.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.error("could not move outbox entry {} to the dead-letter directory", entry.id(), e);
+            discard(entry.id());
+        }
+    }
+
+    private Path entryOf(String id) {
+        return directory.resolve(id + ENTRY_SUFFIX);
+    }
+
+    private Path keyOf(String id) {
+        return directory.resolve(id + KEY_SUFFIX);
+    }
+
+    private Path fileOf(String id) {
+        return directory.resolve(id + FILE_SUFFIX);
+    }
+
+    private static String idOf(Path entryFile) {
+        final String name = entryFile.getFileName().toString();
+        return name.substring(0, name.length() - ENTRY_SUFFIX.length());
+    }
+
+    private static <T> T requireNonNull(@Nullable T value) {
+        if (value == null) {
+            throw new IllegalStateException("Outbox entry is missing its payload");
+        }
+        return value;
+    }
+
+    enum Step { UPLOAD, COMPLETE, SET_TO_ERROR }
+
+    private enum Delivery { DELIVERED, REJECTED, RETRY }
+
+    record Entry(
+            String id,
+            Step step,
+            CompressParameters params,
+            @Nullable FileResponse fileResponse,
+            @Nullable CompressionError error,
+            @Nullable QualityTier qualityTier,
+            int attempts,
+            Instant createdAt,
+            Instant nextAttemptAt
+    ) {
+        static Entry create(Step step, CompressParameters params, @Nullable FileResponse uploaded,
+                            @Nullable CompressionError error, @Nullable QualityTier qualityTier) {
+            final Instant now = Instant.now();
+            return new Entry(UUID.randomUUID().toString(), step, params, uploaded, error, qualityTier, 0, now, now);
+        }
+
+        Entry completing(FileResponse uploaded) {
+            return new Entry(id, Step.COMPLETE, params, uploaded, error, qualityTier, 0, createdAt, Instant.now());
+        }
+
+        Entry retrying(Instant at) {
+            return new Entry(id, step, params, fileResponse, error, qualityTier, attempts + 1, createdAt, at);
+        }
+
+        CompressParameters paramsWithKey(String decryptKey) {
+            return new CompressParameters(params.originalFileName(), params.fallbackFilename(), params.compressionId(),
+                    params.organizationId(), params.priority(), params.targetBytes(), decryptKey);
+        }
+    }
+}
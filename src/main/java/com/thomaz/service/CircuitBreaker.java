@@ -0,0 +1,48 @@
+package com.thomaz.service;
+
+import org.jspecify.annotations.Nullable;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+final class CircuitBreaker {
+
+    private final int failureThreshold;
+    private final Duration openFor;
+    private int consecutiveFailures;
+    private @Nullable Instant openUntil;
+    private boolean probing;
+
+    CircuitBreaker(int failureThreshold, Duration openFor) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openFor = openFor;
+    }
+
+    synchronized Optional<Instant> blockedUntil(Instant now) {
+        if (openUntil == null) {
+            return Optional.empty();
+        }
+        if (now.isBefore(openUntil)) {
+            return Optional.of(openUntil);
+        }
+        if (probing) {
+            return Optional.of(now.plus(openFor));
+        }
+        probing = true;
+        return Optional.empty();
+    }
+
+    synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        openUntil = null;
+        probing = false;
+    }
+
+    synchronized void onFailure(Instant now) {
+        probing = false;
+        if (++consecutiveFailures >= failureThreshold) {
+            openUntil = now.plus(openFor);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.thomaz.service;
+
+import com.thomaz.form.PdfFeatures;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+
+@Component
+public class CompressionCostModel {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CompressionCostModel.class);
+    private static final double[] PRIOR = {0.5, 0.4, 0.02, 0.05};
+    private static final double INITIAL_COVARIANCE = 10;
+    private static final double FORGETTING = 0.99;
+    private static final double MIN_SECONDS = 0.05;
+
+    private final double[] theta = PRIOR.clone();
+    private final double[][] covariance = new double[PRIOR.length][PRIOR.length];
+    private long observations;
+
+    public CompressionCostModel() {
+        resetCovariance();
+    }
+
+    public synchronized double estimateSeconds(long bytes, PdfFeatures features) {
+        return Math.max(MIN_SECONDS, dot(theta, featuresOf(bytes, features)));
+    }
+
+    // recursive least squares with exponential forgetting, so the fit follows drift in dyno speed
+    public synchronized void observe(long bytes, PdfFeatures features, double seconds) {
+        final double[] x = featuresOf(bytes, features);
+        final int n = x.length;
+        final double[] px = new double[n];
+        for (int i = 0; i < n; i++) {
+            px[i] = dot(covariance[i], x);
+        }
+        final double denominator = FORGETTING + dot(x, px);
+        final double error = seconds - dot(theta, x);
+        for (int i = 0; i < n; i++) {
+            theta[i] += px[i] / denominator * error;
+        }
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                covariance[i][j] = (covariance[i][j] - px[i] * px[j] / denominator) / FORGETTING;
+            }
+        }
+        observations++;
+
+        if (!Arrays.stream(theta).allMatch(Double::isFinite)) {
+            LOGGER.warn("cost model diverged after {} observations, resetting to prior", observations);
+            System.arraycopy(PRIOR, 0, theta, 0, PRIOR.length);
+            resetCovariance();
+        } else if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("cost model after {} observations: {}", observations, Arrays.toString(theta));
+        }
+    }
+
+    private void resetCovariance() {
+        for (int i = 0; i < covariance.length; i++) {
+            Arrays.fill(covariance[i], 0);
+            covariance[i][i] = INITIAL_COVARIANCE;
+        }
+    }
+
+    private static double[] featuresOf(long bytes, PdfFeatures features) {
+        return new double[]{1, bytes / 1_048_576.0, features.pages(), features.images()};
+    }
+
+    private static double dot(double[] a, double[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,377 @@
+package com.thomaz.service;
+
+import com.thomaz.config.PdfCompressionProperties;
+import com.thomaz.config.exception.ServerBusyException;
+import com.thomaz.form.CompressionPriority;
+import com.thomaz.form.StageStats;
+import com.thomaz.form.TenantQueueStats;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Component
+public class CompressionJobQueue {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CompressionJobQueue.class);
+    // cumulative stats outlive the lanes, which come and go with queued work; past this many
+    // tenants the least recently dispatched one is forgotten
+    private static final int MAX_TRACKED_TENANTS = 1_000;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition ready = lock.newCondition();
+    private final Map<String, Lane> lanes = new HashMap<>();
+    private final Map<String, Totals> totals = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Totals> eldest) {
+            return size() > MAX_TRACKED_TENANTS;
+        }
+    };
+    private final List<Thread> workers = new ArrayList<>();
+    private final TenantRegistry tenants;
+    private final ProxyMetrics metrics;
+    private final int capacity;
+    private final int workerCount;
+    private final long retryAfterSeconds;
+    private final boolean virtualThreads;
+    private final boolean shortestFirst;
+    private final double agingFactor;
+    private long sequence;
+    private int queued;
+    private int running;
+    private int borrowed;
+    private long completed;
+    private long rejected;
+    private double virtualTime;
+
+    public CompressionJobQueue(PdfCompressionProperties props,
+                               TenantRegistry tenants,
+                               ProxyMetrics metrics,
+                               @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.tenants = tenants;
+        this.metrics = metrics;
+        this.capacity = Math.max(1, props.getQueue().getCapacity());
+        this.workerCount = Math.max(1, props.getGs().getMaxConcurrent());
+        this.retryAfterSeconds = Math.max(1, props.getQueue().getRetryAfterSeconds());
+        this.virtualThreads = virtualThreads;
+        this.shortestFirst = "sjf".equalsIgnoreCase(props.getQueue().getPolicy());
+        this.agingFactor = Math.max(0, props.getQueue().getAgingFactor());
+        metrics.stageGauges("compress", this::stageStats, () -> {
+            final StageStats stats = stageStats();
+            return stats.capacity() - stats.active() - stats.queued();
+        });
+    }
+
+    @PostConstruct
+    public void start() {
+        for (int i = 0; i < workerCount; i++) {
+            final Thread.Builder builder = virtualThreads
+                    ? Thread.ofVirtual()
+                    : Thread.ofPlatform().daemon(true);
+            workers.add(builder.name("gs-worker-" + i).start(this::workLoop));
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        workers.forEach(Thread::interrupt);
+    }
+
+    public int submit(String organizationId, CompressionPriority priority, double estimatedSeconds, Runnable task) {
+        lock.lock();
+        try {
+            if (queued >= capacity) {
+                throw rejection();
+            }
+            final Lane lane = lanes.computeIfAbsent(organizationId, Lane::new);
+            if (lane.jobs.isEmpty()) {
+                // the start tag is fixed when the tenant becomes backlogged; were it taken against the
+                // moving virtual time at every pick, a tenant with over twice another's weight would
+                // always tag lower and starve it
+                lane.lastFinish = Math.max(virtualTime, lane.lastFinish);
+            }
+            final Job job = new Job(organizationId, priority, sequence++, System.nanoTime(), estimatedSeconds, task);
+            lane.jobs.add(job);
+            queued++;
+            ready.signal();
+            return estimatePosition(lane, job);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // lets the endpoints answer 429 before they read the upload; submit checks again, since the
+    // queue can fill up while the file streams in
+    public void requireCapacity() {
+        lock.lock();
+        try {
+            if (queued >= capacity) {
+                throw rejection();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // lets a running job use an idle gs slot for an extra process of its own, as long as nothing is
+    // waiting for it; until the slot is given back no worker starts another job in its place
+    public boolean tryBorrow() {
+        lock.lock();
+        try {
+            if (queued > 0 || running + borrowed >= workerCount) {
+                return false;
+            }
+            borrowed++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void giveBack() {
+        lock.lock();
+        try {
+            borrowed--;
+            ready.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public List<TenantQueueStats> stats() {
+        lock.lock();
+        try {
+            // copied, since any get on the access-ordered map would change which tenant is evicted next
+            final Map<String, Totals> sums = new HashMap<>(totals);
+            final Set<String> organizationIds = new HashSet<>(sums.keySet());
+            organizationIds.addAll(lanes.keySet());
+            return organizationIds.stream()
+                    .map(organizationId -> tenantStats(organizationId, sums.getOrDefault(organizationId, new Totals())))
+                    .sorted(Comparator.comparing(TenantQueueStats::organizationId))
+                    .toList();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private TenantQueueStats tenantStats(String organizationId, Totals sum) {
+        final Tenant tenant = tenants.tenant(organizationId);
+        final Lane lane = lanes.get(organizationId);
+        return new TenantQueueStats(
+                organizationId,
+                tenant.weight(),
+                tenant.maxConcurrent(),
+                lane != null ? lane.jobs.size() : 0,
+                lane != null ? lane.inFlight : 0,
+                sum.dispatched,
+                sum.dispatched == 0 ? 0 : sum.totalWaitNanos / sum.dispatched / 1_000_000,
+                sum.maxWaitNanos / 1_000_000
+        );
+    }
+
+    public StageStats stageStats() {
+        lock.lock();
+        try {
+            return new StageStats("compress", workerCount, workerCount + capacity, running + borrowed, queued, completed, rejected);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ServerBusyException rejection() {
+        rejected++;
+        return new ServerBusyException("Compression queue is full. Please try again later.", retryAfterSeconds);
+    }
+
+    private void workLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            final Job job;
+            try {
+                job = take();
+            } catch (InterruptedException _) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            metrics.queueWait(job.organizationId(), System.nanoTime() - job.enqueuedAt());
+            try {
+                job.task().run();
+            } catch (Exception e) {
+                LOGGER.error("compression job {} failed", job.sequence(), e);
+            } finally {
+                finished(job);
+            }
+        }
+    }
+
+    // weighted fair queueing: each tenant's next job is tagged with a virtual finish time of
+    // lastFinish + estimatedSeconds / weight and the smallest tag among tenants
+    // under their in-flight limit runs next; within a tenant jobs go by priority, then by
+    // aged shortest-expected-job-first (or arrival order with the fifo policy)
+    private Job take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (true) {
+                if (running + borrowed >= workerCount) {
+                    ready.await();
+                    continue;
+                }
+                final Comparator<Job> order = order(System.nanoTime());
+                Lane best = null;
+                Job bestJob = null;
+                double bestFinish = Double.MAX_VALUE;
+                for (Iterator<Lane> lanesIt = lanes.values().iterator(); lanesIt.hasNext(); ) {
+                    final Lane lane = lanesIt.next();
+                    if (lane.jobs.isEmpty()) {
+                        // an idle lane behind virtualTime would restart at virtualTime anyway, so dropping it
+                        // loses nothing and keeps lanes bounded by tenants with recent work, not every id ever seen
+                        if (lane.inFlight == 0 && lane.lastFinish <= virtualTime) {
+                            lanesIt.remove();
+                        }
+                        continue;
+                    }
+                    final Tenant tenant = tenants.tenant(lane.organizationId);
+                    if (tenant.maxConcurrent() > 0 && lane.inFlight >= tenant.maxConcurrent()) {
+                        continue;
+                    }
+                    final Job next = Collections.min(lane.jobs, order);
+                    final double finish = startTag(lane) + next.estimatedSeconds() / tenant.weight();
+                    if (bestJob == null || finish < bestFinish
+                            || (finish == bestFinish && next.sequence() < bestJob.sequence())) {
+                        best = lane;
+                        bestJob = next;
+                        bestFinish = finish;
+                    }
+                }
+                if (best != null && bestJob != null) {
+                    final Job job = bestJob;
+                    best.jobs.remove(job);
+                    queued--;
+                    running++;
+                    virtualTime = Math.max(virtualTime, startTag(best));
+                    best.lastFinish = bestFinish;
+                    best.inFlight++;
+                    totals.computeIfAbsent(job.organizationId(), _ -> new Totals()).dispatched(job);
+                    return job;
+                }
+                ready.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void finished(Job job) {
+        lock.lock();
+        try {
+            running--;
+            completed++;
+            final Lane lane = lanes.get(job.organizationId());
+            if (lane != null) {
+                lane.inFlight--;
+            }
+            if (queued == 0 && running == 0) {
+                // nothing is competing any more, so no lane's finish tag matters
+                lanes.clear();
+                virtualTime = 0;
+            }
+            ready.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int estimatePosition(Lane lane, Job job) {
+        final Comparator<Job> order = order(System.nanoTime());
+        int position = 1;
+        double aheadSeconds = 0;
+        for (Job other : lane.jobs) {
+            if (other != job && order.compare(other, job) < 0) {
+                position++;
+                aheadSeconds += other.estimatedSeconds();
+            }
+        }
+        final double finish = startTag(lane) + (aheadSeconds + job.estimatedSeconds()) / tenants.tenant(lane.organizationId).weight();
+        for (Lane other : lanes.values()) {
+            if (other == lane) {
+                continue;
+            }
+            final int weight = tenants.tenant(other.organizationId).weight();
+            double tag = startTag(other);
+            for (Job queuedJob : other.jobs.stream().sorted(order).toList()) {
+                tag += queuedJob.estimatedSeconds() / weight;
+                if (tag > finish) {
+                    break;
+                }
+                position++;
+            }
+        }
+        return position;
+    }
+
+    private Comparator<Job> order(long now) {
+        final Comparator<Job> byPriority = Comparator.comparing(Job::priority);
+        if (!shortestFirst) {
+            return byPriority.thenComparingLong(Job::sequence);
+        }
+        return byPriority
+                .thenComparingDouble((Job job) -> job.estimatedSeconds() - agingFactor * (now - job.enqueuedAt()) / 1e9)
+                .thenComparingLong(Job::sequence);
+    }
+
+    // only meaningful for a lane with queued jobs: submit brings it up to virtualTime when it becomes backlogged
+    private double startTag(Lane lane) {
+        return lane.lastFinish;
+    }
+
+    private static final class Lane {
+        private final String organizationId;
+        private final List<Job> jobs = new ArrayList<>();
+        private double lastFinish;
+        private int inFlight;
+
+        private Lane(String organizationId) {
+            this.organizationId = organizationId;
+        }
+    }
+
+    private static final class Totals {
+        private long dispatched;
+        private long totalWaitNanos;
+        private long maxWaitNanos;
+
+        private void dispatched(Job job) {
+            final long wait = System.nanoTime() - job.enqueuedAt();
+            dispatched++;
+            totalWaitNanos += wait;
+            maxWaitNanos = Math.max(maxWaitNanos, wait);
+        }
+    }
+
+    private record Job(String organizationId, CompressionPriority priority, long sequence, long enqueuedAt,
+                       double estimatedSeconds, Runnable task) {
+    }
+}
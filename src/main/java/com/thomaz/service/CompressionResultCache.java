@@ -0,0 +1,309 @@
+package com.thomaz.service;
+
+import com.thomaz.config.PdfCompressionProperties;
+import com.thomaz.form.CacheStats;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+@Component
+public class CompressionResultCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CompressionResultCache.class);
+    private static final String SUFFIX = ".pdf";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long maxBytes;
+    // guards entries and totalBytes only; links, copies and deletes happen outside it
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CompletableFuture<Boolean>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private long totalBytes;
+
+    public CompressionResultCache(PdfCompressionProperties props) {
+        this.enabled = props.getCache().isEnabled();
+        this.directory = Path.of(props.getCache().getDirectory());
+        this.maxBytes = props.getCache().getMaxBytes();
+    }
+
+    @PostConstruct
+    public void load() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(directory);
+        final List<Path> existing;
+        try (Stream<Path> files = Files.list(directory)) {
+            existing = files.sorted(Comparator.comparing(CompressionResultCache::lastModified)).toList();
+        }
+        final Map<String, Long> sizes = new LinkedHashMap<>();
+        for (Path file : existing) {
+            final String name = file.getFileName().toString();
+            if (name.endsWith(TMP_SUFFIX)) {
+                // a store that was cut short before its rename
+                Util.safeDelete(file);
+            } else if (name.endsWith(SUFFIX)) {
+                sizes.put(keyOf(file), Files.size(file));
+            }
+        }
+        final List<Path> evicted;
+        lock.lock();
+        try {
+            sizes.forEach((key, size) -> {
+                entries.put(key, size);
+                totalBytes += size;
+            });
+            evicted = evictOverBudget();
+        } finally {
+            lock.unlock();
+        }
+        evicted.forEach(Util::safeDelete);
+        final CacheStats stats = stats();
+        LOGGER.info("compression cache at {} holds {} entries ({} bytes)", directory, stats.entries(), stats.bytes());
+    }
+
+    public String key(String inputSha256, List<String> switches) {
+        final MessageDigest digest = sha256();
+        digest.update(inputSha256.getBytes(StandardCharsets.UTF_8));
+        digest.update(String.join("\n", switches).getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    // Runs the compression on the calling thread unless the same key is already being compressed.
+    // In that case the caller gets back a pending future and its thread is free again: the leader's
+    // completion links the result into out, or, if the leader failed or didn't leave one in the
+    // cache, hands the compression to rerun so it goes back through the same concurrency budget.
+    public CompletableFuture<Void> compress(String key, Path out, Compression compression, Executor rerun) {
+        if (!enabled) {
+            return run(compression);
+        }
+        try {
+            if (materialize(key, out)) {
+                hits.incrementAndGet();
+                return CompletableFuture.completedFuture(null);
+            }
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        final CompletableFuture<Boolean> mine = new CompletableFuture<>();
+        final CompletableFuture<Boolean> leader = inFlight.putIfAbsent(key, mine);
+        if (leader != null) {
+            coalesced.incrementAndGet();
+            return leader.thenCompose(stored -> follow(stored, key, out, compression, rerun));
+        }
+
+        misses.incrementAndGet();
+        try {
+            final CompletableFuture<Void> done = run(compression);
+            if (done.isCompletedExceptionally()) {
+                // the failure is the leader's own, an interrupted sync job for one, so followers
+                // get their own run rather than its exception
+                mine.complete(false);
+                return done;
+            }
+            mine.complete(store(key, out));
+            return done;
+        } catch (IOException | RuntimeException e) {
+            // the compression itself succeeded; followers fall back to their own run
+            LOGGER.warn("could not store {} in the compression cache", key, e);
+            mine.complete(false);
+            return CompletableFuture.completedFuture(null);
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    public CacheStats stats() {
+        lock.lock();
+        try {
+            return new CacheStats(hits.get(), misses.get(), coalesced.get(), evictions.get(), entries.size(), totalBytes, maxBytes);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private CompletableFuture<Void> follow(boolean stored, String key, Path out, Compression compression, Executor rerun) {
+        try {
+            if (stored && materialize(key, out)) {
+                return CompletableFuture.completedFuture(null);
+            }
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        final CompletableFuture<Void> own = new CompletableFuture<>();
+        rerun.execute(() -> run(compression).whenComplete((_, e) -> {
+            if (e != null) {
+                own.completeExceptionally(e);
+            } else {
+                own.complete(null);
+            }
+        }));
+        return own;
+    }
+
+    private boolean materialize(String key, Path out) throws IOException {
+        if (!contains(key)) {
+            return false;
+        }
+        final Path cached = pathOf(key);
+        Files.deleteIfExists(out);
+        try {
+            Files.createLink(out, cached);
+        } catch (NoSuchFileException _) {
+            // evicted between the lookup and the link: a miss, and the entry must not outlive its file
+            forget(key);
+            return false;
+        } catch (IOException | UnsupportedOperationException _) {
+            try {
+                Files.copy(cached, out, StandardCopyOption.REPLACE_EXISTING);
+            } catch (NoSuchFileException _) {
+                forget(key);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean store(String key, Path out) throws IOException {
+        final long size = Files.size(out);
+        if (size > maxBytes || contains(key)) {
+            return contains(key);
+        }
+        // linked under a unique name and renamed, so a reader never sees a partial copy
+        final Path tmp = directory.resolve(key + "." + UUID.randomUUID() + TMP_SUFFIX);
+        try {
+            try {
+                Files.createLink(tmp, out);
+            } catch (IOException | UnsupportedOperationException _) {
+                Files.copy(out, tmp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.move(tmp, pathOf(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Util.safeDelete(tmp);
+        }
+        final List<Path> evicted;
+        final boolean stored;
+        lock.lock();
+        try {
+            if (entries.putIfAbsent(key, size) == null) {
+                totalBytes += size;
+            }
+            evicted = evictOverBudget();
+            stored = entries.containsKey(key);
+        } finally {
+            lock.unlock();
+        }
+        evicted.forEach(Util::safeDelete);
+        return stored;
+    }
+
+    private boolean contains(String key) {
+        lock.lock();
+        try {
+            // get, not containsKey, so a lookup counts as an access for the LRU order
+            return entries.get(key) != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void forget(String key) {
+        lock.lock();
+        try {
+            final Long size = entries.remove(key);
+            if (size != null) {
+                totalBytes -= size;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // caller holds the lock; returns the files to delete once it is released
+    private List<Path> evictOverBudget() {
+        final List<Path> evicted = new ArrayList<>();
+        final Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            final Map.Entry<String, Long> eldest = it.next();
+            it.remove();
+            totalBytes -= eldest.getValue();
+            evictions.incrementAndGet();
+            evicted.add(pathOf(eldest.getKey()));
+        }
+        return evicted;
+    }
+
+    private static CompletableFuture<Void> run(Compression compression) {
+        try {
+            compression.run();
+            return CompletableFuture.completedFuture(null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        } catch (IOException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private Path pathOf(String key) {
+        return directory.resolve(key + SUFFIX);
+    }
+
+    private static String keyOf(Path file) {
+        final String name = file.getFileName().toString();
+        return name.substring(0, name.length() - SUFFIX.length());
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException _) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Compression {
+        void run() throws IOException, InterruptedException;
+    }
+}
@@ -0,0 +1,105 @@
+package com.thomaz.service;
+
+import com.thomaz.config.Crypto;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Component
+public class CredentialCache {
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LinkedHashMap<String, Credential> entries;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public CredentialCache(@Value("${crypto.credential-cache.max-entries:64}") int maxEntries,
+                           @Value("${crypto.credential-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.maxEntries = Math.max(0, maxEntries);
+        this.ttlNanos = Duration.ofSeconds(ttlSeconds).toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Credential> eldest) {
+                if (size() > CredentialCache.this.maxEntries) {
+                    eldest.getValue().wipe();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public String decrypt(String cipherText, String base64Key) {
+        if (maxEntries == 0 || !Crypto.isEncrypted(cipherText)) {
+            return Crypto.decryptWith(cipherText, base64Key);
+        }
+        final String cacheKey = fingerprint(base64Key) + ":" + cipherText;
+        final long now = System.nanoTime();
+        lock.lock();
+        try {
+            final Credential cached = entries.get(cacheKey);
+            if (cached != null) {
+                if (now - cached.createdAt() < ttlNanos) {
+                    return new String(cached.plainText(), StandardCharsets.UTF_8);
+                }
+                entries.remove(cacheKey).wipe();
+            }
+        } finally {
+            lock.unlock();
+        }
+        final String plainText = Crypto.decryptWith(cipherText, base64Key);
+        lock.lock();
+        try {
+            entries.values().removeIf(c -> {
+                final boolean expired = now - c.createdAt() >= ttlNanos;
+                if (expired) {
+                    c.wipe();
+                }
+                return expired;
+            });
+            final Credential previous = entries.put(cacheKey, new Credential(plainText.getBytes(StandardCharsets.UTF_8), now));
+            if (previous != null) {
+                previous.wipe();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return plainText;
+    }
+
+    @PreDestroy
+    public void clear() {
+        lock.lock();
+        try {
+            entries.values().forEach(Credential::wipe);
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static String fingerprint(String base64Key) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(base64Key.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Credential(byte[] plainText, long createdAt) {
+        void wipe() {
+            Arrays.fill(plainText, (byte) 0);
+        }
+    }
+}
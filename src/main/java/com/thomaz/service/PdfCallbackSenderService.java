@@ -2,12 +2,17 @@ package com.thomaz.service;
 
 import com.thomaz.config.Crypto;
 import com.thomaz.config.PdfCallbackProperties;
+import com.thomaz.form.CallbackResponse;
 import com.thomaz.form.CompressParameters;
+import com.thomaz.form.CompressionError;
 import com.thomaz.form.FileResponse;
+import com.thomaz.form.QualityTier;
+import com.thomaz.jfr.CallbackEvent;
 import org.jspecify.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamResource;
 import org.springframework.core.io.Resource;
 import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
@@ -17,34 +22,62 @@ import org.springframework.stereotype.Service;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientResponseException;
 
+import java.io.InputStream;
+import java.net.http.HttpTimeoutException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Function;
 
 @Service
 public class PdfCallbackSenderService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(PdfCallbackSenderService.class);
-    private static final String ORGANIZATION_ID_SUFFIX = "sydle.one/api/1/pdf-compression/_classId";
     private final RestClient restClient;
     private final PdfCallbackProperties props;
+    private final CallbackClientStats stats;
+    private final CredentialCache credentials;
+    private final TenantRegistry tenants;
 
-    public PdfCallbackSenderService(PdfCallbackProperties props, RestClient restClient1) {
+    public PdfCallbackSenderService(PdfCallbackProperties props, RestClient restClient1, CallbackClientStats stats,
+                                    CredentialCache credentials, TenantRegistry tenants) {
         this.props = props;
         this.restClient = restClient1;
+        this.stats = stats;
+        this.credentials = credentials;
+        this.tenants = tenants;
     }
 
-    public Optional<FileResponse> uploadPdf(Path tempOutputPdfPath, CompressParameters args) {
-        Resource pdfResource = new FileSystemResource(tempOutputPdfPath.toFile()) {
+    public CallbackResponse<FileResponse> uploadPdf(Path tempOutputPdfPath, CompressParameters args) {
+        return upload(new FileSystemResource(tempOutputPdfPath.toFile()) {
             @Override
             public String getFilename() {
-                return toCompressedFileName(args.fallbackFilename());
+                return Util.toCompressedFileName(args.fallbackFilename());
+            }
+        }, args);
+    }
+
+    public CallbackResponse<FileResponse> uploadPdf(InputStream pdfStream, CompressParameters args) {
+        return upload(new InputStreamResource(pdfStream) {
+            @Override
+            public String getFilename() {
+                return Util.toCompressedFileName(args.fallbackFilename());
             }
-        };
 
+            @Override
+            public long contentLength() {
+                return -1;
+            }
+        }, args);
+    }
+
+    private CallbackResponse<FileResponse> upload(Resource pdfResource, CompressParameters args) {
         MultiValueMap<String, Object> parts = new LinkedMultiValueMap<>();
 
         HttpHeaders fileHeaders = new HttpHeaders();
@@ -59,7 +92,7 @@ public class PdfCallbackSenderService {
         parts.add("file", pdfResource);
 
         String requestUri = buildURI(args.organizationId(), "/_upload");
-        return sendRequest(requestUri, uri -> restClient.post()
+        return sendRequest(requestUri, "_upload", args, uri -> restClient.post()
                 .uri(uri)
                 .contentType(MediaType.MULTIPART_FORM_DATA)
                 .headers(headers -> setHeaderAuth(args, headers))
@@ -69,76 +102,107 @@ public class PdfCallbackSenderService {
         );
     }
 
-    public Optional<String> completeCompression(CompressParameters params, FileResponse fileResponse) {
+    public CallbackResponse<String> completeCompression(CompressParameters params, FileResponse fileResponse, @Nullable QualityTier tier) {
         String requestUri = buildURI(params.organizationId(), "/complete/" + params.compressionId());
-        return sendRequest(requestUri, uri -> restClient.post()
+        final Map<String, Object> body = tier == null
+                ? Map.of("compressedFile", fileResponse)
+                : Map.of("compressedFile", fileResponse, "qualityTier", tier);
+        return sendRequest(requestUri, "complete", params, uri -> restClient.post()
                 .uri(uri)
                 .headers(headers -> setHeaderAuth(params, headers))
-                .body(Map.of("compressedFile", fileResponse))
+                .body(body)
                 .retrieve()
                 .toEntity(String.class)
         );
     }
 
-    public Optional<String> logCompressionError(CompressParameters params, Exception e) {
+    public CallbackResponse<String> logCompressionError(CompressParameters params, CompressionError error) {
         String requestUri = buildURI(params.organizationId(), "/setToError/" + params.compressionId());
-        return sendRequest(requestUri, uri -> restClient.post()
+        return sendRequest(requestUri, "setToError", params, uri -> restClient.post()
                 .uri(uri)
                 .headers(headers -> setHeaderAuth(params, headers))
-                .body(Map.of("error", Map.of(
-                                "message", e.getMessage() != null ? e.getMessage() : "Erro inesperado",
-                                "exception", e.getClass().getSimpleName(),
-                                "cause", Optional.ofNullable(e.getCause()).orElse(e).getClass().getSimpleName()
-                        )
-                ))
+                .body(Map.of("error", error))
                 .retrieve()
                 .toEntity(String.class)
         );
     }
 
 
-    private <T> Optional<T> sendRequest(String uri, Function<String, ResponseEntity<T>> requestFn) {
+    private <T> CallbackResponse<T> sendRequest(String uri, String endpoint, CompressParameters params,
+                                                Function<String, ResponseEntity<T>> requestFn) {
+        final int totalTimeout = props.getHttp().getTotalTimeoutSeconds();
+        final CallbackEvent event = new CallbackEvent();
+        event.begin();
+        final CallbackClientStats.Call call = stats.start(uri, endpoint, params.organizationId());
+        CallbackClientStats.Outcome outcome = CallbackClientStats.Outcome.FAILURE;
+        int statusCode = 0;
         try {
+            call.connect(Duration.ofSeconds(totalTimeout));
+            // bounded by the request timeout set on the client
             final ResponseEntity<T> response = requestFn.apply(uri);
+            statusCode = response.getStatusCode().value();
             if (response.getStatusCode().is2xxSuccessful()) {
+                outcome = CallbackClientStats.Outcome.SUCCESS;
                 LOGGER.info("Completed request to {}.", uri);
-                return Optional.ofNullable(response.getBody());
             } else {
                 LOGGER.error("Request to {} failed with status code: {}. Response: {}", uri, response.getStatusCode(), response.getBody());
-                return Optional.empty();
             }
-        } catch (Exception e) {
-            LOGGER.error("Request to {} failed.", uri, e);
-            return Optional.empty();
+            return new CallbackResponse<>(statusCode, response.getBody());
+        } catch (TimeoutException _) {
+            outcome = CallbackClientStats.Outcome.TIMEOUT;
+            LOGGER.error("Request to {} found no free connection within {}s.", uri, totalTimeout);
+            return CallbackResponse.noResponse();
+        } catch (InterruptedException _) {
+            Thread.currentThread().interrupt();
+            LOGGER.error("Request to {} was interrupted.", uri);
+            return CallbackResponse.noResponse();
+        } catch (RestClientResponseException re) {
+            // retrieve() turns 4xx/5xx into exceptions; keep the status so callers can tell permanent from transient
+            statusCode = re.getStatusCode().value();
+            LOGGER.error("Request to {} failed with status code: {}. Response: {}", uri, statusCode, re.getResponseBodyAsString());
+            return new CallbackResponse<>(statusCode, null);
+        } catch (RuntimeException e) {
+            if (timedOut(e)) {
+                outcome = CallbackClientStats.Outcome.TIMEOUT;
+                LOGGER.error("Request to {} timed out after {}s.", uri, totalTimeout);
+            } else {
+                LOGGER.error("Request to {} failed.", uri, e);
+            }
+            return CallbackResponse.noResponse();
+        } finally {
+            call.end(outcome);
+            if (event.shouldCommit()) {
+                event.endpoint = endpoint;
+                event.compressionId = params.compressionId();
+                event.organizationId = params.organizationId();
+                event.outcome = outcome.name().toLowerCase(Locale.ROOT);
+                event.statusCode = statusCode;
+                event.commit();
+            }
         }
     }
 
-    private String buildURI(String organizationId, String methodIdentifier) {
-        final String joined = String.join("/",
-                organizationId + "." + ORGANIZATION_ID_SUFFIX,
-                props.getFileClassId(),
-                methodIdentifier
-        );
+    // RestClient wraps the client's HttpTimeoutException in a ResourceAccessException
+    private static boolean timedOut(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof HttpTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-        return "https://" + joined.replace("//", "/");
+    private String buildURI(String organizationId, String methodIdentifier) {
+        final Tenant tenant = tenants.tenant(organizationId);
+        final String path = String.join("/", tenant.fileClassId(), methodIdentifier).replace("//", "/");
+        return tenant.callbackBaseUrl().replaceAll("/+$", "") + "/" + path;
     }
 
     private void setHeaderAuth(CompressParameters args, HttpHeaders headers) {
-        props.getTokenForOrg(args.organizationId())
-                .map(token -> Crypto.decryptWith(token, args.decryptKey()))
+        Optional.ofNullable(tenants.tenant(args.organizationId()).token())
+                .map(token -> credentials.decrypt(token, args.decryptKey()))
                 .map(Crypto::decodeBase64)
                 .ifPresent(headers::setBearerAuth);
     }
 
-    private String toCompressedFileName(@Nullable String originalFileName) {
-        if (originalFileName == null || originalFileName.isBlank()) {
-            return "compressed.pdf";
-        }
-        int lastDotIndex = originalFileName.lastIndexOf('.');
-        if (lastDotIndex != -1) {
-            return originalFileName.substring(0, lastDotIndex) + "-compressed.pdf";
-        }
-        return originalFileName + "-compressed.pdf";
-    }
-
 }
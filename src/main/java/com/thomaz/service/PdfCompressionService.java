@@ -1,141 +1,446 @@
 package com.thomaz.service;
 
 import com.thomaz.config.PdfCompressionProperties;
+import com.thomaz.config.exception.CompressionTimeoutException;
 import com.thomaz.config.exception.InvalidRequestException;
 import com.thomaz.form.CompressParameters;
+import com.thomaz.form.CompressionError;
+import com.thomaz.form.CompressionPriority;
+import com.thomaz.form.FileResponse;
+import com.thomaz.form.IngestedPdf;
+import com.thomaz.form.PreflightReport;
+import com.thomaz.form.QualityTier;
+import com.thomaz.form.StageStats;
+import com.thomaz.jfr.CompressionEvent;
+import com.thomaz.service.compressor.GhostscriptCompressor;
+import com.thomaz.service.compressor.LosslessRewriteException;
+import com.thomaz.service.compressor.PdfCompressor;
+import com.thomaz.service.compressor.PdfCompressors;
+import com.thomaz.service.gs.GsSettings;
+import com.thomaz.service.gs.PipedGhostscript;
+import com.thomaz.service.gs.ProcessGhostscriptEngine;
 import org.jspecify.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.time.LocalDateTime;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
 import java.util.Locale;
-import java.util.concurrent.Semaphore;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static com.thomaz.service.Util.*;
-import static com.thomaz.service.Util.requireProbablyPdf;
-import static com.thomaz.service.Util.waitUntil;
 
 @Service
 public class PdfCompressionService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(PdfCompressionService.class);
+    private static final String SYNC_TENANT = "_sync";
+    private static final List<String> PROFILES_BY_QUALITY = List.of("prepress", "printer", "ebook", "screen");
 
     private final PdfCompressionProperties props;
+    private final CallbackOutbox callbackOutbox;
     private final PdfCallbackSenderService callbackSender;
-    private final Semaphore semaphore;
+    private final ProcessGhostscriptEngine pipedEngine;
+    private final CompressionJobQueue jobQueue;
+    private final CompressionResultCache resultCache;
+    private final PdfCompressors compressors;
+    private final PipelineStage validateStage;
+    private final PipelineStage deliverStage;
+    private final CompressionCostModel costModel;
+    private final PdfPreflight preflight;
+    private final QualityGovernor qualityGovernor;
+    private final TargetSizeCompressor targetSizeCompressor;
+    private final ProxyMetrics metrics;
 
-    public PdfCompressionService(PdfCompressionProperties props, PdfCallbackSenderService callbackSender) {
+    public PdfCompressionService(PdfCompressionProperties props,
+                                 CallbackOutbox callbackOutbox,
+                                 PdfCallbackSenderService callbackSender,
+                                 CompressionJobQueue jobQueue,
+                                 CompressionResultCache resultCache,
+                                 PdfCompressors compressors,
+                                 @Qualifier("validateStage") PipelineStage validateStage,
+                                 @Qualifier("deliverStage") PipelineStage deliverStage,
+                                 CompressionCostModel costModel,
+                                 PdfPreflight preflight,
+                                 QualityGovernor qualityGovernor,
+                                 TargetSizeCompressor targetSizeCompressor,
+                                 ProxyMetrics metrics) {
         this.props = props;
+        this.callbackOutbox = callbackOutbox;
         this.callbackSender = callbackSender;
-        this.semaphore = new Semaphore(Math.max(1, props.gs().getMaxConcurrent()));
+        this.pipedEngine = new ProcessGhostscriptEngine(props.getGs());
+        this.jobQueue = jobQueue;
+        this.resultCache = resultCache;
+        this.compressors = compressors;
+        this.validateStage = validateStage;
+        this.deliverStage = deliverStage;
+        this.costModel = costModel;
+        this.preflight = preflight;
+        this.qualityGovernor = qualityGovernor;
+        this.targetSizeCompressor = targetSizeCompressor;
+        this.metrics = metrics;
     }
 
-    @Async
-    public void compress(CompressParameters params, Path in, Path out) {
-        final LocalDateTime minResponseTime = LocalDateTime.now().plusSeconds(3);
+    // validate -> compress -> deliver: each stage is bounded on its own, so slow Sydle uploads
+    // never hold the threads Ghostscript needs and a full stage turns new requests away with 429
+    public int compress(CompressParameters params, IngestedPdf pdf, Path out) {
+        final Instant minResponseTime = Instant.now().plusSeconds(3);
+        final Validated validated = validateStage.call(() -> validate(pdf));
+        final Long targetBytes = params.targetBytes();
+        // the original bytes only answer a target size the file already meets
+        if (validated.passThrough() && (targetBytes == null || pdf.size() <= targetBytes)) {
+            passThrough(pdf, out);
+            // still on the request thread, so a full deliver stage can simply reject it
+            final Executor slot = deliverStage.reserve();
+            delayed(minResponseTime, slot).execute(() -> deliverResult(params, pdf.path(), out, QualityTier.ORIGINAL));
+            return 0;
+        }
+        return jobQueue.submit(params.organizationId(), params.priority(), validated.estimatedSeconds(),
+                () -> runJob(params, validated, out, minResponseTime));
+    }
+
+    public QualityTier compressSync(CompressionPriority priority, IngestedPdf pdf, Path out) throws InterruptedException {
+        final SyncJob job = new SyncJob();
+        final Validated validated = validateStage.call(() -> validate(pdf));
+        if (validated.passThrough()) {
+            passThrough(pdf, out);
+            return QualityTier.ORIGINAL;
+        }
+        final Executor requeue = requeue(SYNC_TENANT, priority, validated.estimatedSeconds());
+        jobQueue.submit(SYNC_TENANT, priority, validated.estimatedSeconds(), () -> job.run(() -> {
+            try {
+                final QualityTier tier = tierFor(validated.compressor());
+                // a rerun after a coalesced leader goes through the job too, so a cancel can skip or stop it
+                performCompression(null, SYNC_TENANT, validated.pdf(), out, validated.compressor(), tier,
+                        task -> requeue.execute(() -> job.run(task)))
+                        .whenComplete(job::settle);
+            } catch (Exception e) {
+                job.settle(null, e);
+            }
+        }));
+
+        final long timeoutSeconds = props.getSyncTimeoutSeconds();
         try {
-            performCompression(in, out);
-            waitUntil(minResponseTime);
-            callbackSender.uploadPdf(out, params).ifPresent(fileResponse -> {
-                LOGGER.info("compression [{}] uploaded with response: {}", params.compressionId(), fileResponse);
-                callbackSender.completeCompression(params, fileResponse)
-                        .ifPresent(completionResponse -> LOGGER.info("compression [{}] completed", params.compressionId()));
-            });
-        } catch (Exception e) {
-            LOGGER.error("compress error for params {}", params, e);
-            waitUntil(minResponseTime);
-            callbackSender.logCompressionError(params, e)
-                    .ifPresent(errorLogResponse -> LOGGER.info("error logged with response {}", errorLogResponse));
-        } finally {
-            safeDelete(in);
-            safeDelete(out);
+            return job.result.get(timeoutSeconds, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            // the caller deletes in and out as soon as this returns, so Ghostscript must be gone first
+            job.cancel();
+            // a coalesced job may still link the leader's cached result into out after that
+            job.result.whenComplete((_, _) -> safeDelete(out));
+            throw new CompressionTimeoutException("Compression did not finish within " + timeoutSeconds + "s.",
+                    props.getQueue().getRetryAfterSeconds());
+        } catch (InterruptedException e) {
+            job.cancel();
+            job.result.whenComplete((_, _) -> safeDelete(out));
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public List<StageStats> stageStats() {
+        return List.of(validateStage.stats(), jobQueue.stageStats(), deliverStage.stats());
+    }
+
+    private Validated validate(IngestedPdf pdf) {
+        final PreflightReport report;
+        try {
+            report = preflight.analyze(pdf.path());
+        } catch (IOException e) {
+            throw new InvalidRequestException(e);
+        }
+        LOGGER.debug("preflight of {}: {}", pdf.path(), report);
+        if (report.encrypted()) {
+            throw new InvalidRequestException("Encrypted PDFs are not supported.");
+        }
+        if (report.truncated()) {
+            throw new InvalidRequestException("PDF is truncated.");
+        }
+        final IngestedPdf analyzed = pdf.withFeatures(report.features());
+        return new Validated(analyzed, costModel.estimateSeconds(analyzed.size(), analyzed.features()),
+                preflight.canPassThrough(report, pdf.size()), compressors.select(report));
+    }
+
+    private void passThrough(IngestedPdf pdf, Path out) {
+        LOGGER.info("{} is text-only and already compressed, skipping Ghostscript", pdf.path());
+        try {
+            Files.copy(pdf.path(), out, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new InvalidRequestException(e);
+        }
+    }
+
+    // lossless rewrites keep every pixel, so they report ORIGINAL and never degrade with load
+    private QualityTier tierFor(PdfCompressor compressor) {
+        return compressor.tiered() ? qualityGovernor.select() : QualityTier.ORIGINAL;
+    }
+
+    private void runJob(CompressParameters params, Validated validated, Path out, Instant minResponseTime) {
+        final PdfCompressor compressor = validated.compressor();
+        final Long targetBytes = params.targetBytes();
+        final QualityTier tier = targetBytes != null ? QualityTier.TARGET_SIZE : tierFor(compressor);
+        // piped jobs skip the result cache and page-range splitting: both need an output file
+        if (targetBytes == null && compressor instanceof GhostscriptCompressor && props.getGs().isPipeOutput()) {
+            deliverStage.enqueue(() -> deliverPiped(params, validated, out, tier, minResponseTime));
+            return;
         }
+        runFileJob(params, validated, out, minResponseTime, tier);
     }
 
-    private void performCompression(Path in, Path out) {
-        String profile = normalizeProfile(props.gs().getProfile());
+    private void runFileJob(CompressParameters params, Validated validated, Path out, Instant minResponseTime, QualityTier tier) {
+        final IngestedPdf pdf = validated.pdf();
+        final PdfCompressor compressor = validated.compressor();
+        final Path in = pdf.path();
+        final Long targetBytes = params.targetBytes();
+        CompletableFuture<QualityTier> compressed;
         try {
-            requireProbablyPdf(in);
-            boolean acquired = semaphore.tryAcquire(1, 5, TimeUnit.SECONDS);
-            if (!acquired) {
-                throw new InvalidRequestException("Server is busy. Please try again later.");
+            // only Ghostscript's quality ladder can aim at a size, so a target overrides a lossless pick
+            if (targetBytes != null) {
+                compressed = compressToTarget(params.compressionId(), params.organizationId(), pdf, out, targetBytes);
+            } else {
+                compressed = performCompression(params.compressionId(), params.organizationId(), pdf, out, compressor, tier,
+                        requeue(params.organizationId(), params.priority(), validated.estimatedSeconds()));
+            }
+        } catch (Exception e) {
+            compressed = CompletableFuture.failedFuture(e);
+        }
+        // a job coalesced onto an identical one returns here at once; its delivery runs when the leader finishes
+        compressed.whenComplete((done, e) -> {
+            if (e == null) {
+                deliverAt(minResponseTime, () -> deliverResult(params, in, out, done));
+            } else {
+                final Exception cause = failure(e);
+                LOGGER.error("compress error for params {}", params, cause);
+                deliverAt(minResponseTime, () -> deliverError(params, in, out, cause));
             }
+        });
+    }
+
+    // Runs on the deliver stage: gs writes to stdout and the upload reads it as it is produced, so the
+    // result never touches the disk. The process lives exactly as long as the upload it feeds, so it is
+    // paced by the callback host and must not hold a gs worker. Only the complete callback waits for
+    // the minimum response time.
+    private void deliverPiped(CompressParameters params, Validated validated, Path out, QualityTier tier, Instant minResponseTime) {
+        final Path in = validated.pdf().path();
+        final List<String> switches = buildGsCommand(normalizeProfile(props.getGs().getProfile()), tier);
+        try (PipedGhostscript gs = pipedEngine.startPiped(switches, in)) {
+            final Optional<FileResponse> uploaded = callbackSender.uploadPdf(gs.output(), params).payload();
+            final int exit = gs.finish();
+            if (exit != 0 && exit != PipedGhostscript.ABORTED) {
+                // the failed exit surfaced as a read error, which aborted the request body mid-upload
+                final Exception e = new IllegalStateException("Ghostscript failed (exit=" + exit + "). Output:\n" + gs.log());
+                LOGGER.error("compress error for params {}", params, e);
+                deliverAt(minResponseTime, () -> deliverError(params, in, out, e));
+                return;
+            }
+            if (exit == 0 && uploaded.isPresent()) {
+                LOGGER.info("compression [{}] piped into upload with response: {}", params.compressionId(), uploaded.get());
+                deliverAt(minResponseTime, () -> deliverCompletion(params, in, out, uploaded.get(), tier));
+                return;
+            }
+        } catch (IOException e) {
+            LOGGER.warn("could not start piped Ghostscript for compression [{}]", params.compressionId(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // the upload did not go through, so the job runs again through a file the outbox can retry
+        LOGGER.warn("piped upload for compression [{}] did not complete, retrying through a file", params.compressionId());
+        try {
+            jobQueue.submit(params.organizationId(), params.priority(), validated.estimatedSeconds(),
+                    () -> runFileJob(params, validated, out, minResponseTime, tier));
+        } catch (RuntimeException e) {
+            LOGGER.error("could not requeue compression [{}]", params.compressionId(), e);
+            deliverError(params, in, out, e);
+        }
+    }
 
-            List<String> cmd = buildGsCommand(
-                    props.gs().getPath(),
-                    profile,
-                    in.toAbsolutePath().toString(),
-                    out.toAbsolutePath().toString()
-            );
+    // sends a coalesced job back through the queue when the run it waited on left nothing to reuse
+    private Executor requeue(String organizationId, CompressionPriority priority, double estimatedSeconds) {
+        return task -> jobQueue.submit(organizationId, priority, estimatedSeconds, task);
+    }
+
+    private static Exception failure(Throwable e) {
+        final Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        return cause instanceof Exception ex ? ex : new IllegalStateException(cause);
+    }
 
-            ProcessBuilder pb = new ProcessBuilder(cmd);
-            pb.redirectErrorStream(true);
-            Process p = pb.start();
+    // runs on a gs worker once the job is done: the result is queued for the deliver stage rather
+    // than waiting for a slot here, so a slow callback host never parks a Ghostscript worker
+    private void deliverAt(Instant notBefore, Runnable delivery) {
+        delayed(notBefore, deliverStage::enqueue).execute(delivery);
+    }
+
+    private static Executor delayed(Instant notBefore, Executor executor) {
+        final long delayMs = Math.max(0, Duration.between(Instant.now(), notBefore).toMillis());
+        return CompletableFuture.delayedExecutor(delayMs, TimeUnit.MILLISECONDS, executor);
+    }
 
-            String log = readProcessOutputBounded(p.getInputStream(), 64_000);
+    private void deliverResult(CompressParameters params, Path in, Path out, QualityTier tier) {
+        safeDelete(in);
+        try {
+            callbackOutbox.enqueueUpload(params, out, tier);
+        } catch (IOException e) {
+            LOGGER.error("could not queue upload for compression [{}]", params.compressionId(), e);
+            safeDelete(out);
+        }
+    }
 
-            boolean finished = p.waitFor(props.gs().getTimeoutSeconds(), TimeUnit.SECONDS);
-            if (!finished) {
-                p.destroyForcibly();
-                throw new IllegalStateException("Ghostscript timed out after "
-                        + props.gs().getTimeoutSeconds() + "s");
+    private void deliverCompletion(CompressParameters params, Path in, Path out, FileResponse uploaded, QualityTier tier) {
+        safeDelete(in);
+        safeDelete(out);
+        try {
+            callbackOutbox.enqueueComplete(params, uploaded, tier);
+        } catch (IOException e) {
+            LOGGER.error("could not queue completion for compression [{}]", params.compressionId(), e);
+        }
+    }
+
+    private void deliverError(CompressParameters params, Path in, Path out, Exception e) {
+        safeDelete(in);
+        safeDelete(out);
+        try {
+            callbackOutbox.enqueueError(params, CompressionError.from(e));
+        } catch (IOException io) {
+            LOGGER.error("could not queue error callback for compression [{}]", params.compressionId(), io);
+        }
+    }
+
+    // completes with the tier the result was actually made at: Ghostscript repairs much of what
+    // PDFBox refuses to parse, so a failed lossless rewrite is replaced by a Ghostscript run that
+    // is cached under its own key and reported as Ghostscript at the governor's tier
+    private CompletableFuture<QualityTier> performCompression(@Nullable String compressionId, String organizationId, IngestedPdf pdf,
+                                                              Path out, PdfCompressor compressor, QualityTier tier, Executor rerun) {
+        return runCompressor(compressionId, organizationId, pdf, out, compressor, tier, rerun).exceptionallyCompose(e -> {
+            if (!(failure(e) instanceof LosslessRewriteException lossless)) {
+                return CompletableFuture.failedFuture(e);
             }
+            LOGGER.warn("{}, falling back to Ghostscript", lossless.getMessage(), lossless.getCause());
+            final PdfCompressor ghostscript = compressors.ghostscript();
+            return runCompressor(compressionId, organizationId, pdf, out, ghostscript, tierFor(ghostscript), rerun);
+        });
+    }
 
-            int code = p.exitValue();
-            if (code != 0) {
-                throw new IllegalStateException("Ghostscript failed (exit=" + code + "). Output:\n" + log);
+    private CompletableFuture<QualityTier> runCompressor(@Nullable String compressionId, String organizationId, IngestedPdf pdf,
+                                                         Path out, PdfCompressor compressor, QualityTier tier, Executor rerun) {
+        final String profile = compressor.profile(tier);
+        final CompressionEvent event = new CompressionEvent();
+        event.begin();
+        event.cacheHit = true;
+        final Path in = pdf.path();
+        return resultCache.compress(resultCache.key(pdf.sha256(), compressor.settings(tier)), out, () -> {
+            event.cacheHit = false;
+            final long start = System.nanoTime();
+            compressor.compress(in, out, tier);
+            final long nanos = System.nanoTime() - start;
+            metrics.compressionRun(organizationId, compressor.name(), profile, nanos);
+            // the model predicts full-quality Ghostscript; other runs would drag it down
+            if (tier == QualityTier.FULL && compressor.tiered()) {
+                costModel.observe(pdf.size(), pdf.features(), nanos / 1e9);
+            }
+        }, rerun).handle((_, e) -> {
+            try {
+                if (e != null) {
+                    throw switch (failure(e)) {
+                        case IOException io -> new InvalidRequestException(io);
+                        case InterruptedException ie -> new InvalidRequestException(ie);
+                        case RuntimeException re -> re;
+                        case Exception other -> new IllegalStateException(other);
+                    };
+                }
+                final long outputBytes = safeSize(out);
+                metrics.compressed(organizationId, profile, pdf.size(), outputBytes);
+                event.succeeded = true;
+                LOGGER.info("compress complete with {} at {} quality with result size: {}", compressor.name(), tier, outputBytes);
+                return tier;
+            } finally {
+                commit(event, compressionId, organizationId, compressor.name(), profile, tier, pdf.size(), out);
             }
-            LOGGER.info("compress complete with result size: {}", Files.size(out));
+        });
+    }
+
 
+    private CompletableFuture<QualityTier> compressToTarget(@Nullable String compressionId, String organizationId, IngestedPdf pdf,
+                                                            Path out, long targetBytes) {
+        final CompressionEvent event = new CompressionEvent();
+        event.begin();
+        String profile = "target";
+        try {
+            final long start = System.nanoTime();
+            final GsSettings settings = targetSizeCompressor.compress(pdf.path(), out, targetBytes);
+            profile = settings.profile();
+            final long outputBytes = Files.size(out);
+            metrics.compressionRun(organizationId, GhostscriptCompressor.NAME, settings.profile(), System.nanoTime() - start);
+            metrics.compressed(organizationId, settings.profile(), pdf.size(), outputBytes);
+            event.succeeded = true;
+            LOGGER.info("compress complete with {} at result size: {}", settings, outputBytes);
+            return CompletableFuture.completedFuture(QualityTier.TARGET_SIZE);
         } catch (IOException e) {
             throw new InvalidRequestException(e);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new InvalidRequestException(e);
         } finally {
-            semaphore.release();
+            commit(event, compressionId, organizationId, GhostscriptCompressor.NAME, profile, QualityTier.TARGET_SIZE,
+                    pdf.size(), out);
         }
     }
 
+    // fields are only filled in when a recording wants the event, so a disabled event costs a flag check
+    private static void commit(CompressionEvent event, @Nullable String compressionId, String organizationId, String engine,
+                               String profile, QualityTier tier, long inputBytes, Path out) {
+        if (event.shouldCommit()) {
+            event.compressionId = compressionId;
+            event.organizationId = organizationId;
+            event.engine = engine;
+            event.profile = profile;
+            event.qualityTier = tier.name();
+            event.inputBytes = inputBytes;
+            event.outputBytes = event.succeeded ? safeSize(out) : 0;
+            event.commit();
+        }
+    }
 
-    private static List<String> buildGsCommand(String gsPath, String profile, String input, String output) {
-        return List.of(
-                gsPath,
-                "-sDEVICE=pdfwrite",
-                "-dCompatibilityLevel=1.4",
-                "-dPDFSETTINGS=/" + profile,
+    public static List<String> buildGsCommand(String profile) {
+        return buildGsCommand(profile, QualityTier.FULL);
+    }
 
-                "-dDownsampleColorImages=true",
-                "-dColorImageResolution=125",
-                "-dDownsampleGrayImages=true",
-                "-dGrayImageResolution=125",
-                "-dDownsampleMonoImages=true",
-                "-dMonoImageResolution=220",
-                "-dColorImageDownsampleType=/Bicubic",
-                "-dGrayImageDownsampleType=/Bicubic",
+    public static List<String> buildGsCommand(String profile, QualityTier tier) {
+        return settingsFor(profile, tier).switches();
+    }
 
-                "-dNOPAUSE",
-                "-dBATCH",
-                "-dSAFER",
-                "-dQUIET",
+    public static GsSettings settingsFor(String profile, QualityTier tier) {
+        return switch (tier) {
+            case ORIGINAL, FULL, TARGET_SIZE -> new GsSettings(profile, 125, 220, "/Bicubic", true);
+            case REDUCED -> new GsSettings(stepDown(profile, 1), 100, 200, "/Bicubic", true);
+            case MINIMAL -> new GsSettings(stepDown(profile, 2), 72, 150, "/Average", false);
+        };
+    }
 
-                "-sOutputFile=" + output,
-                input
-        );
+    // degraded tiers go down from what the deployment chose, never above it; "default" sits with printer
+    private static String stepDown(String profile, int steps) {
+        final int from = "default".equals(profile) ? 1 : Math.max(0, PROFILES_BY_QUALITY.indexOf(profile));
+        return PROFILES_BY_QUALITY.get(Math.min(PROFILES_BY_QUALITY.size() - 1, from + steps));
     }
 
-    private static String normalizeProfile(@Nullable String profile) {
+    public static String normalizeProfile(@Nullable String profile) {
         if (profile == null) {
             return "ebook";
         }
@@ -146,22 +451,71 @@ public class PdfCompressionService {
         };
     }
 
+    // lets a timed-out sync request kill its own Ghostscript run without interrupting whatever job
+    // the worker thread picks up next, and wait for it before the request deletes the files
+    private static final class SyncJob {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition left = lock.newCondition();
+        private final CompletableFuture<QualityTier> result = new CompletableFuture<>();
+        private @Nullable Thread runner;
+        private boolean cancelled;
 
-    private static String readProcessOutputBounded(InputStream in, int maxChars) throws IOException {
-        StringBuilder sb = new StringBuilder(Math.min(maxChars, 4096));
-        try (Reader r = new InputStreamReader(in, StandardCharsets.UTF_8)) {
-            char[] buf = new char[2048];
-            int n;
-            while ((n = r.read(buf)) != -1) {
-                int remaining = maxChars - sb.length();
-                if (remaining <= 0) {
-                    break;
+        // runs work for this job on the calling worker, unless the request has already given up
+        private void run(Runnable work) {
+            lock.lock();
+            try {
+                if (cancelled) {
+                    return;
                 }
-                sb.append(buf, 0, Math.min(n, remaining));
+                runner = Thread.currentThread();
+            } finally {
+                lock.unlock();
+            }
+            try {
+                work.run();
+            } finally {
+                leave();
             }
         }
-        return sb.toString();
-    }
 
+        private void settle(@Nullable QualityTier tier, @Nullable Throwable e) {
+            if (e != null) {
+                result.completeExceptionally(failure(e));
+            } else {
+                result.complete(tier);
+            }
+        }
+
+        private void leave() {
+            lock.lock();
+            try {
+                runner = null;
+                // drop an interrupt that arrived after the run had already finished
+                Thread.interrupted();
+                left.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
 
+        // an interrupted run fails fast, so waiting for it is short; a job coalesced onto another
+        // one has no runner of its own and is not waited for, and its rerun, if any, is skipped
+        private void cancel() {
+            lock.lock();
+            try {
+                cancelled = true;
+                if (runner != null) {
+                    runner.interrupt();
+                }
+                while (runner != null) {
+                    left.awaitUninterruptibly();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private record Validated(IngestedPdf pdf, double estimatedSeconds, boolean passThrough, PdfCompressor compressor) {
+    }
 }
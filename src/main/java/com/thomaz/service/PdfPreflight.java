@@ -0,0 +1,344 @@
+package com.thomaz.service;
+
+import com.thomaz.config.PdfCompressionProperties;
+import com.thomaz.config.exception.InvalidRequestException;
+import com.thomaz.form.PreflightReport;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+@Component
+public class PdfPreflight {
+
+    private static final int HEAD_BYTES = 1024;
+    private static final int TAIL_BYTES = 1024;
+    private static final int MAX_DICT_BYTES = 64 * 1024;
+
+    private static final byte[] MAGIC = ascii("%PDF-");
+    private static final byte[] EOF_MARKER = ascii("%%EOF");
+    private static final byte[] STARTXREF = ascii("startxref");
+    private static final byte[] OBJ = ascii("obj");
+    private static final byte[] ENDOBJ = ascii("endobj");
+    private static final byte[] STREAM = ascii("stream");
+    private static final byte[] ENCRYPT = ascii("/Encrypt");
+    private static final byte[] LINEARIZED = ascii("/Linearized");
+    private static final byte[] PAGE = ascii("/Page");
+    private static final byte[] PAGES = ascii("/Pages");
+    private static final byte[] COUNT = ascii("/Count");
+    private static final byte[] N = ascii("/N");
+    private static final byte[] TYPE = ascii("/Type");
+    private static final byte[] METADATA = ascii("/Metadata");
+    private static final byte[] SUBTYPE = ascii("/Subtype");
+    private static final byte[] IMAGE = ascii("/Image");
+    private static final byte[] FILTER = ascii("/Filter");
+    private static final byte[] LENGTH = ascii("/Length");
+    private static final byte[] OBJSTM = ascii("/ObjStm");
+
+    private final PdfCompressionProperties.Preflight props;
+
+    public PdfPreflight(PdfCompressionProperties props) {
+        this.props = props.getPreflight();
+    }
+
+    // maps the file and walks object headers only: stream bodies with a direct /Length are jumped over
+    public PreflightReport analyze(Path pdf) throws IOException {
+        try (FileChannel channel = FileChannel.open(pdf, StandardOpenOption.READ);
+             Arena arena = Arena.ofConfined()) {
+            final long size = channel.size();
+            if (size <= 0) {
+                throw new InvalidRequestException("Empty file.");
+            }
+            return new Scan(channel.map(FileChannel.MapMode.READ_ONLY, 0, size, arena)).run();
+        }
+    }
+
+    // text-only files that are already fully compressed gain next to nothing from Ghostscript
+    public boolean canPassThrough(PreflightReport report, long size) {
+        return props.isPassThrough()
+                && !report.uncertain()
+                && report.textOnly()
+                && report.fullyCompressed()
+                && !report.encrypted()
+                && !report.truncated()
+                && report.pages() > 0
+                && size / report.pages() <= props.getPassThroughMaxBytesPerPage();
+    }
+
+    private static final class Scan {
+        private final MemorySegment pdf;
+        private final long n;
+        private final Set<String> imageFilters = new TreeSet<>();
+        private boolean encrypted;
+        private boolean linearized;
+        private boolean truncated;
+        private long linearizedPages;
+        private long pagesCount;
+        private int pageMarkers;
+        private int images;
+        private long imageBytes;
+        private int streams;
+        private int unfilteredStreams;
+        private int eofMarkers;
+        private boolean uncertain;
+
+        private Scan(MemorySegment pdf) {
+            this.pdf = pdf;
+            this.n = pdf.byteSize();
+        }
+
+        private PreflightReport run() {
+            if (!matches(0, MAGIC)) {
+                throw new InvalidRequestException("File does not look like a PDF.");
+            }
+            // trailing bytes after %%EOF are common and Ghostscript copes with them, so a missing
+            // trailer only makes the scan unsure; truncated is kept for a stream cut off by the end of file
+            final long tail = Math.max(0, n - TAIL_BYTES);
+            uncertain = find(EOF_MARKER, tail, n) < 0 || find(STARTXREF, tail, n) < 0;
+
+            long objectStart = -1;
+            for (long i = 0; i < n; i++) {
+                final byte b = at(i);
+                if (b == '/') {
+                    if (isName(i, ENCRYPT)) {
+                        encrypted = true;
+                    } else if (isName(i, OBJSTM)) {
+                        // dictionaries packed into object streams are compressed, so this scan cannot see them
+                        uncertain = true;
+                    } else if (isName(i, PAGE)) {
+                        pageMarkers++;
+                    } else if (i < HEAD_BYTES && isName(i, LINEARIZED)) {
+                        linearized = true;
+                        linearizedPages = intValue(i, Math.min(n, i + HEAD_BYTES), N);
+                    }
+                } else if (b == '%' && matches(i, EOF_MARKER)) {
+                    eofMarkers++;
+                } else if (b == 'o' && isKeyword(i, OBJ)) {
+                    objectStart = i + OBJ.length;
+                } else if (b == 'e' && isKeyword(i, ENDOBJ)) {
+                    if (objectStart >= 0 && i - objectStart <= MAX_DICT_BYTES) {
+                        objectEnded(objectStart, i);
+                    }
+                    objectStart = -1;
+                } else if (b == 's' && isStreamKeyword(i)) {
+                    final long dataEnd = streamStarted(Math.max(objectStart, i - MAX_DICT_BYTES), i);
+                    if (dataEnd > n) {
+                        truncated = true;
+                        break;
+                    }
+                    if (dataEnd > 0) {
+                        i = dataEnd - 1;
+                    }
+                    objectStart = -1;
+                }
+            }
+
+            // an incremental update can replace or drop any object counted above
+            if (eofMarkers > 1) {
+                uncertain = true;
+            }
+            final int pages = (int) (linearizedPages > 0 ? linearizedPages : pagesCount > 0 ? pagesCount : pageMarkers);
+            return new PreflightReport(pages, encrypted, linearized, truncated, images, Set.copyOf(imageFilters),
+                    imageBytes, streams, unfilteredStreams, uncertain);
+        }
+
+        // the root of the page tree carries the largest /Count of all /Type /Pages nodes
+        private void objectEnded(long from, long to) {
+            if (nameValueIs(from, to, TYPE, PAGES)) {
+                pagesCount = Math.max(pagesCount, intValue(from, to, COUNT));
+            }
+        }
+
+        private long streamStarted(long from, long keyword) {
+            streams++;
+            final List<String> filters = filters(from, keyword);
+            if (filters.isEmpty() && !nameValueIs(from, keyword, TYPE, METADATA)) {
+                unfilteredStreams++;
+            }
+            final long length = intValue(from, keyword, LENGTH);
+            final boolean indirect = length >= 0 && isIndirect(findName(LENGTH, from, keyword) + LENGTH.length, keyword);
+            if (nameValueIs(from, keyword, SUBTYPE, IMAGE)) {
+                images++;
+                imageFilters.addAll(filters);
+                if (!indirect && length > 0) {
+                    imageBytes += length;
+                }
+            }
+            if (length < 0 || indirect) {
+                // the stream body is walked byte by byte, and anything in it may pass for a marker
+                uncertain = true;
+                return -1;
+            }
+            long data = keyword + STREAM.length;
+            if (data < n && at(data) == '\r') {
+                data++;
+            }
+            if (data < n && at(data) == '\n') {
+                data++;
+            }
+            return data + length;
+        }
+
+        private List<String> filters(long from, long to) {
+            final List<String> filters = new ArrayList<>();
+            final long key = findName(FILTER, from, to);
+            if (key < 0) {
+                return filters;
+            }
+            long i = skipWhitespace(key + FILTER.length, to);
+            if (i < to && at(i) == '/') {
+                filters.add(readName(i, to));
+            } else if (i < to && at(i) == '[') {
+                i = skipWhitespace(i + 1, to);
+                while (i < to && at(i) == '/') {
+                    final String name = readName(i, to);
+                    filters.add(name);
+                    i = skipWhitespace(i + 1 + name.length(), to);
+                }
+            }
+            return filters;
+        }
+
+        private boolean nameValueIs(long from, long to, byte[] key, byte[] value) {
+            for (long k = findName(key, from, to); k >= 0; k = findName(key, k + key.length, to)) {
+                final long v = skipWhitespace(k + key.length, to);
+                if (v + value.length <= to && isName(v, value)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private long intValue(long from, long to, byte[] key) {
+            final long k = findName(key, from, to);
+            if (k < 0) {
+                return -1;
+            }
+            long i = skipWhitespace(k + key.length, to);
+            if (i >= to || !isDigit(at(i))) {
+                return -1;
+            }
+            long value = 0;
+            while (i < to && isDigit(at(i)) && value < Integer.MAX_VALUE) {
+                value = value * 10 + (at(i++) - '0');
+            }
+            return value;
+        }
+
+        // "/Length 12 0 R" points at another object, whose value we do not chase
+        private boolean isIndirect(long afterKey, long to) {
+            long i = skipDigits(skipWhitespace(afterKey, to), to);
+            final long generation = skipWhitespace(i, to);
+            if (generation >= to || !isDigit(at(generation))) {
+                return false;
+            }
+            i = skipWhitespace(skipDigits(generation, to), to);
+            return i < to && at(i) == 'R';
+        }
+
+        private String readName(long slash, long to) {
+            long end = slash + 1;
+            while (end < to && !isDelimiter(at(end))) {
+                end++;
+            }
+            final byte[] name = pdf.asSlice(slash + 1, end - slash - 1).toArray(ValueLayout.JAVA_BYTE);
+            return new String(name, StandardCharsets.US_ASCII);
+        }
+
+        private boolean isStreamKeyword(long i) {
+            final long end = i + STREAM.length;
+            return i > 0 && matches(i, STREAM) && end < n
+                    && (isWhitespace(at(i - 1)) || at(i - 1) == '>')
+                    && (at(end) == '\r' || at(end) == '\n');
+        }
+
+        private boolean isKeyword(long i, byte[] keyword) {
+            final long end = i + keyword.length;
+            return i > 0 && matches(i, keyword)
+                    && isDelimiter(at(i - 1))
+                    && (end == n || isDelimiter(at(end)));
+        }
+
+        private boolean isName(long i, byte[] name) {
+            final long end = i + name.length;
+            return matches(i, name) && (end == n || isDelimiter(at(end)));
+        }
+
+        private long findName(byte[] name, long from, long to) {
+            for (long i = find(name, from, to); i >= 0; i = find(name, i + 1, to)) {
+                if (isName(i, name)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private long find(byte[] pattern, long from, long to) {
+            for (long i = from; i + pattern.length <= to; i++) {
+                if (at(i) == pattern[0] && matches(i, pattern)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private boolean matches(long i, byte[] pattern) {
+            if (i < 0 || i + pattern.length > n) {
+                return false;
+            }
+            for (int j = 0; j < pattern.length; j++) {
+                if (at(i + j) != pattern[j]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private long skipWhitespace(long i, long to) {
+            while (i < to && isWhitespace(at(i))) {
+                i++;
+            }
+            return i;
+        }
+
+        private long skipDigits(long i, long to) {
+            while (i < to && isDigit(at(i))) {
+                i++;
+            }
+            return i;
+        }
+
+        private byte at(long i) {
+            return pdf.get(ValueLayout.JAVA_BYTE, i);
+        }
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f' || b == 0;
+    }
+
+    private static boolean isDelimiter(byte b) {
+        return isWhitespace(b) || switch (b) {
+            case '(', ')', '<', '>', '[', ']', '{', '}', '/', '%' -> true;
+            default -> false;
+        };
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,170 @@
+package com.thomaz.service;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+// structural clean-ups on a loaded document that never change what a page renders
+public final class PdfResources {
+
+    private static final List<COSName> FONT_FILES = List.of(COSName.FONT_FILE, COSName.FONT_FILE2, COSName.FONT_FILE3);
+
+    private PdfResources() {
+    }
+
+    // points every reference to an image, soft mask or embedded font program at the first
+    // byte-identical copy; the copies become unreachable and are not written on save
+    public static int deduplicate(PDDocument document) throws IOException {
+        final Map<String, COSBase> canonical = new HashMap<>();
+        final Set<COSDictionary> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        int replaced = 0;
+        for (PDPage page : document.getPages()) {
+            replaced += deduplicate(page.getResources().getCOSObject(), canonical, visited);
+        }
+        return replaced;
+    }
+
+    public static @Nullable COSBase dereference(@Nullable COSBase value) {
+        return value instanceof COSObject reference ? reference.getObject() : value;
+    }
+
+    private static int deduplicate(@Nullable COSDictionary resources, Map<String, COSBase> canonical,
+                                   Set<COSDictionary> visited) throws IOException {
+        if (resources == null || !visited.add(resources)) {
+            return 0;
+        }
+        return deduplicateImages(resources, canonical, visited) + deduplicateFonts(resources, canonical, visited);
+    }
+
+    private static int deduplicateImages(COSDictionary resources, Map<String, COSBase> canonical,
+                                         Set<COSDictionary> visited) throws IOException {
+        final COSDictionary xobjects = resources.getCOSDictionary(COSName.XOBJECT);
+        if (xobjects == null) {
+            return 0;
+        }
+        int replaced = 0;
+        for (COSName name : List.copyOf(xobjects.keySet())) {
+            final COSBase item = xobjects.getItem(name);
+            if (!(dereference(item) instanceof COSStream stream)) {
+                continue;
+            }
+            if (COSName.FORM.equals(stream.getCOSName(COSName.SUBTYPE))) {
+                replaced += deduplicate(stream.getCOSDictionary(COSName.RESOURCES), canonical, visited);
+            } else if (COSName.IMAGE.equals(stream.getCOSName(COSName.SUBTYPE))) {
+                // soft masks first, so images that only differed by which copy of the mask they used now match
+                final COSBase mask = stream.getItem(COSName.SMASK);
+                if (dereference(mask) instanceof COSStream maskStream
+                        && replace(canonical, fingerprint(maskStream), mask, maskStream, c -> stream.setItem(COSName.SMASK, c))) {
+                    replaced++;
+                }
+                if (replace(canonical, fingerprint(stream), item, stream, c -> xobjects.setItem(name, c))) {
+                    replaced++;
+                }
+            }
+        }
+        return replaced;
+    }
+
+    // only the font program is shared: the font dictionaries carry widths and encodings that
+    // differ between subsets even when the embedded program happens to be the same
+    private static int deduplicateFonts(COSDictionary resources, Map<String, COSBase> canonical,
+                                        Set<COSDictionary> visited) throws IOException {
+        final COSDictionary fonts = resources.getCOSDictionary(COSName.FONT);
+        if (fonts == null) {
+            return 0;
+        }
+        int replaced = 0;
+        for (COSName name : fonts.keySet()) {
+            if (!(dereference(fonts.getItem(name)) instanceof COSDictionary font)) {
+                continue;
+            }
+            if (COSName.TYPE3.equals(font.getCOSName(COSName.SUBTYPE))) {
+                replaced += deduplicate(font.getCOSDictionary(COSName.RESOURCES), canonical, visited);
+                continue;
+            }
+            if (font.getDictionaryObject(COSName.DESCENDANT_FONTS) instanceof COSArray descendants
+                    && descendants.size() > 0
+                    && dereference(descendants.get(0)) instanceof COSDictionary descendant) {
+                font = descendant;
+            }
+            if (!(font.getDictionaryObject(COSName.FONT_DESC) instanceof COSDictionary descriptor)) {
+                continue;
+            }
+            for (COSName key : FONT_FILES) {
+                final COSBase item = descriptor.getItem(key);
+                if (dereference(item) instanceof COSStream stream
+                        && replace(canonical, fingerprint(stream), item, stream, c -> descriptor.setItem(key, c))) {
+                    replaced++;
+                }
+            }
+        }
+        return replaced;
+    }
+
+    private static boolean replace(Map<String, COSBase> canonical, String fingerprint, COSBase item, COSStream stream,
+                                   Consumer<COSBase> setter) {
+        final COSBase first = canonical.putIfAbsent(fingerprint, item);
+        if (first == null || dereference(first) == stream) {
+            return false;
+        }
+        setter.accept(first);
+        return true;
+    }
+
+    // raw (still encoded) bytes plus every dictionary entry that affects decoding
+    private static String fingerprint(COSStream stream) throws IOException {
+        final MessageDigest sha256 = sha256();
+        for (COSName key : new TreeSet<>(stream.keySet())) {
+            if (COSName.LENGTH.equals(key) || COSName.NAME.equals(key)) {
+                continue;
+            }
+            sha256.update(key.getName().getBytes(StandardCharsets.UTF_8));
+            sha256.update(describe(stream.getItem(key)).getBytes(StandardCharsets.UTF_8));
+        }
+        try (InputStream raw = stream.createRawInputStream();
+             OutputStream digest = new DigestOutputStream(OutputStream.nullOutputStream(), sha256)) {
+            raw.transferTo(digest);
+        }
+        return HexFormat.of().formatHex(sha256.digest());
+    }
+
+    private static String describe(COSBase value) {
+        if (value instanceof COSObject reference) {
+            return reference.getKey() != null
+                    ? "ref " + reference.getKey()
+                    : "obj " + System.identityHashCode(reference.getObject());
+        }
+        return value.toString();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.thomaz.service;
+
+import com.thomaz.config.exception.ServerBusyException;
+import com.thomaz.form.StageStats;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+public final class PipelineStage implements Executor {
+
+    private final String name;
+    private final int concurrency;
+    private final int capacity;
+    private final long retryAfterSeconds;
+    private final ThreadPoolExecutor executor;
+    private final Semaphore admission;
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicInteger inline = new AtomicInteger();
+    private final AtomicLong inlineCompleted = new AtomicLong();
+    private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+    private final ProxyMetrics metrics;
+
+    public PipelineStage(String name, int concurrency, int queueCapacity, long retryAfterSeconds, boolean virtualThreads,
+                         ProxyMetrics metrics) {
+        this.name = name;
+        this.concurrency = Math.max(1, concurrency);
+        this.capacity = this.concurrency + Math.max(0, queueCapacity);
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.admission = new Semaphore(capacity);
+        final ThreadFactory threads = virtualThreads
+                ? Thread.ofVirtual().name(name + "-", 0).factory()
+                : Thread.ofPlatform().name(name + "-", 0).daemon(true).factory();
+        this.executor = new ThreadPoolExecutor(this.concurrency, this.concurrency, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), threads);
+        this.metrics = metrics;
+        metrics.stageGauges(name, this::stats, admission::availablePermits);
+    }
+
+    // runs on the calling thread while holding one of the stage's permits, so a request thread
+    // never parks on a hand-off to the stage's pool just to wait for the answer
+    public <T> T call(Supplier<T> task) {
+        if (!admission.tryAcquire()) {
+            throw rejection();
+        }
+        inline.incrementAndGet();
+        try {
+            return task.get();
+        } finally {
+            inline.decrementAndGet();
+            inlineCompleted.incrementAndGet();
+            release();
+        }
+    }
+
+    public Executor reserve() {
+        if (!admission.tryAcquire()) {
+            throw rejection();
+        }
+        final AtomicBoolean used = new AtomicBoolean();
+        return task -> {
+            if (!used.compareAndSet(false, true)) {
+                throw new IllegalStateException("Reservation on stage " + name + " already used");
+            }
+            executor.execute(releasing(task));
+        };
+    }
+
+    // work that was already accepted upstream and must not be dropped: it waits for a permit
+    // in the stage's own queue instead of blocking the thread that hands it over
+    public void enqueue(Runnable task) {
+        final long start = System.nanoTime();
+        waiting.add(() -> {
+            metrics.stageWait(name, System.nanoTime() - start);
+            task.run();
+        });
+        drain();
+    }
+
+    // continuations of work the stage already accepted (e.g. callback retries) skip admission
+    @Override
+    public void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    public StageStats stats() {
+        return new StageStats(name, concurrency, capacity, executor.getActiveCount() + inline.get(),
+                executor.getQueue().size() + waiting.size(), executor.getCompletedTaskCount() + inlineCompleted.get(),
+                rejected.get());
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private ServerBusyException rejection() {
+        rejected.incrementAndGet();
+        return new ServerBusyException("The " + name + " stage is saturated. Please try again later.", retryAfterSeconds);
+    }
+
+    private Runnable releasing(Runnable task) {
+        return () -> {
+            try {
+                task.run();
+            } finally {
+                release();
+            }
+        };
+    }
+
+    private void release() {
+        admission.release();
+        drain();
+    }
+
+    // called whenever a permit is freed or a task is queued, so a waiting task never misses a free permit
+    private void drain() {
+        while (!waiting.isEmpty() && admission.tryAcquire()) {
+            final Runnable next = waiting.poll();
+            if (next == null) {
+                admission.release();
+            } else {
+                executor.execute(releasing(next));
+            }
+        }
+    }
+}
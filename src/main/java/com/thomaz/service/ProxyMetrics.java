@@ -0,0 +1,137 @@
+package com.thomaz.service;
+
+import com.thomaz.form.CallbackHostStats;
+import com.thomaz.form.StageStats;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.jspecify.annotations.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+// the organization tag comes from the client, so only registered tenants get their own series and
+// every other id shares "other"; percentile histograms are kept to the latencies alerts are built on
+@Component
+public class ProxyMetrics {
+
+    public static final String UNKNOWN = "unknown";
+    public static final String OTHER = "other";
+
+    private final MeterRegistry registry;
+    private final TenantRegistry tenants;
+
+    public ProxyMetrics(MeterRegistry registry, TenantRegistry tenants) {
+        this.registry = registry;
+        this.tenants = tenants;
+    }
+
+    public void stageGauges(String stage, Supplier<StageStats> stats, IntSupplier availablePermits) {
+        Gauge.builder("pdf.stage.in.flight", () -> stats.get().active())
+                .description("Jobs currently running in a pipeline stage")
+                .tag("stage", stage)
+                .register(registry);
+        Gauge.builder("pdf.stage.queued", () -> stats.get().queued())
+                .description("Jobs waiting for a thread of a pipeline stage")
+                .tag("stage", stage)
+                .register(registry);
+        Gauge.builder("pdf.stage.permits.available", availablePermits::getAsInt)
+                .description("Jobs a pipeline stage can still admit before pushing back")
+                .tag("stage", stage)
+                .register(registry);
+    }
+
+    public void callbackConnectionGauges(String host, Supplier<CallbackHostStats> stats) {
+        Gauge.builder("pdf.callback.connections", () -> stats.get().activeConnections())
+                .description("Callback connections carrying a request")
+                .tags("host", host, "state", "active")
+                .register(registry);
+        Gauge.builder("pdf.callback.connections", () -> stats.get().idleConnections())
+                .description("Callback connections kept alive in the pool")
+                .tags("host", host, "state", "idle")
+                .register(registry);
+        Gauge.builder("pdf.callback.connections", () -> stats.get().pendingConnections())
+                .description("Callbacks waiting for a connection")
+                .tags("host", host, "state", "pending")
+                .register(registry);
+    }
+
+    public void uploadReceived(@Nullable String organizationId, long nanos, long bytes) {
+        Timer.builder("pdf.upload.receive")
+                .description("Time to stream the multipart upload to disk")
+                .tag("organization", organization(organizationId))
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        bytes("pdf.input.bytes", organizationId, null).record(bytes);
+    }
+
+    public void queueWait(String organizationId, long nanos) {
+        Timer.builder("pdf.queue.wait")
+                .description("Time a job waited in the compression queue")
+                .tag("organization", organization(organizationId))
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void stageWait(String stage, long nanos) {
+        Timer.builder("pdf.stage.wait")
+                .description("Time spent waiting for a permit of a pipeline stage")
+                .tag("stage", stage)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void compressionRun(String organizationId, String engine, String profile, long nanos) {
+        Timer.builder("pdf.compression.duration")
+                .description("Wall time of the compression engine, cache hits excluded")
+                .tags("organization", organization(organizationId), "engine", engine, "profile", profile)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void compressed(String organizationId, String profile, long inputBytes, long outputBytes) {
+        bytes("pdf.output.bytes", organizationId, profile).record(outputBytes);
+        DistributionSummary.builder("pdf.compression.ratio")
+                .description("Output size divided by input size")
+                .tags("organization", organization(organizationId), "profile", profile)
+                .register(registry)
+                .record(inputBytes == 0 ? 1 : (double) outputBytes / inputBytes);
+    }
+
+    public void callback(String endpoint, String organizationId, String outcome, long nanos) {
+        Timer.builder("pdf.callback.duration")
+                .description("Latency of callbacks to the tenant's Sydle instance")
+                .tags("endpoint", endpoint, "organization", organization(organizationId), "outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void sdRequest(String operation, String outcome, long nanos) {
+        Timer.builder("sd.request.duration")
+                .description("Latency of proxied SD form calls")
+                .tags("operation", operation, "outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private DistributionSummary bytes(String name, @Nullable String organizationId, @Nullable String profile) {
+        final DistributionSummary.Builder builder = DistributionSummary.builder(name)
+                .baseUnit("bytes")
+                .tag("organization", organization(organizationId));
+        return (profile != null ? builder.tag("profile", profile) : builder).register(registry);
+    }
+
+    private String organization(@Nullable String organizationId) {
+        if (organizationId == null || organizationId.isBlank()) {
+            return UNKNOWN;
+        }
+        return tenants.registered(organizationId) ? organizationId : OTHER;
+    }
+}
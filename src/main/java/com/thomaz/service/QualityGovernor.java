@@ -0,0 +1,58 @@
+package com.thomaz.service;
+
+import com.thomaz.config.PdfCompressionProperties;
+import com.thomaz.form.QualityTier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+@Component
+public class QualityGovernor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(QualityGovernor.class);
+
+    private final PdfCompressionProperties.Quality props;
+    private final CompressionJobQueue jobQueue;
+    private final int queueCapacity;
+    private QualityTier tier = QualityTier.FULL;
+
+    public QualityGovernor(PdfCompressionProperties props, CompressionJobQueue jobQueue) {
+        this.props = props.getQuality();
+        this.jobQueue = jobQueue;
+        this.queueCapacity = Math.max(1, props.getQueue().getCapacity());
+    }
+
+    // called as a job starts, so the tier follows the load the job actually runs under;
+    // stepping down needs the load to fall a hysteresis band below the threshold that raised it
+    public synchronized QualityTier select() {
+        if (!props.isAdaptive()) {
+            return QualityTier.FULL;
+        }
+        final double load = load();
+        final double reduceAt = props.getReduceAt();
+        final double minimalAt = props.getMinimalAt();
+        final double band = props.getHysteresis();
+        final QualityTier next = switch (tier) {
+            case MINIMAL -> load >= minimalAt - band ? QualityTier.MINIMAL
+                    : load >= reduceAt - band ? QualityTier.REDUCED
+                    : QualityTier.FULL;
+            case REDUCED -> load >= minimalAt ? QualityTier.MINIMAL
+                    : load >= reduceAt - band ? QualityTier.REDUCED
+                    : QualityTier.FULL;
+            default -> load >= minimalAt ? QualityTier.MINIMAL
+                    : load >= reduceAt ? QualityTier.REDUCED
+                    : QualityTier.FULL;
+        };
+        if (next != tier) {
+            LOGGER.info("compression quality {} -> {} at load {}", tier, next, String.format("%.2f", load));
+            tier = next;
+        }
+        return tier;
+    }
+
+    // a busy gs worker pegs the CPU by design, so only the backlog waiting behind the workers says
+    // the service is falling behind
+    private double load() {
+        return (double) jobQueue.size() / queueCapacity;
+    }
+}
@@ -1,6 +1,5 @@
 package com.thomaz.service;
 
-import com.thomaz.config.Crypto;
 import org.jspecify.annotations.Nullable;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -29,35 +28,46 @@ public class SdRequestService {
     private String sdCreateDraftFormUrl;
 
     private final RestClient restClient;
+    private final CredentialCache credentials;
+    private final ProxyMetrics metrics;
 
-    public SdRequestService() {
+    public SdRequestService(CredentialCache credentials, ProxyMetrics metrics) {
         this.restClient = RestClient.builder().build();
+        this.credentials = credentials;
+        this.metrics = metrics;
     }
 
     public Map<String, String> createDraftForm(String key, String jsonBody) {
-        return Optional.ofNullable(sdCreateDraftFormUrl).map(url -> send(url, key, jsonBody))
+        return Optional.ofNullable(sdCreateDraftFormUrl).map(url -> send("createDraft", url, key, jsonBody))
                 .orElseThrow(() -> new IllegalStateException("sdCreateDraftFormUrl is not configured"));
     }
 
     public Map<String, String> patchForm(String key, String jsonBody) {
-        return Optional.ofNullable(sdPatchFormUrl).map(url -> send(url, key, jsonBody))
+        return Optional.ofNullable(sdPatchFormUrl).map(url -> send("patch", url, key, jsonBody))
                 .orElseThrow(() -> new IllegalStateException("sdPatchFormUrl is not configured"));
     }
 
-    public Map<String, String> send(String url, String key, String jsonBody) {
-        Crypto.setSecretKey(key);
+    public Map<String, String> send(String operation, String url, String key, String jsonBody) {
         if (sdLogin == null || sdPassword == null) {
             throw new IllegalStateException("SD credentials are not configured");
         }
-        final String login = Crypto.decryptWith(sdLogin, key);
-        final String password = Crypto.decryptWith(sdPassword, key);
+        final String login = credentials.decrypt(sdLogin, key);
+        final String password = credentials.decrypt(sdPassword, key);
 
-        final String response = restClient.post()
-                .uri(url)
-                .headers(h -> h.setBasicAuth(login, password))
-                .body(jsonBody)
-                .retrieve()
-                .body(String.class);
+        final long start = System.nanoTime();
+        String outcome = "failure";
+        final String response;
+        try {
+            response = restClient.post()
+                    .uri(url)
+                    .headers(h -> h.setBasicAuth(login, password))
+                    .body(jsonBody)
+                    .retrieve()
+                    .body(String.class);
+            outcome = "success";
+        } finally {
+            metrics.sdRequest(operation, outcome, System.nanoTime() - start);
+        }
 
         return Map.of("sd_response_body", Optional.ofNullable(response).orElse(""));
     }
@@ -0,0 +1,202 @@
+package com.thomaz.service;
+
+import com.thomaz.config.PdfCompressionProperties;
+import com.thomaz.form.QualityTier;
+import com.thomaz.service.gs.GhostscriptEngine;
+import com.thomaz.service.gs.GsSettings;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+@Component
+public class TargetSizeCompressor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TargetSizeCompressor.class);
+
+    private final PdfCompressionProperties props;
+    private final CompressionJobQueue jobQueue;
+    private final GhostscriptEngine engine;
+    private final ExecutorService executor;
+
+    public TargetSizeCompressor(PdfCompressionProperties props, CompressionJobQueue jobQueue, GhostscriptEngine engine) {
+        this.props = props;
+        this.jobQueue = jobQueue;
+        this.engine = engine;
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("gs-target-", 0).factory());
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    // searches a quality ladder for the best settings whose output fits, assuming output size
+    // shrinks down the ladder; with idle gs slots several rungs run at once and every rung the
+    // finished ones rule out is cancelled, which kills its gs process
+    public GsSettings compress(Path in, Path out, long targetBytes) throws IOException, InterruptedException {
+        final List<GsSettings> ladder = ladder(PdfCompressionService.normalizeProfile(props.getGs().getProfile()));
+        // the calling job's own slot, held by whichever attempt runs on it until that attempt exits
+        final Semaphore own = new Semaphore(1);
+        final Map<Integer, Path> kept = new HashMap<>();
+        final List<Future<Attempt>> submitted = new ArrayList<>();
+        int lo = 0;
+        int hi = ladder.size();
+        int bestFit = -1;
+        int smallest = -1;
+        long smallestBytes = Long.MAX_VALUE;
+        int widest = 1;
+        boolean first = true;
+        try {
+            while (lo < hi) {
+                final CompletionService<Attempt> done = new ExecutorCompletionService<>(executor);
+                final Map<Future<Attempt>, Integer> running = new HashMap<>();
+                own.acquire();
+                final List<Runnable> slots = slots(own, Math.min(hi - lo, props.getTargetSize().getMaxParallel()));
+                widest = Math.max(widest, slots.size());
+                final List<Integer> picks = pick(lo, hi, slots.size(), first);
+                for (int k = 0; k < picks.size(); k++) {
+                    final int index = picks.get(k);
+                    final Runnable release = slots.get(k);
+                    try {
+                        final Path file = Files.createTempFile("pdf-target-", ".pdf");
+                        kept.put(index, file);
+                        final Future<Attempt> future = done.submit(() -> {
+                            try {
+                                return attempt(index, ladder.get(index), in, file);
+                            } finally {
+                                release.run();
+                            }
+                        });
+                        submitted.add(future);
+                        running.put(future, index);
+                    } catch (IOException | RuntimeException e) {
+                        slots.subList(k, slots.size()).forEach(Runnable::run);
+                        throw e;
+                    }
+                }
+                first = false;
+
+                while (!running.isEmpty()) {
+                    final Future<Attempt> next = done.take();
+                    if (running.remove(next) == null) {
+                        continue;
+                    }
+                    final Attempt attempt = await(next);
+                    if (attempt.bytes() <= targetBytes) {
+                        if (bestFit >= 0) {
+                            Util.safeDelete(kept.remove(bestFit));
+                        }
+                        bestFit = attempt.index();
+                        hi = bestFit;
+                    } else {
+                        lo = Math.max(lo, attempt.index() + 1);
+                        if (attempt.bytes() < smallestBytes) {
+                            if (smallest >= 0) {
+                                Util.safeDelete(kept.remove(smallest));
+                            }
+                            smallest = attempt.index();
+                            smallestBytes = attempt.bytes();
+                        } else {
+                            Util.safeDelete(kept.remove(attempt.index()));
+                        }
+                    }
+                    final int from = lo;
+                    final int to = hi;
+                    running.entrySet().removeIf(entry -> {
+                        if (entry.getValue() >= from && entry.getValue() < to) {
+                            return false;
+                        }
+                        entry.getKey().cancel(true);
+                        return true;
+                    });
+                }
+            }
+
+            if (bestFit < 0) {
+                throw new IllegalStateException("Could not compress to " + targetBytes
+                        + " bytes, the smallest result was " + smallestBytes + " bytes");
+            }
+            Files.move(kept.get(bestFit), out, StandardCopyOption.REPLACE_EXISTING);
+            LOGGER.info("target size {} met with {} (up to {} candidates in parallel)", targetBytes, ladder.get(bestFit), widest);
+            return ladder.get(bestFit);
+        } finally {
+            submitted.forEach(f -> f.cancel(true));
+            // the worker must not pick up its next job while a cancelled gs run still holds its slot
+            own.acquireUninterruptibly();
+            kept.values().forEach(Util::safeDelete);
+        }
+    }
+
+    private Attempt attempt(int index, GsSettings settings, Path in, Path out) throws IOException, InterruptedException {
+        engine.run(settings.switches(), in, out);
+        return new Attempt(index, Files.size(out));
+    }
+
+    // the own slot plus as many idle gs slots as the scheduler lends; each release runs once,
+    // when the attempt given that slot has exited
+    private List<Runnable> slots(Semaphore own, int wanted) {
+        final List<Runnable> slots = new ArrayList<>(List.of(own::release));
+        while (slots.size() < wanted && jobQueue.tryBorrow()) {
+            slots.add(jobQueue::giveBack);
+        }
+        return slots;
+    }
+
+    // the first round always tries the top rung, since most files fit without degrading;
+    // later rounds take the midpoints of width equal slices, a binary search when width is 1
+    private static List<Integer> pick(int lo, int hi, int width, boolean first) {
+        final int size = hi - lo;
+        final List<Integer> picks = new ArrayList<>();
+        for (int j = 0; j < Math.min(width, size); j++) {
+            picks.add(size <= width ? lo + j
+                    : first ? lo + j * size / width
+                    : lo + (2 * j + 1) * size / (2 * width));
+        }
+        return picks;
+    }
+
+    private static List<GsSettings> ladder(String profile) {
+        return List.of(
+                PdfCompressionService.settingsFor(profile, QualityTier.FULL),
+                new GsSettings("ebook", 110, 200, "/Bicubic", true),
+                new GsSettings("ebook", 96, 200, "/Bicubic", true),
+                new GsSettings("screen", 85, 150, "/Bicubic", true),
+                new GsSettings("screen", 72, 150, "/Average", false),
+                new GsSettings("screen", 60, 120, "/Average", false),
+                new GsSettings("screen", 50, 100, "/Average", false)
+        );
+    }
+
+    private static Attempt await(Future<Attempt> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            switch (e.getCause()) {
+                case IOException io -> throw io;
+                case InterruptedException ie -> throw ie;
+                case RuntimeException re -> throw re;
+                default -> throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+
+    private record Attempt(int index, long bytes) {
+    }
+}
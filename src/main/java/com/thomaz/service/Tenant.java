@@ -0,0 +1,24 @@
+package com.thomaz.service;
+
+import org.jspecify.annotations.Nullable;
+
+public record Tenant(
+        String organizationId,
+        @Nullable String token,
+        String fileClassId,
+        int weight,
+        int maxConcurrent,
+        String callbackBaseUrl
+) {
+
+    static final int UNLIMITED = 0;
+    static final int DEFAULT_WEIGHT = 1;
+
+    static Tenant unregistered(String organizationId, String defaultFileClassId) {
+        return new Tenant(organizationId, null, defaultFileClassId, DEFAULT_WEIGHT, UNLIMITED, defaultCallbackBaseUrl(organizationId));
+    }
+
+    static String defaultCallbackBaseUrl(String organizationId) {
+        return "https://" + organizationId + ".sydle.one/api/1/pdf-compression/_classId";
+    }
+}
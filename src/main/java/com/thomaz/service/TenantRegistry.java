@@ -0,0 +1,146 @@
+package com.thomaz.service;
+
+import com.thomaz.config.PdfCallbackProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Component
+public class TenantRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TenantRegistry.class);
+
+    private final PdfCallbackProperties props;
+    private final JsonMapper jsonMapper;
+    private final @Nullable Path tenantsFile;
+    private final ScheduledExecutorService reloader;
+    private volatile Map<String, Tenant> tenants = Map.of();
+    private final ReentrantLock reloadLock = new ReentrantLock();
+    private @Nullable FileTime loadedModified;
+
+    public TenantRegistry(PdfCallbackProperties props, JsonMapper jsonMapper) {
+        this.props = props;
+        this.jsonMapper = jsonMapper;
+        this.tenantsFile = props.getTenantsFile().isBlank() ? null : Path.of(props.getTenantsFile());
+        this.reloader = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                .name("tenant-reload")
+                .daemon(true)
+                .factory());
+    }
+
+    @PostConstruct
+    public void start() {
+        reload();
+        if (tenantsFile != null) {
+            final int interval = Math.max(1, props.getTenantsReloadSeconds());
+            reloader.scheduleWithFixedDelay(this::reloadIfChanged, interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        reloader.shutdownNow();
+    }
+
+    public Tenant tenant(String organizationId) {
+        final Tenant tenant = tenants.get(organizationId);
+        return tenant != null ? tenant : Tenant.unregistered(organizationId, props.getFileClassId());
+    }
+
+    public boolean registered(String organizationId) {
+        return tenants.containsKey(organizationId);
+    }
+
+    public Collection<Tenant> all() {
+        return tenants.values();
+    }
+
+    private void reloadIfChanged() {
+        try {
+            final FileTime modified = tenantsFile != null && Files.exists(tenantsFile)
+                    ? Files.getLastModifiedTime(tenantsFile)
+                    : null;
+            if (modified != null && !modified.equals(loadedModified)) {
+                reload();
+            }
+        } catch (IOException e) {
+            LOGGER.warn("could not check tenants file {}", tenantsFile, e);
+        }
+    }
+
+    private void reload() {
+        reloadLock.lock();
+        try {
+            load();
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    private void load() {
+        final Map<String, Tenant> index = new HashMap<>();
+        for (PdfCallbackProperties.EnvironmentConfig env : props.environments()) {
+            if (env.getOrganizationId() != null && !env.getOrganizationId().isBlank()) {
+                index.put(env.getOrganizationId(), new Tenant(env.getOrganizationId(), env.getToken(),
+                        props.getFileClassId(), Tenant.DEFAULT_WEIGHT, Tenant.UNLIMITED, Tenant.defaultCallbackBaseUrl(env.getOrganizationId())));
+            }
+        }
+
+        if (tenantsFile != null && Files.exists(tenantsFile)) {
+            try {
+                final FileTime modified = Files.getLastModifiedTime(tenantsFile);
+                for (Entry entry : jsonMapper.readValue(Files.readAllBytes(tenantsFile), Entry[].class)) {
+                    final Tenant tenant = entry.toTenant(index.get(entry.organizationId()), props.getFileClassId());
+                    index.put(tenant.organizationId(), tenant);
+                }
+                loadedModified = modified;
+            } catch (IOException | JacksonException | IllegalArgumentException e) {
+                LOGGER.error("could not load tenants file {}, keeping {} current tenants", tenantsFile, tenants.size(), e);
+                return;
+            }
+        }
+
+        tenants = Map.copyOf(index);
+        LOGGER.info("tenant registry loaded {} organizations", tenants.size());
+    }
+
+    record Entry(
+            @Nullable String organizationId,
+            @Nullable String token,
+            @Nullable String fileClassId,
+            @Nullable Integer weight,
+            @Nullable Integer maxConcurrent,
+            @Nullable String callbackBaseUrl
+    ) {
+        Tenant toTenant(@Nullable Tenant seed, String defaultFileClassId) {
+            if (organizationId == null || organizationId.isBlank()) {
+                throw new IllegalArgumentException("Tenant entry without organizationId");
+            }
+            return new Tenant(
+                    organizationId,
+                    token != null ? token : seed != null ? seed.token() : null,
+                    fileClassId != null ? fileClassId : defaultFileClassId,
+                    weight != null ? Math.max(1, weight) : Tenant.DEFAULT_WEIGHT,
+                    maxConcurrent != null ? Math.max(0, maxConcurrent) : Tenant.UNLIMITED,
+                    callbackBaseUrl != null ? callbackBaseUrl : Tenant.defaultCallbackBaseUrl(organizationId)
+            );
+        }
+    }
+}
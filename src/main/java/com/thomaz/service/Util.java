@@ -1,14 +1,15 @@
 package com.thomaz.service;
 
-import com.thomaz.config.exception.InvalidRequestException;
 import org.jspecify.annotations.Nullable;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
+import java.util.concurrent.CompletableFuture;
 
 public final class Util {
 
@@ -26,28 +27,52 @@ public final class Util {
         }
     }
 
-    public static void requireProbablyPdf(Path pdfPath) throws IOException {
-        try (InputStream in = Files.newInputStream(pdfPath)) {
-            byte[] header = in.readNBytes(5);
-            if (header.length < 5 ||
-                    header[0] != '%' || header[1] != 'P' || header[2] != 'D' || header[3] != 'F' || header[4] != '-') {
-                throw new InvalidRequestException("File does not look like a PDF.");
-            }
+    public static long safeSize(Path p) {
+        try {
+            return Files.size(p);
+        } catch (IOException ignored) {
+            return -1;
+        }
+    }
+
+    public static String toCompressedFileName(@Nullable String originalFileName) {
+        if (originalFileName == null || originalFileName.isBlank()) {
+            return "compressed.pdf";
         }
-        long size = Files.size(pdfPath);
-        if (size <= 0) {
-            throw new InvalidRequestException("Empty file.");
+        int lastDotIndex = originalFileName.lastIndexOf('.');
+        if (lastDotIndex != -1) {
+            return originalFileName.substring(0, lastDotIndex) + "-compressed.pdf";
         }
+        return originalFileName + "-compressed.pdf";
     }
 
-    static void waitUntil(LocalDateTime minResponseTime) {
-        long msToWait = LocalDateTime.now().until(minResponseTime, ChronoUnit.MILLIS);
-        if (msToWait > 0) {
-            try {
-                Thread.sleep(msToWait);
-            } catch (InterruptedException _) {
-                Thread.currentThread().interrupt();
+    public static String readProcessOutputBounded(InputStream in, int maxChars) throws IOException {
+        StringBuilder sb = new StringBuilder(Math.min(maxChars, 4096));
+        try (Reader r = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            char[] buf = new char[2048];
+            int n;
+            while ((n = r.read(buf)) != -1) {
+                int remaining = maxChars - sb.length();
+                if (remaining <= 0) {
+                    break;
+                }
+                sb.append(buf, 0, Math.min(n, remaining));
             }
         }
+        return sb.toString();
+    }
+
+    // drained on its own thread so the caller waits in Process.waitFor, where a timeout
+    // or an interrupt can actually kill the process
+    public static CompletableFuture<String> drainProcessOutput(Process p, int maxChars) {
+        final CompletableFuture<String> output = new CompletableFuture<>();
+        Thread.ofVirtual().name("process-output-" + p.pid()).start(() -> {
+            try {
+                output.complete(readProcessOutputBounded(p.getInputStream(), maxChars));
+            } catch (IOException e) {
+                output.completeExceptionally(e);
+            }
+        });
+        return output;
     }
 }
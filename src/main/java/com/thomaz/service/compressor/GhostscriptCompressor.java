@@ -0,0 +1,61 @@
+package com.thomaz.service.compressor;
+
+import com.thomaz.config.PdfCompressionProperties;
+import com.thomaz.form.QualityTier;
+import com.thomaz.service.PdfCompressionService;
+import com.thomaz.service.gs.GhostscriptEngine;
+import com.thomaz.service.gs.PageRangeCompressor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+@Component
+public class GhostscriptCompressor implements PdfCompressor {
+
+    public static final String NAME = "ghostscript";
+
+    private final PdfCompressionProperties.Gs props;
+    private final GhostscriptEngine ghostscript;
+    private final PageRangeCompressor pageRangeCompressor;
+
+    public GhostscriptCompressor(PdfCompressionProperties props,
+                                 GhostscriptEngine ghostscript,
+                                 PageRangeCompressor pageRangeCompressor) {
+        this.props = props.getGs();
+        this.ghostscript = ghostscript;
+        this.pageRangeCompressor = pageRangeCompressor;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public boolean tiered() {
+        return true;
+    }
+
+    @Override
+    public String profile(QualityTier tier) {
+        return PdfCompressionService.settingsFor(PdfCompressionService.normalizeProfile(props.getProfile()), tier).profile();
+    }
+
+    @Override
+    public List<String> settings(QualityTier tier) {
+        return PdfCompressionService.buildGsCommand(PdfCompressionService.normalizeProfile(props.getProfile()), tier);
+    }
+
+    @Override
+    public void compress(Path in, Path out, QualityTier tier) throws IOException, InterruptedException {
+        final List<String> switches = settings(tier);
+        final PageRangeCompressor.Plan plan = pageRangeCompressor.plan(in);
+        if (plan.split()) {
+            pageRangeCompressor.compress(switches, in, out, plan);
+        } else {
+            ghostscript.run(switches, in, out);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.thomaz.service.compressor;
+
+import com.thomaz.form.QualityTier;
+import com.thomaz.service.PdfResources;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.pdfparser.PDFStreamParser;
+import org.apache.pdfbox.pdfwriter.compress.CompressParameters;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageTree;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// structural rewrite only: pixels and glyphs are never touched
+@Component
+public class LosslessPdfCompressor implements PdfCompressor {
+
+    public static final String NAME = "lossless";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LosslessPdfCompressor.class);
+    private static final int VERSION = 3;
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public boolean tiered() {
+        return false;
+    }
+
+    @Override
+    public String profile(QualityTier tier) {
+        return NAME;
+    }
+
+    @Override
+    public List<String> settings(QualityTier tier) {
+        return List.of("engine=" + NAME, "version=" + VERSION);
+    }
+
+    // a file PDFBox cannot handle fails with LosslessRewriteException rather than falling back
+    // here, so the Ghostscript run that replaces it is cached and reported as what it is
+    @Override
+    public void compress(Path in, Path out, QualityTier tier) {
+        try {
+            rewrite(in, out);
+        } catch (IOException | RuntimeException e) {
+            throw new LosslessRewriteException(in, e);
+        }
+    }
+
+    private static void rewrite(Path in, Path out) throws IOException {
+        try (PDDocument document = Loader.loadPDF(in.toFile(), IOUtils.createTempFileOnlyStreamCache())) {
+            final int deduplicated = PdfResources.deduplicate(document);
+            final int pruned = pruneUnusedResources(document);
+            // packs objects into object streams and writes a compressed xref stream;
+            // objects left unreachable by the two passes above are not written at all
+            document.save(out.toFile(), CompressParameters.DEFAULT_COMPRESSION);
+            LOGGER.info("lossless rewrite merged {} duplicate streams and pruned {} unused resources", deduplicated, pruned);
+        }
+        if (Files.size(out) >= Files.size(in)) {
+            Files.copy(in, out, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // drops fonts and XObjects that no content stream names with Tf or Do; a resource
+    // dictionary shared by several pages, directly or inherited from the page tree, keeps
+    // the union of what those pages use, and one that anything else draws with is left alone
+    private static int pruneUnusedResources(PDDocument document) {
+        final Map<COSDictionary, Set<COSName>> used = new IdentityHashMap<>();
+        final Set<COSDictionary> unsafe = drawnByOthers(document);
+        for (PDPage page : document.getPages()) {
+            if (!(PDPageTree.getInheritableAttribute(page.getCOSObject(), COSName.RESOURCES) instanceof COSDictionary resources)) {
+                continue;
+            }
+            try {
+                final Set<COSName> names = namesUsed(page);
+                used.computeIfAbsent(resources, _ -> new HashSet<>()).addAll(names);
+                if (inheritsResources(resources, names)) {
+                    unsafe.add(resources);
+                }
+            } catch (IOException e) {
+                LOGGER.debug("keeping all resources of a page whose content could not be parsed", e);
+                unsafe.add(resources);
+            }
+        }
+
+        int pruned = 0;
+        for (Map.Entry<COSDictionary, Set<COSName>> entry : used.entrySet()) {
+            if (unsafe.contains(entry.getKey())) {
+                continue;
+            }
+            for (COSName category : List.of(COSName.XOBJECT, COSName.FONT)) {
+                final COSDictionary dictionary = entry.getKey().getCOSDictionary(category);
+                if (dictionary == null) {
+                    continue;
+                }
+                for (COSName name : List.copyOf(dictionary.keySet())) {
+                    if (!entry.getValue().contains(name)) {
+                        dictionary.removeItem(name);
+                        pruned++;
+                    }
+                }
+            }
+        }
+        return pruned;
+    }
+
+    // Only the page's own content stream is parsed, so every resource dictionary that forms,
+    // Type 3 glyphs, tiling patterns or annotation appearances draw with is off limits: it may
+    // be the very dictionary the page uses. Appearance streams without /Resources fall back to
+    // the page's, and the AcroForm defaults are used whenever a viewer regenerates a field.
+    private static Set<COSDictionary> drawnByOthers(PDDocument document) {
+        final Set<COSDictionary> unsafe = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (PDPage page : document.getPages()) {
+            final COSDictionary pageResources =
+                    PDPageTree.getInheritableAttribute(page.getCOSObject(), COSName.RESOURCES) instanceof COSDictionary r ? r : null;
+            if (pageResources != null) {
+                collectNested(pageResources, unsafe);
+            }
+            final COSArray annotations = page.getCOSObject().getCOSArray(COSName.ANNOTS);
+            if (annotations == null) {
+                continue;
+            }
+            for (COSBase item : annotations) {
+                if (!(PdfResources.dereference(item) instanceof COSDictionary annotation)
+                        || annotation.getCOSDictionary(COSName.AP) == null) {
+                    continue;
+                }
+                for (COSStream appearance : appearances(annotation.getCOSDictionary(COSName.AP))) {
+                    final COSDictionary resources = appearance.getCOSDictionary(COSName.RESOURCES);
+                    if (resources == null) {
+                        if (pageResources != null) {
+                            unsafe.add(pageResources);
+                        }
+                    } else if (unsafe.add(resources)) {
+                        collectNested(resources, unsafe);
+                    }
+                }
+            }
+        }
+        final COSDictionary acroForm = document.getDocumentCatalog().getCOSObject().getCOSDictionary(COSName.ACRO_FORM);
+        final COSDictionary defaults = acroForm != null ? acroForm.getCOSDictionary(COSName.DR) : null;
+        if (defaults != null && unsafe.add(defaults)) {
+            collectNested(defaults, unsafe);
+        }
+        return unsafe;
+    }
+
+    private static void collectNested(COSDictionary resources, Set<COSDictionary> unsafe) {
+        for (COSName category : List.of(COSName.XOBJECT, COSName.FONT, COSName.PATTERN)) {
+            final COSDictionary dictionary = resources.getCOSDictionary(category);
+            if (dictionary == null) {
+                continue;
+            }
+            for (COSName name : dictionary.keySet()) {
+                if (PdfResources.dereference(dictionary.getItem(name)) instanceof COSDictionary drawn) {
+                    final COSDictionary nested = drawn.getCOSDictionary(COSName.RESOURCES);
+                    if (nested != null && unsafe.add(nested)) {
+                        collectNested(nested, unsafe);
+                    }
+                }
+            }
+        }
+    }
+
+    // /N, /R and /D each hold a stream, or a dictionary of streams keyed by appearance state
+    private static List<COSStream> appearances(COSDictionary appearanceDictionary) {
+        final List<COSStream> streams = new ArrayList<>();
+        for (COSBase entry : appearanceDictionary.getValues()) {
+            final COSBase value = PdfResources.dereference(entry);
+            if (value instanceof COSStream stream) {
+                streams.add(stream);
+            } else if (value instanceof COSDictionary states) {
+                for (COSBase state : states.getValues()) {
+                    if (PdfResources.dereference(state) instanceof COSStream stream) {
+                        streams.add(stream);
+                    }
+                }
+            }
+        }
+        return streams;
+    }
+
+    // form XObjects and Type 3 fonts without their own /Resources draw with the page's
+    private static boolean inheritsResources(COSDictionary resources, Set<COSName> names) {
+        for (COSName category : List.of(COSName.XOBJECT, COSName.FONT)) {
+            final COSDictionary dictionary = resources.getCOSDictionary(category);
+            if (dictionary == null) {
+                continue;
+            }
+            for (COSName name : names) {
+                if (dictionary.getDictionaryObject(name) instanceof COSDictionary used
+                        && (COSName.FORM.equals(used.getCOSName(COSName.SUBTYPE)) || COSName.TYPE3.equals(used.getCOSName(COSName.SUBTYPE)))
+                        && !used.containsKey(COSName.RESOURCES)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static Set<COSName> namesUsed(PDPage page) throws IOException {
+        final Set<COSName> names = new HashSet<>();
+        final PDFStreamParser parser = new PDFStreamParser(page);
+        COSName operand = null;
+        for (Object token = parser.parseNextToken(); token != null; token = parser.parseNextToken()) {
+            if (token instanceof COSName name) {
+                operand = name;
+            } else if (token instanceof Operator operator) {
+                if (operand != null && ("Do".equals(operator.getName()) || "Tf".equals(operator.getName()))) {
+                    names.add(operand);
+                }
+                operand = null;
+            }
+        }
+        return names;
+    }
+}
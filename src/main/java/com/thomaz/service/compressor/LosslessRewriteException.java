@@ -0,0 +1,11 @@
+package com.thomaz.service.compressor;
+
+import java.nio.file.Path;
+
+// PDFBox could not load or save the file; the caller decides whether Ghostscript gets a go at it
+public class LosslessRewriteException extends RuntimeException {
+
+    public LosslessRewriteException(Path in, Throwable cause) {
+        super("lossless rewrite of " + in + " failed", cause);
+    }
+}
@@ -0,0 +1,23 @@
+package com.thomaz.service.compressor;
+
+import com.thomaz.form.QualityTier;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+public interface PdfCompressor {
+
+    String name();
+
+    // whether the output depends on the quality tier; only such engines are degraded under load
+    boolean tiered();
+
+    // the profile reported in metrics for a run at the given tier
+    String profile(QualityTier tier);
+
+    // everything that changes the output for a given input; part of the result cache key
+    List<String> settings(QualityTier tier);
+
+    void compress(Path in, Path out, QualityTier tier) throws IOException, InterruptedException;
+}
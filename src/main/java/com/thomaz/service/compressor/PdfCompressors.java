@@ -0,0 +1,43 @@
+package com.thomaz.service.compressor;
+
+import com.thomaz.config.PdfCompressionProperties;
+import com.thomaz.form.PreflightReport;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Component
+public class PdfCompressors {
+
+    public static final String AUTO = "auto";
+
+    private final Map<String, PdfCompressor> byName;
+    private final String mode;
+
+    public PdfCompressors(List<PdfCompressor> compressors, PdfCompressionProperties props) {
+        this.byName = compressors.stream().collect(Collectors.toUnmodifiableMap(PdfCompressor::name, Function.identity()));
+        this.mode = props.getEngine().getMode().trim().toLowerCase(Locale.ROOT);
+        if (!AUTO.equals(mode) && !byName.containsKey(mode)) {
+            throw new IllegalStateException("Unknown pdf.engine.mode: " + props.getEngine().getMode()
+                    + ", expected " + AUTO + " or one of " + byName.keySet());
+        }
+    }
+
+    // without images there is nothing for Ghostscript to downsample, so a structural
+    // rewrite gets most of the savings without re-rendering the document; an unsure
+    // preflight may have missed images, so those files get the full Ghostscript run
+    public PdfCompressor select(PreflightReport report) {
+        if (!AUTO.equals(mode)) {
+            return byName.get(mode);
+        }
+        return byName.get(report.textOnly() && !report.uncertain() ? LosslessPdfCompressor.NAME : GhostscriptCompressor.NAME);
+    }
+
+    public PdfCompressor ghostscript() {
+        return byName.get(GhostscriptCompressor.NAME);
+    }
+}
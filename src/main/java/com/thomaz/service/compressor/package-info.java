@@ -0,0 +1,4 @@
+@NullMarked
+package com.thomaz.service.compressor;
+
+import org.jspecify.annotations.NullMarked;
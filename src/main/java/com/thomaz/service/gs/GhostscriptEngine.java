@@ -0,0 +1,14 @@
+package com.thomaz.service.gs;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+public interface GhostscriptEngine extends AutoCloseable {
+
+    String run(List<String> switches, Path in, Path out) throws IOException, InterruptedException;
+
+    @Override
+    default void close() {
+    }
+}
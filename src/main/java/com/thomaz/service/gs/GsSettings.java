@@ -0,0 +1,35 @@
+package com.thomaz.service.gs;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public record GsSettings(
+        String profile,
+        int imageDpi,
+        int monoDpi,
+        String downsampleType,
+        boolean detectDuplicateImages
+) {
+
+    public List<String> switches() {
+        final List<String> switches = new ArrayList<>(List.of(
+                "-sDEVICE=pdfwrite",
+                "-dCompatibilityLevel=1.4",
+                "-dPDFSETTINGS=/" + profile,
+
+                "-dDownsampleColorImages=true",
+                "-dColorImageResolution=" + imageDpi,
+                "-dDownsampleGrayImages=true",
+                "-dGrayImageResolution=" + imageDpi,
+                "-dDownsampleMonoImages=true",
+                "-dMonoImageResolution=" + monoDpi,
+                "-dColorImageDownsampleType=" + downsampleType,
+                "-dGrayImageDownsampleType=" + downsampleType
+        ));
+        if (!detectDuplicateImages) {
+            // skips hashing every image to find duplicates
+            switches.add("-dDetectDuplicateImages=false");
+        }
+        return List.copyOf(switches);
+    }
+}
@@ -0,0 +1,174 @@
+package com.thomaz.service.gs;
+
+import com.thomaz.config.PdfCompressionProperties;
+import com.thomaz.jfr.GhostscriptEvent;
+import com.thomaz.service.Util;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SymbolLookup;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+
+public class LibgsGhostscriptEngine implements GhostscriptEngine {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LibgsGhostscriptEngine.class);
+    private static final int GS_ARG_ENCODING_UTF8 = 1;
+    private static final int GS_ERROR_QUIT = -101;
+    private static final int MAX_LOG_CHARS = 64_000;
+    private static final Map<Long, GsLog> LOGS = new ConcurrentHashMap<>();
+    private static final AtomicLong HANDLES = new AtomicLong();
+
+    private final Arena arena = Arena.ofShared();
+    private final MethodHandle newInstance;
+    private final MethodHandle setStdio;
+    private final MethodHandle setArgEncoding;
+    private final MethodHandle initWithArgs;
+    private final MethodHandle exit;
+    private final MethodHandle deleteInstance;
+    private final MemorySegment outputCallback;
+
+    public LibgsGhostscriptEngine(PdfCompressionProperties.Gs props) {
+        final Linker linker = Linker.nativeLinker();
+        final SymbolLookup libgs = SymbolLookup.libraryLookup(props.getLibrary(), arena);
+
+        this.newInstance = downcall(linker, libgs, "gsapi_new_instance", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS));
+        this.setStdio = downcall(linker, libgs, "gsapi_set_stdio", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, ADDRESS, ADDRESS));
+        this.setArgEncoding = downcall(linker, libgs, "gsapi_set_arg_encoding", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT));
+        this.initWithArgs = downcall(linker, libgs, "gsapi_init_with_args", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT, ADDRESS));
+        this.exit = downcall(linker, libgs, "gsapi_exit", FunctionDescriptor.of(JAVA_INT, ADDRESS));
+        this.deleteInstance = downcall(linker, libgs, "gsapi_delete_instance", FunctionDescriptor.ofVoid(ADDRESS));
+
+        try {
+            final MethodHandle onOutput = MethodHandles.lookup().findStatic(LibgsGhostscriptEngine.class, "onOutput",
+                    MethodType.methodType(int.class, MemorySegment.class, MemorySegment.class, int.class));
+            this.outputCallback = linker.upcallStub(onOutput, FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, JAVA_INT), arena);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+        LOGGER.info("loaded {} for in-process Ghostscript; pdf.gs.timeout-seconds is not enforced in this mode", props.getLibrary());
+    }
+
+    @Override
+    public String run(List<String> switches, Path in, Path out) {
+        final GhostscriptEvent event = new GhostscriptEvent();
+        event.begin();
+        final long handle = HANDLES.incrementAndGet();
+        final GsLog log = new GsLog();
+        LOGS.put(handle, log);
+        try (Arena call = Arena.ofConfined()) {
+            final List<String> args = new ArrayList<>(switches.size() + 7);
+            args.add("gs");
+            args.addAll(switches);
+            args.addAll(List.of("-dNOPAUSE", "-dBATCH", "-dSAFER", "-dQUIET"));
+            args.add("-sOutputFile=" + out.toAbsolutePath());
+            args.add(in.toAbsolutePath().toString());
+
+            final MemorySegment argv = call.allocate(ADDRESS, args.size());
+            for (int i = 0; i < args.size(); i++) {
+                argv.setAtIndex(ADDRESS, i, call.allocateFrom(args.get(i)));
+            }
+
+            final MemorySegment instanceRef = call.allocate(ADDRESS);
+            check((int) newInstance.invokeExact(instanceRef, MemorySegment.ofAddress(handle)), "gsapi_new_instance", log);
+            final MemorySegment instance = instanceRef.get(ADDRESS, 0);
+            try {
+                check((int) setStdio.invokeExact(instance, MemorySegment.NULL, outputCallback, outputCallback), "gsapi_set_stdio", log);
+                check((int) setArgEncoding.invokeExact(instance, GS_ARG_ENCODING_UTF8), "gsapi_set_arg_encoding", log);
+                final int code = (int) initWithArgs.invokeExact(instance, args.size(), argv);
+                final int exitCode = (int) exit.invokeExact(instance);
+                event.exitCode = code;
+                if (code != 0 && code != GS_ERROR_QUIT) {
+                    throw new IllegalStateException("Ghostscript failed (exit=" + code + "). Output:\n" + log);
+                }
+                check(exitCode, "gsapi_exit", log);
+            } finally {
+                deleteInstance.invokeExact(instance);
+            }
+            return log.toString();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException("libgs call failed", t);
+        } finally {
+            LOGS.remove(handle);
+            if (event.shouldCommit()) {
+                event.mode = "libgs";
+                event.inputBytes = Util.safeSize(in);
+                event.outputBytes = Util.safeSize(out);
+                event.commit();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        arena.close();
+    }
+
+    private static int onOutput(MemorySegment callerHandle, MemorySegment str, int len) {
+        final GsLog log = LOGS.get(callerHandle.address());
+        if (log != null && len > 0) {
+            log.append(new String(str.reinterpret(len).toArray(JAVA_BYTE), StandardCharsets.UTF_8));
+        }
+        return len;
+    }
+
+    private static void check(int code, String function, GsLog log) {
+        if (code < 0) {
+            throw new IllegalStateException(function + " failed (code=" + code + "). Output:\n" + log);
+        }
+    }
+
+    private static MethodHandle downcall(Linker linker, SymbolLookup lookup, String name, FunctionDescriptor descriptor) {
+        return linker.downcallHandle(
+                lookup.find(name).orElseThrow(() -> new IllegalStateException("libgs does not export " + name)),
+                descriptor
+        );
+    }
+
+    // gs may call back from its own threads, so appends and the final read share a lock
+    private static final class GsLog {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final StringBuilder text = new StringBuilder();
+
+        void append(String chunk) {
+            lock.lock();
+            try {
+                final int remaining = MAX_LOG_CHARS - text.length();
+                if (remaining > 0) {
+                    text.append(chunk, 0, Math.min(chunk.length(), remaining));
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public String toString() {
+            lock.lock();
+            try {
+                return text.toString();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.thomaz.service.gs;
+
+import com.thomaz.config.PdfCompressionProperties;
+import com.thomaz.service.CompressionJobQueue;
+import com.thomaz.service.PdfResources;
+import com.thomaz.service.Util;
+import jakarta.annotation.PreDestroy;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.multipdf.PDFMergerUtility;
+import org.apache.pdfbox.pdfwriter.compress.CompressParameters;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+@Component
+public class PageRangeCompressor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PageRangeCompressor.class);
+
+    private final PdfCompressionProperties.Gs gs;
+    private final PdfCompressionProperties.Split props;
+    private final CompressionJobQueue jobQueue;
+    private final ProcessGhostscriptEngine engine;
+    private final ExecutorService loader;
+    private final int parallelism;
+
+    public PageRangeCompressor(PdfCompressionProperties props, CompressionJobQueue jobQueue) {
+        this.gs = props.getGs();
+        this.props = props.getSplit();
+        this.jobQueue = jobQueue;
+        this.engine = new ProcessGhostscriptEngine(gs);
+        this.parallelism = this.props.getParallelism() > 0
+                ? this.props.getParallelism()
+                : Runtime.getRuntime().availableProcessors();
+        this.loader = Executors.newFixedThreadPool(parallelism, Thread.ofPlatform()
+                .name("pdf-merge-", 0)
+                .daemon(true)
+                .factory());
+    }
+
+    @PreDestroy
+    public void stop() {
+        loader.shutdownNow();
+    }
+
+    public Plan plan(Path in) throws IOException, InterruptedException {
+        if (!props.isEnabled() || parallelism < 2 || Files.size(in) < props.getMinBytes()) {
+            return Plan.SINGLE;
+        }
+        final int pages = pageCount(in);
+        if (pages < props.getMinPages()) {
+            return new Plan(pages, 1);
+        }
+        return new Plan(pages, Math.min(parallelism, pages / Math.max(1, props.getMinPagesPerPart())));
+    }
+
+    // the calling job's own slot runs one part and every other part needs a slot the scheduler
+    // lends, so a split never runs more gs processes than pdf.gs.max-concurrent allows
+    public void compress(List<String> switches, Path in, Path out, Plan plan) throws IOException, InterruptedException {
+        int borrowed = 0;
+        while (borrowed < plan.parts() - 1 && jobQueue.tryBorrow()) {
+            borrowed++;
+        }
+        final List<Path> partFiles = new ArrayList<>();
+        final List<Thread> runs = new ArrayList<>();
+        try {
+            if (borrowed == 0) {
+                engine.run(switches, in, out);
+                return;
+            }
+            final int pages = plan.pages();
+            final int perPart = (pages + borrowed) / (borrowed + 1);
+            final List<CompletableFuture<String>> results = new ArrayList<>();
+            for (int first = 1; first <= pages; first += perPart) {
+                final Path partFile = Files.createTempFile("pdf-part-", ".pdf");
+                partFiles.add(partFile);
+                final List<String> range = new ArrayList<>(switches);
+                range.add("-dFirstPage=" + first);
+                range.add("-dLastPage=" + Math.min(pages, first + perPart - 1));
+                final CompletableFuture<String> result = new CompletableFuture<>();
+                results.add(result);
+                runs.add(Thread.ofVirtual().name("gs-split-" + partFiles.size()).start(() -> {
+                    try {
+                        result.complete(engine.run(range, in, partFile));
+                    } catch (Throwable e) {
+                        result.completeExceptionally(e);
+                    }
+                }));
+            }
+            for (CompletableFuture<String> result : results) {
+                await(result);
+            }
+            merge(partFiles, out);
+            LOGGER.info("compressed {} pages in {} parallel ranges", pages, partFiles.size());
+        } finally {
+            // an interrupted run kills its gs process; a lent slot goes back only once that process is gone
+            runs.forEach(Thread::interrupt);
+            joinUninterruptibly(runs);
+            for (int i = 0; i < borrowed; i++) {
+                jobQueue.giveBack();
+            }
+            partFiles.forEach(Util::safeDelete);
+        }
+    }
+
+    // The parts are parsed in parallel and their pages appended in order. Objects are copied as they
+    // are, so nothing is re-distilled: a second pdfwrite pass over every page would run on one core
+    // and take about as long as compressing the whole file did. Every part carries its own copy of
+    // the images and fonts it uses, so byte-identical copies are folded back into one before saving.
+    private void merge(List<Path> partFiles, Path out) throws IOException, InterruptedException {
+        final List<Future<PDDocument>> loading = new ArrayList<>();
+        for (Path partFile : partFiles) {
+            loading.add(loader.submit(() -> Loader.loadPDF(partFile.toFile(), IOUtils.createTempFileOnlyStreamCache())));
+        }
+        try (PDDocument merged = new PDDocument(IOUtils.createTempFileOnlyStreamCache())) {
+            final PDFMergerUtility merger = new PDFMergerUtility();
+            for (Future<PDDocument> part : loading) {
+                merger.appendDocument(merged, await(part));
+            }
+            final int deduplicated = PdfResources.deduplicate(merged);
+            LOGGER.debug("merged {} duplicate streams across {} parts", deduplicated, partFiles.size());
+            // the parts stay open until here: appended pages still read their streams from them
+            merged.save(out.toFile(), CompressParameters.DEFAULT_COMPRESSION);
+        } finally {
+            for (Future<PDDocument> part : loading) {
+                if (!part.cancel(true) && part.state() == Future.State.SUCCESS) {
+                    IOUtils.closeQuietly(part.resultNow());
+                }
+            }
+        }
+    }
+
+    public int pageCount(Path in) throws IOException, InterruptedException {
+        final String file = in.toAbsolutePath().toString();
+        final Process p = new ProcessBuilder(
+                gs.getPath(),
+                "-q",
+                "-dNODISPLAY",
+                "-dNOPAUSE",
+                "-dBATCH",
+                "-dSAFER",
+                "--permit-file-read=" + file,
+                "-c",
+                "(" + file.replace("\\", "\\\\").replace("(", "\\(").replace(")", "\\)") + ") (r) file runpdfbegin pdfpagecount = quit"
+        ).redirectErrorStream(true).start();
+        final CompletableFuture<String> drained = Util.drainProcessOutput(p, 4096);
+        final String output;
+        try {
+            if (!p.waitFor(gs.getTimeoutSeconds(), TimeUnit.SECONDS)) {
+                p.destroyForcibly();
+                throw new IllegalStateException("Ghostscript page count timed out after " + gs.getTimeoutSeconds() + "s");
+            }
+            output = drained.get().trim();
+        } catch (ExecutionException e) {
+            throw new IOException("Could not read Ghostscript output", e.getCause());
+        } catch (InterruptedException e) {
+            p.destroyForcibly();
+            throw e;
+        }
+        try {
+            return Integer.parseInt(output.substring(output.lastIndexOf('\n') + 1).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Could not read page count. Output:\n" + output, e);
+        }
+    }
+
+    private static void joinUninterruptibly(List<Thread> threads) {
+        boolean interrupted = false;
+        for (Thread thread : threads) {
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static <T> T await(Future<T> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            switch (e.getCause()) {
+                case IOException io -> throw io;
+                case RuntimeException re -> throw re;
+                default -> throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+
+    public record Plan(int pages, int parts) {
+        static final Plan SINGLE = new Plan(-1, 1);
+
+        public boolean split() {
+            return parts > 1;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.thomaz.service.gs;
+
+import com.thomaz.jfr.GhostscriptEvent;
+import com.thomaz.service.Util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public final class PipedGhostscript implements AutoCloseable {
+
+    public static final int ABORTED = Integer.MIN_VALUE;
+
+    private final Process process;
+    private final long timeoutSeconds;
+    private final CompletableFuture<String> log;
+    private final InputStream output;
+    private final GhostscriptEvent event = new GhostscriptEvent();
+    private final Path input;
+    private volatile boolean drained;
+    private volatile long outputBytes;
+
+    PipedGhostscript(Process process, Path input, long timeoutSeconds) {
+        event.begin();
+        this.process = process;
+        this.input = input;
+        this.timeoutSeconds = timeoutSeconds;
+        this.log = CompletableFuture.supplyAsync(() -> {
+            try {
+                return Util.readProcessOutputBounded(process.getErrorStream(), 64_000);
+            } catch (IOException e) {
+                return e.toString();
+            }
+        }, runnable -> Thread.ofVirtual().start(runnable));
+        CompletableFuture.delayedExecutor(timeoutSeconds, TimeUnit.SECONDS).execute(process::destroyForcibly);
+        this.output = new ExitCheckingStream(process.getInputStream());
+    }
+
+    public InputStream output() {
+        return output;
+    }
+
+    public int finish() throws InterruptedException {
+        final int exit;
+        if (!drained) {
+            process.destroyForcibly();
+            exit = ABORTED;
+        } else if (!process.waitFor(timeoutSeconds, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+            exit = ABORTED;
+        } else {
+            exit = process.exitValue();
+        }
+        if (event.shouldCommit()) {
+            event.mode = "piped";
+            event.exitCode = exit;
+            event.timedOut = drained && exit == ABORTED;
+            event.inputBytes = Util.safeSize(input);
+            event.outputBytes = outputBytes;
+            event.commit();
+        }
+        return exit;
+    }
+
+    public String log() {
+        try {
+            return log.get(1, TimeUnit.SECONDS);
+        } catch (InterruptedException _) {
+            Thread.currentThread().interrupt();
+            return "";
+        } catch (ExecutionException | TimeoutException _) {
+            return "";
+        }
+    }
+
+    @Override
+    public void close() {
+        process.destroyForcibly();
+    }
+
+    private final class ExitCheckingStream extends FilterInputStream {
+
+        private ExitCheckingStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            return b < 0 ? checkEof(b) : counted(1, b);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            final int n = super.read(b, off, len);
+            return n < 0 ? checkEof(n) : counted(n, n);
+        }
+
+        // only the reading thread writes the count, finish() reads it after the upload returned
+        @SuppressWarnings("NonAtomicOperationOnVolatileField")
+        private int counted(int bytes, int result) {
+            outputBytes += bytes;
+            return result;
+        }
+
+        private int checkEof(int n) throws IOException {
+            drained = true;
+            try {
+                if (process.waitFor(timeoutSeconds, TimeUnit.SECONDS) && process.exitValue() == 0) {
+                    return n;
+                }
+            } catch (InterruptedException _) {
+                Thread.currentThread().interrupt();
+            }
+            // failing the read aborts the request body, so a truncated PDF is never accepted as an upload
+            throw new IOException("Ghostscript did not finish cleanly; aborting piped output");
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package com.thomaz.service.gs;
+
+import com.thomaz.config.PdfCompressionProperties;
+import com.thomaz.jfr.GhostscriptEvent;
+import com.thomaz.service.Util;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class PooledGhostscriptEngine implements GhostscriptEngine {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PooledGhostscriptEngine.class);
+    private static final String DONE_MARKER = "%%GS-POOL-DONE ";
+    private static final String FAILED_MARKER = "%%GS-POOL-FAILED ";
+    private static final int HEALTH_CHECK_TIMEOUT_SECONDS = 5;
+    private static final Set<String> INTERPRETER_SWITCHES = Set.of("DEVICE", "NOPAUSE", "BATCH", "SAFER", "QUIET");
+
+    private final PdfCompressionProperties.Gs props;
+    private final BlockingQueue<Slot> idle = new LinkedBlockingQueue<>();
+    private final ScheduledExecutorService housekeeper;
+    private final int size;
+    private final AtomicLong jobIds = new AtomicLong();
+
+    public PooledGhostscriptEngine(PdfCompressionProperties.Gs props) {
+        this.props = props;
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                .name("gs-pool-housekeeper")
+                .daemon(true)
+                .factory());
+        this.size = Math.max(1, props.getMaxConcurrent());
+        for (int i = 0; i < size; i++) {
+            idle.add(new Slot(i));
+        }
+        final long interval = Math.max(1, props.getPool().getHealthCheckSeconds());
+        housekeeper.execute(this::checkIdleWorkers);
+        housekeeper.scheduleWithFixedDelay(this::checkIdleWorkers, interval, interval, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public String run(List<String> switches, Path in, Path out) throws IOException, InterruptedException {
+        final Slot slot = idle.take();
+        final GhostscriptEvent event = new GhostscriptEvent();
+        event.begin();
+        boolean reusable = false;
+        try {
+            final Worker worker = slot.ensureStarted();
+            final String log = worker.execute(jobScript(switches, in, out), props.getTimeoutSeconds(), event);
+            reusable = true;
+            return log;
+        } finally {
+            release(slot, reusable);
+            if (event.shouldCommit()) {
+                event.mode = "pool";
+                event.inputBytes = Util.safeSize(in);
+                event.outputBytes = Util.safeSize(out);
+                event.commit();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        housekeeper.shutdownNow();
+        final List<Slot> slots = new ArrayList<>();
+        idle.drainTo(slots);
+        slots.forEach(Slot::retire);
+    }
+
+    private void release(Slot slot, boolean reusable) {
+        final Worker worker = slot.worker;
+        if (!reusable || worker == null || !worker.process.isAlive()) {
+            slot.retire();
+        } else if (worker.jobs >= props.getPool().getMaxJobsPerWorker()) {
+            LOGGER.info("recycling gs worker {} after {} jobs", slot.id, worker.jobs);
+            slot.retire();
+        } else if (worker.residentSetMb() > props.getPool().getMaxRssMb()) {
+            LOGGER.info("recycling gs worker {} at {} MB RSS", slot.id, worker.residentSetMb());
+            slot.retire();
+        }
+        final boolean restart = slot.worker == null;
+        idle.add(slot);
+        if (restart) {
+            housekeeper.execute(this::checkIdleWorkers);
+        }
+    }
+
+    // one slot out of the pool at a time, so jobs keep the other workers while a check runs;
+    // slots go back to the tail, so size polls visit each idle slot about once
+    private void checkIdleWorkers() {
+        for (int i = 0; i < size; i++) {
+            final Slot slot = idle.poll();
+            if (slot == null) {
+                return;
+            }
+            try {
+                slot.ensureStarted().execute("", HEALTH_CHECK_TIMEOUT_SECONDS, new GhostscriptEvent());
+            } catch (InterruptedException _) {
+                slot.retire();
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                LOGGER.warn("gs worker {} failed health check", slot.id, e);
+                slot.retire();
+            } finally {
+                idle.add(slot);
+            }
+        }
+    }
+
+    private Worker startWorker() throws IOException {
+        final String tmpDir = Path.of(System.getProperty("java.io.tmpdir")).toAbsolutePath() + "/";
+        final List<String> cmd = List.of(
+                props.getPath(),
+                "-q",
+                "-dNOPAUSE",
+                "-dSAFER",
+                "-dNODISPLAY",
+                "--permit-file-read=" + tmpDir,
+                "--permit-file-write=" + tmpDir,
+                "-"
+        );
+        ProcessBuilder pb = new ProcessBuilder(cmd);
+        pb.redirectErrorStream(true);
+        return new Worker(pb.start());
+    }
+
+    private String jobScript(List<String> switches, Path in, Path out) {
+        final StringBuilder profile = new StringBuilder();
+        final StringBuilder params = new StringBuilder();
+        for (String sw : switches) {
+            if (!sw.startsWith("-d") && !sw.startsWith("-s")) {
+                continue;
+            }
+            final int eq = sw.indexOf('=');
+            final String name = eq < 0 ? sw.substring(2) : sw.substring(2, eq);
+            if (INTERPRETER_SWITCHES.contains(name)) {
+                continue;
+            }
+            final String value = eq < 0 ? "true" : sw.substring(eq + 1);
+            final String token = sw.startsWith("-s") ? psString(value) : value;
+            ("PDFSETTINGS".equals(name) ? profile : params)
+                    .append('/').append(name).append(' ').append(token).append(' ');
+        }
+        return "{ mark /OutputFile " + psString(out.toAbsolutePath().toString())
+                + " (pdfwrite) finddevice putdeviceprops setdevice\n"
+                + (profile.isEmpty() ? "" : "<< " + profile + ">> setdistillerparams\n")
+                + "<< " + params + ">> setdistillerparams\n"
+                + psString(in.toAbsolutePath().toString()) + " run\n"
+                + "} stopped\n";
+    }
+
+    private static String psString(String value) {
+        return "(" + value.replace("\\", "\\\\").replace("(", "\\(").replace(")", "\\)") + ")";
+    }
+
+    private final class Slot {
+        private final int id;
+        private @Nullable Worker worker;
+
+        private Slot(int id) {
+            this.id = id;
+        }
+
+        private Worker ensureStarted() throws IOException {
+            if (worker == null || !worker.process.isAlive()) {
+                retire();
+                worker = startWorker();
+                LOGGER.info("started gs worker {} (pid {})", id, worker.process.pid());
+            }
+            return worker;
+        }
+
+        private void retire() {
+            if (worker != null) {
+                worker.destroy();
+                worker = null;
+            }
+        }
+    }
+
+    private final class Worker {
+        private final Process process;
+        private final Writer input;
+        private final BufferedReader output;
+        private int jobs;
+
+        private Worker(Process process) {
+            this.process = process;
+            this.input = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8);
+            this.output = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        }
+
+        // readLine blocks where neither an interrupt nor a timeout can reach it, so the reply is
+        // read on a thread of its own while the caller waits; giving up kills the worker, which
+        // ends the read, and the slot gets a fresh one
+        private String execute(String script, int timeoutSeconds, GhostscriptEvent event)
+                throws IOException, InterruptedException {
+            final long jobId = jobIds.incrementAndGet();
+            final String done = DONE_MARKER + jobId;
+            final String failed = FAILED_MARKER + jobId;
+            input.write(script.isEmpty() ? "false\n" : script);
+            input.write("{ clear nulldevice (" + failed + "\\n) } { clear nulldevice (" + done + "\\n) } ifelse print flush\n");
+            input.flush();
+
+            final FutureTask<String> reply = new FutureTask<>(() -> readReply(done, failed, !script.isEmpty(), event));
+            Thread.ofVirtual().name("gs-pool-reader-" + jobId).start(reply);
+            try {
+                return reply.get(timeoutSeconds, TimeUnit.SECONDS);
+            } catch (TimeoutException _) {
+                process.destroyForcibly();
+                event.timedOut = true;
+                throw new IllegalStateException("Ghostscript timed out after " + timeoutSeconds + "s");
+            } catch (InterruptedException e) {
+                process.destroyForcibly();
+                throw e;
+            } catch (ExecutionException e) {
+                throw switch (e.getCause()) {
+                    case IOException io -> io;
+                    case RuntimeException re -> re;
+                    case Throwable other -> new IllegalStateException(other);
+                };
+            }
+        }
+
+        // a worker runs on after a failed job, so it has no exit code to report; 1 is what a
+        // one-shot gs run exits with on the same PostScript error
+        private String readReply(String done, String failed, boolean counts, GhostscriptEvent event)
+                throws IOException, InterruptedException {
+            final StringBuilder log = new StringBuilder();
+            String line;
+            while ((line = output.readLine()) != null) {
+                if (line.equals(done)) {
+                    if (counts) {
+                        jobs++;
+                    }
+                    event.exitCode = 0;
+                    return log.toString();
+                }
+                if (line.equals(failed)) {
+                    event.exitCode = 1;
+                    throw new IllegalStateException("Ghostscript failed. Output:\n" + log);
+                }
+                if (log.length() < 64_000) {
+                    log.append(line, 0, Math.min(line.length(), 64_000 - log.length())).append('\n');
+                }
+            }
+            event.exitCode = process.waitFor();
+            throw new IllegalStateException("Ghostscript worker exited (exit=" + event.exitCode + "). Output:\n" + log);
+        }
+
+        private long residentSetMb() {
+            try {
+                for (String line : Files.readAllLines(Path.of("/proc", String.valueOf(process.pid()), "status"))) {
+                    if (line.startsWith("VmRSS:")) {
+                        return Long.parseLong(line.replaceAll("\\D", "")) / 1024;
+                    }
+                }
+            } catch (Exception _) {
+                // not on Linux or the process is gone; RSS recycling is skipped
+            }
+            return 0;
+        }
+
+        private void destroy() {
+            try {
+                input.close();
+            } catch (IOException _) {
+            }
+            process.destroy();
+            try {
+                if (!process.waitFor(2, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            } catch (InterruptedException _) {
+                Thread.currentThread().interrupt();
+                process.destroyForcibly();
+            }
+        }
+    }
+}
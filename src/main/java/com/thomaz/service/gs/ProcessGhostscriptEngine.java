@@ -0,0 +1,81 @@
+package com.thomaz.service.gs;
+
+import com.thomaz.config.PdfCompressionProperties;
+import com.thomaz.jfr.GhostscriptEvent;
+import com.thomaz.service.Util;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class ProcessGhostscriptEngine implements GhostscriptEngine {
+
+    private final PdfCompressionProperties.Gs props;
+
+    public ProcessGhostscriptEngine(PdfCompressionProperties.Gs props) {
+        this.props = props;
+    }
+
+    @Override
+    public String run(List<String> switches, Path in, Path out) throws IOException, InterruptedException {
+        final List<String> cmd = new ArrayList<>(switches.size() + 7);
+        cmd.add(props.getPath());
+        cmd.addAll(switches);
+        cmd.addAll(List.of("-dNOPAUSE", "-dBATCH", "-dSAFER", "-dQUIET"));
+        cmd.add("-sOutputFile=" + out.toAbsolutePath());
+        cmd.add(in.toAbsolutePath().toString());
+
+        final GhostscriptEvent event = new GhostscriptEvent();
+        event.begin();
+        ProcessBuilder pb = new ProcessBuilder(cmd);
+        pb.redirectErrorStream(true);
+        Process p = pb.start();
+
+        // a cancelled speculative run interrupts this thread, which kills the process below
+        final CompletableFuture<String> output = Util.drainProcessOutput(p, 64_000);
+
+        try {
+            boolean finished = p.waitFor(props.getTimeoutSeconds(), TimeUnit.SECONDS);
+            if (!finished) {
+                p.destroyForcibly();
+                event.timedOut = true;
+                throw new IllegalStateException("Ghostscript timed out after "
+                        + props.getTimeoutSeconds() + "s");
+            }
+
+            String log = output.get();
+            int code = p.exitValue();
+            event.exitCode = code;
+            if (code != 0) {
+                throw new IllegalStateException("Ghostscript failed (exit=" + code + "). Output:\n" + log);
+            }
+            return log;
+        } catch (ExecutionException e) {
+            throw new IOException("Could not read Ghostscript output", e.getCause());
+        } catch (InterruptedException e) {
+            p.destroyForcibly();
+            throw e;
+        } finally {
+            if (event.shouldCommit()) {
+                event.mode = "process";
+                event.inputBytes = Util.safeSize(in);
+                event.outputBytes = Util.safeSize(out);
+                event.commit();
+            }
+        }
+    }
+
+    public PipedGhostscript startPiped(List<String> switches, Path in) throws IOException {
+        final List<String> cmd = new ArrayList<>(switches.size() + 8);
+        cmd.add(props.getPath());
+        cmd.addAll(switches);
+        cmd.addAll(List.of("-dNOPAUSE", "-dBATCH", "-dSAFER", "-dQUIET", "-sstdout=%stderr"));
+        cmd.add("-sOutputFile=-");
+        cmd.add(in.toAbsolutePath().toString());
+        return new PipedGhostscript(new ProcessBuilder(cmd).start(), in, props.getTimeoutSeconds());
+    }
+}
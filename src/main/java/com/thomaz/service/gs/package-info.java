@@ -0,0 +1,4 @@
+@NullMarked
+package com.thomaz.service.gs;
+
+import org.jspecify.annotations.NullMarked;
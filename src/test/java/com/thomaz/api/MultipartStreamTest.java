@@ -0,0 +1,220 @@
+package com.thomaz.api;
+
+import com.thomaz.config.exception.InvalidRequestException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MultipartStreamTest {
+
+    private static final String BOUNDARY = "----form7MA4YWxkTrZu0gW";
+
+    // chunk sizes straddle the delimiter at every offset and the parser's 64k buffer edge
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 3, 7, 41, 4096, 65_535, 65_536, 1 << 20})
+    void copiesBodyWhateverTheReadSizes(int chunk) throws IOException {
+        final byte[] file = body(200_000, 1);
+        final byte[] request = new Form()
+                .preamble("ignored preamble\r\n")
+                .field("compressionId", "42")
+                .file("file", "contrato.pdf", file)
+                .epilogue("\r\nignored epilogue")
+                .build();
+
+        final List<Part> parts = parse(new ChunkedInputStream(request, chunk));
+
+        assertThat(parts).extracting(Part::name).containsExactly("compressionId", "file");
+        assertThat(parts.get(0).body()).isEqualTo("42".getBytes(StandardCharsets.UTF_8));
+        assertThat(parts.get(1).filename()).isEqualTo("contrato.pdf");
+        assertThat(parts.get(1).body()).isEqualTo(file);
+    }
+
+    // CR LF - - and a boundary prefix inside the data are not delimiters until the whole boundary follows
+    @ParameterizedTest
+    @ValueSource(ints = {1, 5, 13, 65_536})
+    void keepsNearMissesOfTheDelimiterInTheBody(int chunk) throws IOException {
+        final ByteArrayOutputStream file = new ByteArrayOutputStream();
+        file.writeBytes("%PDF-1.7\r\n--".getBytes(StandardCharsets.ISO_8859_1));
+        file.writeBytes(("\r\n--" + BOUNDARY.substring(0, BOUNDARY.length() - 1) + "X").getBytes(StandardCharsets.ISO_8859_1));
+        file.writeBytes(body(65_530, 2));
+        file.writeBytes(("\r\n-" + BOUNDARY + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        final byte[] request = new Form().file("file", "a.pdf", file.toByteArray()).build();
+
+        final List<Part> parts = parse(new ChunkedInputStream(request, chunk));
+
+        assertThat(parts).hasSize(1);
+        assertThat(parts.get(0).body()).isEqualTo(file.toByteArray());
+    }
+
+    @Test
+    void acceptsAnEmptyPart() throws IOException {
+        final byte[] request = new Form().file("file", "empty.pdf", new byte[0]).field("note", "x").build();
+
+        final List<Part> parts = parse(new ChunkedInputStream(request, 3));
+
+        assertThat(parts).extracting(Part::name).containsExactly("file", "note");
+        assertThat(parts.get(0).body()).isEmpty();
+    }
+
+    @Test
+    void returnsNoPartsForAnEmptyForm() throws IOException {
+        final byte[] request = ("--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.ISO_8859_1);
+
+        assertThat(parse(new ChunkedInputStream(request, 1))).isEmpty();
+    }
+
+    @Test
+    void rejectsABodyWithoutTheClosingDelimiter() {
+        final byte[] complete = new Form().file("file", "a.pdf", body(10_000, 3)).build();
+        final byte[] truncated = Arrays.copyOf(complete, complete.length - BOUNDARY.length() - 8);
+
+        assertThatThrownBy(() -> parse(new ChunkedInputStream(truncated, 1024)))
+                .isInstanceOf(InvalidRequestException.class)
+                .hasMessageContaining("Unexpected end");
+    }
+
+    @Test
+    void rejectsABodyWithoutAnyDelimiter() {
+        final byte[] request = body(100_000, 4);
+
+        assertThatThrownBy(() -> parse(new ChunkedInputStream(request, 4096)))
+                .isInstanceOf(InvalidRequestException.class)
+                .hasMessageContaining("Unexpected end");
+    }
+
+    @Test
+    void rejectsOversizedHeaders() {
+        final String huge = "x".repeat(20_000);
+        final byte[] request = ("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + huge + "\"\r\n\r\n"
+                + "data\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.ISO_8859_1);
+
+        assertThatThrownBy(() -> parse(new ChunkedInputStream(request, 512)))
+                .isInstanceOf(InvalidRequestException.class)
+                .hasMessageContaining("headers too large");
+    }
+
+    @Test
+    void readsTheBoundaryFromTheContentType() {
+        assertThat(MultipartStream.boundaryOf("multipart/form-data; boundary=abc")).isEqualTo("abc");
+        assertThat(MultipartStream.boundaryOf("multipart/form-data; charset=UTF-8; BOUNDARY=\"a b\"")).isEqualTo("a b");
+        assertThatThrownBy(() -> MultipartStream.boundaryOf("multipart/form-data"))
+                .isInstanceOf(InvalidRequestException.class);
+        assertThatThrownBy(() -> MultipartStream.boundaryOf("multipart/form-data; boundary=\"\""))
+                .isInstanceOf(InvalidRequestException.class);
+    }
+
+    @Test
+    void readsDispositionParameters() {
+        final String disposition = "form-data; name=\"file\"; filename=\"relatório.pdf\"";
+
+        assertThat(MultipartStream.dispositionParam(disposition, "name")).isEqualTo("file");
+        assertThat(MultipartStream.dispositionParam(disposition, "FILENAME")).isEqualTo("relatório.pdf");
+        assertThat(MultipartStream.dispositionParam(disposition, "size")).isEmpty();
+    }
+
+    private static List<Part> parse(InputStream in) throws IOException {
+        final MultipartStream multipart = new MultipartStream(in, BOUNDARY);
+        final List<Part> parts = new ArrayList<>();
+        while (multipart.nextPart()) {
+            final Map<String, String> headers = multipart.readHeaders();
+            final String disposition = headers.getOrDefault("content-disposition", "");
+            final ByteArrayOutputStream body = new ByteArrayOutputStream();
+            multipart.copyBody(body::write);
+            parts.add(new Part(MultipartStream.dispositionParam(disposition, "name"),
+                    MultipartStream.dispositionParam(disposition, "filename"), body.toByteArray()));
+        }
+        return parts;
+    }
+
+    static byte[] body(int size, long seed) {
+        final byte[] bytes = new byte[size];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    private record Part(String name, String filename, byte[] body) {
+    }
+
+    static final class Form {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private String epilogue = "";
+
+        Form preamble(String text) {
+            out.writeBytes(text.getBytes(StandardCharsets.ISO_8859_1));
+            return this;
+        }
+
+        Form field(String name, String value) {
+            part("form-data; name=\"" + name + "\"", null, value.getBytes(StandardCharsets.UTF_8));
+            return this;
+        }
+
+        Form file(String name, String filename, byte[] content) {
+            part("form-data; name=\"" + name + "\"; filename=\"" + filename + "\"", "application/pdf", content);
+            return this;
+        }
+
+        Form epilogue(String text) {
+            this.epilogue = text;
+            return this;
+        }
+
+        byte[] build() {
+            out.writeBytes(("--" + BOUNDARY + "--" + epilogue).getBytes(StandardCharsets.ISO_8859_1));
+            return out.toByteArray();
+        }
+
+        private void part(String disposition, String contentType, byte[] content) {
+            final StringBuilder headers = new StringBuilder("--" + BOUNDARY + "\r\n")
+                    .append("Content-Disposition: ").append(disposition).append("\r\n");
+            if (contentType != null) {
+                headers.append("Content-Type: ").append(contentType).append("\r\n");
+            }
+            out.writeBytes(headers.append("\r\n").toString().getBytes(StandardCharsets.UTF_8));
+            out.writeBytes(content);
+            out.writeBytes("\r\n".getBytes(StandardCharsets.ISO_8859_1));
+        }
+    }
+
+    // hands out at most chunk bytes per read, the way a servlet input stream does under load
+    static final class ChunkedInputStream extends InputStream {
+        private final byte[] data;
+        private final int chunk;
+        private int pos;
+
+        ChunkedInputStream(byte[] data, int chunk) {
+            this.data = data;
+            this.chunk = chunk;
+        }
+
+        @Override
+        public int read() {
+            return pos < data.length ? data[pos++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (pos >= data.length) {
+                return -1;
+            }
+            final int n = Math.min(Math.min(len, chunk), data.length - pos);
+            System.arraycopy(data, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.thomaz.api;
+
+import com.thomaz.form.PdfFeatures;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PdfMarkerScannerTest {
+
+    private static final byte[] OBJECTS = ("""
+            1 0 obj << /Type /Pages /Kids [2 0 R 3 0 R] /Count 2 >> endobj
+            2 0 obj << /Type /Page /Parent 1 0 R >> endobj
+            3 0 obj << /Type/Page/Parent 1 0 R /Resources << /XObject << /Im0 4 0 R >> >> >> endobj
+            4 0 obj << /Type /XObject /Subtype /Image /Width 1 /Height 1 >> endobj
+            """).getBytes(StandardCharsets.US_ASCII);
+
+    // every split point of the input lands inside a marker or between a marker and its delimiter at least once
+    @Test
+    void countsMarkersSplitAcrossChunksAtEveryOffset() {
+        for (int split = 0; split <= OBJECTS.length; split++) {
+            final PdfMarkerScanner scanner = new PdfMarkerScanner();
+            scanner.update(OBJECTS, 0, split);
+            scanner.update(OBJECTS, split, OBJECTS.length - split);
+
+            assertThat(scanner.features()).as("split at %d", split).isEqualTo(new PdfFeatures(2, 1));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 3, 5, 6, 7, 64})
+    void countsMarkersWhateverTheChunkSize(int chunk) {
+        final PdfMarkerScanner scanner = new PdfMarkerScanner();
+        for (int off = 0; off < OBJECTS.length; off += chunk) {
+            scanner.update(OBJECTS, off, Math.min(chunk, OBJECTS.length - off));
+        }
+
+        assertThat(scanner.features()).isEqualTo(new PdfFeatures(2, 1));
+    }
+
+    // "/Pages" and "/ImageMask" share a prefix with the markers but are different names
+    @Test
+    void ignoresLongerNamesWithTheSamePrefix() {
+        final byte[] names = "/Pages /PageLabels /ImageMask true /ImageB".getBytes(StandardCharsets.US_ASCII);
+        final PdfMarkerScanner scanner = new PdfMarkerScanner();
+        scanner.update(names, 0, names.length);
+
+        assertThat(scanner.features()).isEqualTo(new PdfFeatures(0, 0));
+    }
+
+    // the byte after "/Page" decides whether it counted, and it may only arrive with the next chunk
+    @Test
+    void waitsForTheDelimiterInTheNextChunk() {
+        final PdfMarkerScanner scanner = new PdfMarkerScanner();
+        final byte[] marker = "/Type /Page".getBytes(StandardCharsets.US_ASCII);
+        scanner.update(marker, 0, marker.length);
+
+        assertThat(scanner.features().pages()).isZero();
+
+        scanner.update(new byte[]{'s'}, 0, 1);
+        scanner.update(marker, 0, marker.length);
+        scanner.update(new byte[]{'>'}, 0, 1);
+
+        assertThat(scanner.features().pages()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,177 @@
+package com.thomaz.api;
+
+import com.thomaz.config.PdfCallbackProperties;
+import com.thomaz.config.PdfCompressionProperties;
+import com.thomaz.config.exception.InvalidRequestException;
+import com.thomaz.form.IngestedPdf;
+import com.thomaz.service.ProxyMetrics;
+import com.thomaz.service.TenantRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StreamingPdfIngestTest {
+
+    private static final String BOUNDARY = "----form7MA4YWxkTrZu0gW";
+    private static final long MAX_INPUT_BYTES = 100_000;
+
+    @TempDir
+    Path dir;
+
+    private StreamingPdfIngest ingest;
+    private Path target;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        final PdfCompressionProperties props = new PdfCompressionProperties();
+        props.setMaxInputBytes(MAX_INPUT_BYTES);
+        final TenantRegistry tenants = new TenantRegistry(new PdfCallbackProperties(), JsonMapper.builder().build());
+        ingest = new StreamingPdfIngest(props, new ProxyMetrics(new SimpleMeterRegistry(), tenants));
+        target = Files.createFile(dir.resolve("upload.pdf"));
+    }
+
+    @Test
+    void streamsTheFilePartToTheTarget() throws Exception {
+        final byte[] pdf = pdf(50_000);
+
+        final IngestedPdf ingested = ingest.ingest(request(form("note", "text/plain", "hello".getBytes(StandardCharsets.UTF_8))
+                .file(pdf)), target);
+
+        assertThat(Files.readAllBytes(target)).isEqualTo(pdf);
+        assertThat(ingested.size()).isEqualTo(pdf.length);
+        assertThat(ingested.sha256()).isEqualTo(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(pdf)));
+        assertThat(ingested.originalFilename()).isEqualTo("contrato.pdf");
+        assertThat(ingested.features().pages()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsAFormWithoutAFilePart() {
+        final byte[] body = form("note", "text/plain", "hello".getBytes(StandardCharsets.UTF_8)).build();
+
+        assertThatThrownBy(() -> ingest.ingest(request(body), target))
+                .isInstanceOf(InvalidRequestException.class)
+                .hasMessage("Missing file part");
+    }
+
+    @Test
+    void rejectsAFilePartOverTheLimitWhileStreaming() {
+        final byte[] body = new Form().file(pdf((int) MAX_INPUT_BYTES + 1)).build();
+
+        // a chunked upload declares no Content-Length, so the limit is only hit mid-stream
+        assertThatThrownBy(() -> ingest.ingest(new DeclaredLengthRequest(request(body), -1), target))
+                .isInstanceOf(InvalidRequestException.class)
+                .hasMessageContaining("exceeds the maximum size");
+    }
+
+    @Test
+    void rejectsADeclaredContentLengthOverTheLimit() {
+        final MockHttpServletRequest request = request(new Form().file(pdf(1_000)).build());
+
+        assertThatThrownBy(() -> ingest.ingest(new DeclaredLengthRequest(request, MAX_INPUT_BYTES * 2), target))
+                .isInstanceOf(InvalidRequestException.class)
+                .hasMessageContaining("exceeds the maximum size");
+    }
+
+    @Test
+    void rejectsAnEmptyFilePart() {
+        final byte[] body = new Form().file(new byte[0]).build();
+
+        assertThatThrownBy(() -> ingest.ingest(request(body), target))
+                .isInstanceOf(InvalidRequestException.class)
+                .hasMessage("Empty file.");
+    }
+
+    @Test
+    void rejectsAFileThatIsNotAPdf() {
+        final byte[] body = new Form().file("PK\u0003\u0004 not a pdf".getBytes(StandardCharsets.ISO_8859_1)).build();
+
+        assertThatThrownBy(() -> ingest.ingest(request(body), target))
+                .isInstanceOf(InvalidRequestException.class)
+                .hasMessage("File does not look like a PDF.");
+    }
+
+    @Test
+    void rejectsAMissingContentType() {
+        final MockHttpServletRequest request = new MockHttpServletRequest("POST", "/compress-pdf");
+        request.setContent(new byte[1]);
+
+        assertThatThrownBy(() -> ingest.ingest(request, target))
+                .isInstanceOf(InvalidRequestException.class)
+                .hasMessage("Missing Content-Type header");
+    }
+
+    private static Form form(String name, String contentType, byte[] content) {
+        return new Form().part(name, null, contentType, content);
+    }
+
+    private static MockHttpServletRequest request(byte[] body) {
+        final MockHttpServletRequest request = new MockHttpServletRequest("POST", "/compress-pdf");
+        request.setContentType("multipart/form-data; boundary=" + BOUNDARY);
+        request.setContent(body);
+        return request;
+    }
+
+    private static byte[] pdf(int size) {
+        final byte[] head = "%PDF-1.7\n1 0 obj << /Type /Page >> endobj\n".getBytes(StandardCharsets.US_ASCII);
+        final byte[] pdf = MultipartStreamTest.body(size, size);
+        // keep the random filler from adding page markers of its own
+        for (int i = 0; i < pdf.length; i++) {
+            if (pdf[i] == '/') {
+                pdf[i] = ' ';
+            }
+        }
+        System.arraycopy(head, 0, pdf, 0, head.length);
+        return pdf;
+    }
+
+    static final class Form {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        Form part(String name, String filename, String contentType, byte[] content) {
+            final String disposition = "form-data; name=\"" + name + "\"" + (filename == null ? "" : "; filename=\"" + filename + "\"");
+            out.writeBytes(("--" + BOUNDARY + "\r\nContent-Disposition: " + disposition + "\r\nContent-Type: " + contentType + "\r\n\r\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            out.writeBytes(content);
+            out.writeBytes("\r\n".getBytes(StandardCharsets.ISO_8859_1));
+            return this;
+        }
+
+        Form file(byte[] content) {
+            return part("file", "contrato.pdf", "application/pdf", content);
+        }
+
+        byte[] build() {
+            out.writeBytes(("--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.ISO_8859_1));
+            return out.toByteArray();
+        }
+    }
+
+    private static final class DeclaredLengthRequest extends HttpServletRequestWrapper {
+        private final long length;
+
+        DeclaredLengthRequest(MockHttpServletRequest request, long length) {
+            super(request);
+            this.length = length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return length;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.thomaz.service;
+
+import com.thomaz.config.PdfCallbackProperties;
+import com.thomaz.form.CallbackHostStats;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CallbackClientStatsTest {
+
+    private static final String URI = "https://tenant.example.com/api/_upload";
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private CallbackClientStats stats;
+
+    @BeforeEach
+    void setUp() {
+        final PdfCallbackProperties props = new PdfCallbackProperties();
+        props.getHttp().setMaxConnectionsPerHost(1);
+        stats = new CallbackClientStats(new ProxyMetrics(registry, new TenantRegistry(props, JsonMapper.builder().build())), props);
+    }
+
+    @Test
+    void aFinishedCallLeavesItsConnectionIdleForTheNextOne() throws Exception {
+        final CallbackClientStats.Call first = stats.start(URI, "_upload", "org");
+        first.connect(Duration.ofSeconds(1));
+
+        assertThat(host()).extracting(CallbackHostStats::activeConnections, CallbackHostStats::idleConnections)
+                .containsExactly(1, 0);
+
+        first.end(CallbackClientStats.Outcome.SUCCESS);
+        assertThat(host()).extracting(CallbackHostStats::activeConnections, CallbackHostStats::idleConnections)
+                .containsExactly(0, 1);
+
+        final CallbackClientStats.Call second = stats.start(URI, "complete", "org");
+        second.connect(Duration.ofSeconds(1));
+        assertThat(host()).extracting(CallbackHostStats::activeConnections, CallbackHostStats::idleConnections)
+                .containsExactly(1, 0);
+        second.end(CallbackClientStats.Outcome.SUCCESS);
+    }
+
+    @Test
+    void aCallWaitsAsPendingWhileEveryConnectionIsBusy() throws Exception {
+        final CallbackClientStats.Call first = stats.start(URI, "_upload", "org");
+        first.connect(Duration.ofSeconds(1));
+        final CallbackClientStats.Call second = stats.start(URI, "_upload", "org");
+        final CompletableFuture<Void> waiting = CompletableFuture.runAsync(() -> {
+            try {
+                second.connect(Duration.ofSeconds(5));
+            } catch (InterruptedException | TimeoutException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (host().pendingConnections() == 0 && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertThat(host().pendingConnections()).isEqualTo(1);
+        assertThat(registry.get("pdf.callback.connections").tag("state", "pending").gauge().value()).isEqualTo(1);
+
+        first.end(CallbackClientStats.Outcome.SUCCESS);
+        waiting.get(5, TimeUnit.SECONDS);
+        assertThat(host()).extracting(CallbackHostStats::activeConnections, CallbackHostStats::pendingConnections)
+                .containsExactly(1, 0);
+        second.end(CallbackClientStats.Outcome.SUCCESS);
+    }
+
+    @Test
+    void givesUpWhenNoConnectionFreesInTime() throws Exception {
+        final CallbackClientStats.Call first = stats.start(URI, "_upload", "org");
+        first.connect(Duration.ofSeconds(1));
+        final CallbackClientStats.Call second = stats.start(URI, "_upload", "org");
+
+        assertThatThrownBy(() -> second.connect(Duration.ofMillis(20))).isInstanceOf(TimeoutException.class);
+        second.end(CallbackClientStats.Outcome.TIMEOUT);
+        first.end(CallbackClientStats.Outcome.SUCCESS);
+
+        assertThat(host()).extracting(CallbackHostStats::activeConnections, CallbackHostStats::idleConnections,
+                CallbackHostStats::requests, CallbackHostStats::timeouts).containsExactly(0, 1, 2L, 1L);
+    }
+
+    private CallbackHostStats host() {
+        assertThat(stats.snapshot()).hasSize(1);
+        return stats.snapshot().getFirst();
+    }
+}
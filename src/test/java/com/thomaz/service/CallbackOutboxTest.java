@@ -0,0 +1,148 @@
+package com.thomaz.service;
+
+import com.thomaz.config.Crypto;
+import com.thomaz.config.PdfCallbackProperties;
+import com.thomaz.form.CallbackResponse;
+import com.thomaz.form.CompressParameters;
+import com.thomaz.form.CompressionError;
+import com.thomaz.form.CompressionPriority;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CallbackOutboxTest {
+
+    private static final CompressionError ERROR = new CompressionError("gs failed", "IllegalStateException", "IllegalStateException");
+
+    @TempDir
+    Path dir;
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+    private final List<PipelineStage> stages = new ArrayList<>();
+    private final String secret = Crypto.newBase64Secret256();
+    private PdfCallbackProperties props;
+    private ProxyMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        props = new PdfCallbackProperties();
+        props.getOutbox().setDirectory(dir.toString());
+        props.getOutbox().setKeySecret(secret);
+        props.getOutbox().setInitialBackoffSeconds(1);
+        props.getOutbox().setMaxBackoffSeconds(1);
+        metrics = new ProxyMetrics(new SimpleMeterRegistry(), new TenantRegistry(props, jsonMapper));
+    }
+
+    @AfterEach
+    void tearDown() {
+        stages.forEach(PipelineStage::shutdown);
+    }
+
+    @Test
+    void refusesToStartWithoutAKeySecret() {
+        props.getOutbox().setKeySecret("");
+
+        assertThatThrownBy(() -> outbox(mock(PdfCallbackSenderService.class)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("callback.outbox.key-secret");
+    }
+
+    // a transient failure is retried after a jittered backoff of at least half the initial delay
+    @Test
+    void retriesATransientFailureAfterTheBackoff() throws Exception {
+        final PdfCallbackSenderService sender = mock(PdfCallbackSenderService.class);
+        final List<Long> calls = new CopyOnWriteArrayList<>();
+        when(sender.logCompressionError(any(), any())).thenAnswer(_ -> {
+            calls.add(System.nanoTime());
+            return calls.size() == 1 ? CallbackResponse.noResponse() : new CallbackResponse<>(200, "ok");
+        });
+
+        outbox(sender).enqueueError(params("retry"), ERROR);
+
+        verify(sender, timeout(5_000).times(2)).logCompressionError(any(), any());
+        assertThat(calls.get(1) - calls.get(0)).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(500));
+        awaitEmpty(dir);
+    }
+
+    @Test
+    void deadLettersACallbackTheHostRejects() throws Exception {
+        final PdfCallbackSenderService sender = mock(PdfCallbackSenderService.class);
+        when(sender.logCompressionError(any(), any())).thenReturn(new CallbackResponse<>(400, null));
+
+        outbox(sender).enqueueError(params("rejected"), ERROR);
+
+        assertThat(files(dir)).isEmpty();
+        final List<Path> deadLetters = files(dir.resolve("dead-letter"));
+        assertThat(deadLetters).hasSize(1);
+        final String entry = Files.readString(deadLetters.getFirst());
+        assertThat(entry).contains("rejected").doesNotContain("decrypt-key-rejected");
+    }
+
+    // the second outbox stands in for the restarted app: it only has what the first left on disk
+    @Test
+    void resumesPendingCallbacksAfterARestart() throws Exception {
+        final PdfCallbackSenderService before = mock(PdfCallbackSenderService.class);
+        when(before.logCompressionError(any(), any())).thenReturn(CallbackResponse.noResponse());
+        outbox(before).enqueueError(params("resumed"), ERROR);
+        stages.forEach(PipelineStage::shutdown);
+        assertThat(files(dir)).extracting(p -> p.getFileName().toString())
+                .anyMatch(name -> name.endsWith(".json"))
+                .anyMatch(name -> name.endsWith(".key"));
+
+        final PdfCallbackSenderService after = mock(PdfCallbackSenderService.class);
+        when(after.logCompressionError(any(), any())).thenReturn(new CallbackResponse<>(200, "ok"));
+        outbox(after).resume();
+
+        final ArgumentCaptor<CompressParameters> resumed = ArgumentCaptor.forClass(CompressParameters.class);
+        verify(after, timeout(5_000)).logCompressionError(resumed.capture(), any());
+        assertThat(resumed.getValue().compressionId()).isEqualTo("resumed");
+        assertThat(resumed.getValue().decryptKey()).isEqualTo("decrypt-key-resumed");
+        awaitEmpty(dir);
+    }
+
+    private CallbackOutbox outbox(PdfCallbackSenderService sender) {
+        final PipelineStage deliver = new PipelineStage("deliver", 2, 16, 1, true, metrics);
+        stages.add(deliver);
+        return new CallbackOutbox(sender, jsonMapper, props, deliver);
+    }
+
+    private static CompressParameters params(String compressionId) {
+        return new CompressParameters("in.pdf", "in.pdf", compressionId, "org", CompressionPriority.NORMAL, null,
+                "decrypt-key-" + compressionId);
+    }
+
+    private static List<Path> files(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(Files::isRegularFile).toList();
+        }
+    }
+
+    private static void awaitEmpty(Path directory) throws Exception {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!files(directory).isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(files(directory)).isEmpty();
+    }
+}
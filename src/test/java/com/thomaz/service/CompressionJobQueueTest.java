@@ -0,0 +1,194 @@
+package com.thomaz.service;
+
+import com.thomaz.config.PdfCallbackProperties;
+import com.thomaz.config.PdfCompressionProperties;
+import com.thomaz.config.exception.ServerBusyException;
+import com.thomaz.form.CompressionPriority;
+import com.thomaz.form.TenantQueueStats;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// jobs are queued before the workers start, so the dispatch order only depends on the policy
+class CompressionJobQueueTest {
+
+    @TempDir
+    Path dir;
+
+    private final PdfCompressionProperties props = new PdfCompressionProperties();
+    private final PdfCallbackProperties callbackProps = new PdfCallbackProperties();
+    private final List<String> dispatched = new CopyOnWriteArrayList<>();
+    private TenantRegistry tenants;
+    private CompressionJobQueue queue;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        final Path tenantsFile = dir.resolve("tenants.json");
+        Files.writeString(tenantsFile, """
+                [
+                  {"organizationId": "heavy", "weight": 3},
+                  {"organizationId": "light", "weight": 1},
+                  {"organizationId": "capped", "maxConcurrent": 1}
+                ]
+                """);
+        callbackProps.setTenantsFile(tenantsFile.toString());
+        tenants = new TenantRegistry(callbackProps, JsonMapper.builder().build());
+        tenants.start();
+        props.getGs().setMaxConcurrent(1);
+        props.getQueue().setAgingFactor(0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (queue != null) {
+            queue.stop();
+        }
+        tenants.stop();
+    }
+
+    @Test
+    void aHeavierTenantGetsTheWorkerInProportionToItsWeight() throws Exception {
+        final CountDownLatch done = new CountDownLatch(8);
+        queue = queue();
+        for (int i = 0; i < 4; i++) {
+            queue.submit("heavy", CompressionPriority.NORMAL, 1, record("heavy", done));
+        }
+        for (int i = 0; i < 4; i++) {
+            queue.submit("light", CompressionPriority.NORMAL, 1, record("light", done));
+        }
+
+        queue.start();
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(dispatched.subList(0, 4)).containsExactlyInAnyOrder("heavy", "heavy", "heavy", "light");
+    }
+
+    @Test
+    void aTenantAtItsLimitLeavesTheFreeWorkerToOthers() throws Exception {
+        props.getGs().setMaxConcurrent(2);
+        final CountDownLatch running = new CountDownLatch(2);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(3);
+        queue = queue();
+        queue.submit("capped", CompressionPriority.NORMAL, 1, hold("capped", running, release, done));
+        queue.submit("capped", CompressionPriority.NORMAL, 1, hold("capped", running, release, done));
+        queue.submit("light", CompressionPriority.NORMAL, 1, hold("light", running, release, done));
+
+        queue.start();
+
+        assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(dispatched).containsExactlyInAnyOrder("capped", "light");
+        assertThat(tenant("capped")).extracting(TenantQueueStats::queued, TenantQueueStats::inFlight)
+                .containsExactly(1, 1);
+        release.countDown();
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void theShorterJobOfATenantRunsFirst() throws Exception {
+        final CountDownLatch done = new CountDownLatch(2);
+        queue = queue();
+        queue.submit("light", CompressionPriority.NORMAL, 10, record("long", done));
+        queue.submit("light", CompressionPriority.NORMAL, 1, record("short", done));
+
+        queue.start();
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(dispatched).containsExactly("short", "long");
+    }
+
+    // with an aging factor of 1000, 50ms in the queue is worth 50 estimated seconds
+    @Test
+    void aLongJobThatWaitedLongEnoughOvertakesAShortOne() throws Exception {
+        props.getQueue().setAgingFactor(1_000);
+        final CountDownLatch done = new CountDownLatch(2);
+        queue = queue();
+        queue.submit("light", CompressionPriority.NORMAL, 10, record("long", done));
+        Thread.sleep(50);
+        queue.submit("light", CompressionPriority.NORMAL, 1, record("short", done));
+
+        queue.start();
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(dispatched).containsExactly("long", "short");
+    }
+
+    @Test
+    void aFullQueueAnswersServerBusy() {
+        props.getQueue().setCapacity(1);
+        props.getQueue().setRetryAfterSeconds(7);
+        queue = queue();
+        queue.submit("light", CompressionPriority.NORMAL, 1, () -> { });
+
+        assertThatThrownBy(queue::requireCapacity)
+                .isInstanceOfSatisfying(ServerBusyException.class, e -> assertThat(e.getRetryAfterSeconds()).isEqualTo(7));
+        assertThatThrownBy(() -> queue.submit("heavy", CompressionPriority.NORMAL, 1, () -> { }))
+                .isInstanceOf(ServerBusyException.class);
+        assertThat(queue.stageStats().rejected()).isEqualTo(2);
+        assertThat(queue.size()).isEqualTo(1);
+    }
+
+    // the lanes are dropped once the queue drains; what a tenant was dispatched must not go with them
+    @Test
+    void keepsPerTenantTotalsAfterTheQueueDrains() throws Exception {
+        final CountDownLatch done = new CountDownLatch(2);
+        queue = queue();
+        queue.submit("heavy", CompressionPriority.NORMAL, 1, record("heavy", done));
+        queue.submit("heavy", CompressionPriority.NORMAL, 1, record("heavy", done));
+
+        queue.start();
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (queue.stageStats().completed() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThat(tenant("heavy")).extracting(TenantQueueStats::queued, TenantQueueStats::inFlight, TenantQueueStats::dispatched)
+                .containsExactly(0, 0, 2L);
+    }
+
+    private CompressionJobQueue queue() {
+        return new CompressionJobQueue(props, tenants, new ProxyMetrics(new SimpleMeterRegistry(), tenants), false);
+    }
+
+    private TenantQueueStats tenant(String organizationId) {
+        return queue.stats().stream()
+                .filter(stats -> stats.organizationId().equals(organizationId))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private Runnable record(String name, CountDownLatch done) {
+        return () -> {
+            dispatched.add(name);
+            done.countDown();
+        };
+    }
+
+    private Runnable hold(String name, CountDownLatch running, CountDownLatch release, CountDownLatch done) {
+        return () -> {
+            dispatched.add(name);
+            running.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException _) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        };
+    }
+}
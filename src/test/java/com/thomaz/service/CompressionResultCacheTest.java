@@ -0,0 +1,139 @@
+package com.thomaz.service;
+
+import com.thomaz.config.PdfCompressionProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompressionResultCacheTest {
+
+    @TempDir
+    Path dir;
+
+    private final PdfCompressionProperties props = new PdfCompressionProperties();
+    private CompressionResultCache cache;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        props.getCache().setDirectory(dir.resolve("cache").toString());
+        cache = new CompressionResultCache(props);
+        cache.load();
+    }
+
+    @Test
+    void servesARepeatedKeyFromTheCache() throws Exception {
+        final String key = cache.key("sha", List.of("-dPDFSETTINGS=/ebook"));
+        final AtomicInteger runs = new AtomicInteger();
+
+        cache.compress(key, dir.resolve("a.pdf"), writes(dir.resolve("a.pdf"), "result", runs), Runnable::run).get();
+        cache.compress(key, dir.resolve("b.pdf"), writes(dir.resolve("b.pdf"), "other", runs), Runnable::run).get();
+
+        assertThat(runs).hasValue(1);
+        assertThat(Files.readString(dir.resolve("b.pdf"))).isEqualTo("result");
+        assertThat(cache.stats().hits()).isEqualTo(1);
+        assertThat(cache.stats().misses()).isEqualTo(1);
+    }
+
+    @Test
+    void keysDifferBySettings() {
+        assertThat(cache.key("sha", List.of("-dPDFSETTINGS=/ebook")))
+                .isNotEqualTo(cache.key("sha", List.of("-dPDFSETTINGS=/screen")));
+    }
+
+    @Test
+    void coalescedFollowerLinksTheLeadersResult() throws Exception {
+        final String key = cache.key("sha", List.of());
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger followerRuns = new AtomicInteger();
+
+        final CompletableFuture<CompletableFuture<Void>> leader = CompletableFuture.supplyAsync(() ->
+                cache.compress(key, dir.resolve("leader.pdf"), () -> {
+                    started.countDown();
+                    release.await();
+                    Files.writeString(dir.resolve("leader.pdf"), "shared");
+                }, Runnable::run));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        final CompletableFuture<Void> follower = cache.compress(key, dir.resolve("follower.pdf"),
+                writes(dir.resolve("follower.pdf"), "own", followerRuns), Runnable::run);
+        assertThat(follower).isNotDone();
+
+        release.countDown();
+        leader.get(5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+        follower.get(5, TimeUnit.SECONDS);
+
+        assertThat(followerRuns).hasValue(0);
+        assertThat(Files.readString(dir.resolve("follower.pdf"))).isEqualTo("shared");
+        assertThat(cache.stats().coalesced()).isEqualTo(1);
+    }
+
+    // the leader's failure (a cancelled sync job, say) is not the follower's: it gets its own run through rerun
+    @Test
+    void followerRerunsWhenTheLeaderFails() throws Exception {
+        final String key = cache.key("sha", List.of());
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger followerRuns = new AtomicInteger();
+        final AtomicInteger reruns = new AtomicInteger();
+
+        final CompletableFuture<CompletableFuture<Void>> leader = CompletableFuture.supplyAsync(() ->
+                cache.compress(key, dir.resolve("leader.pdf"), () -> {
+                    started.countDown();
+                    release.await();
+                    throw new IOException("gs exited with 1");
+                }, Runnable::run));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        final CompletableFuture<Void> follower = cache.compress(key, dir.resolve("follower.pdf"),
+                writes(dir.resolve("follower.pdf"), "own", followerRuns), task -> {
+                    reruns.incrementAndGet();
+                    task.run();
+                });
+
+        release.countDown();
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isCompletedExceptionally();
+        follower.get(5, TimeUnit.SECONDS);
+
+        assertThat(reruns).hasValue(1);
+        assertThat(followerRuns).hasValue(1);
+        assertThat(Files.readString(dir.resolve("follower.pdf"))).isEqualTo("own");
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedEntryOverBudget() throws Exception {
+        props.getCache().setMaxBytes(10);
+        cache = new CompressionResultCache(props);
+        cache.load();
+        final AtomicInteger runs = new AtomicInteger();
+
+        cache.compress("first", dir.resolve("1.pdf"), writes(dir.resolve("1.pdf"), "123456", runs), Runnable::run).get();
+        cache.compress("second", dir.resolve("2.pdf"), writes(dir.resolve("2.pdf"), "abcdef", runs), Runnable::run).get();
+        cache.compress("second", dir.resolve("3.pdf"), writes(dir.resolve("3.pdf"), "unused", runs), Runnable::run).get();
+
+        assertThat(runs).hasValue(2);
+        assertThat(cache.stats().evictions()).isEqualTo(1);
+        assertThat(cache.stats().entries()).isEqualTo(1);
+        assertThat(cache.stats().bytes()).isEqualTo(6);
+        assertThat(dir.resolve("cache").resolve("first.pdf")).doesNotExist();
+    }
+
+    private static CompressionResultCache.Compression writes(Path out, String content, AtomicInteger runs) {
+        return () -> {
+            runs.incrementAndGet();
+            Files.writeString(out, content, StandardCharsets.UTF_8);
+        };
+    }
+}
@@ -0,0 +1,184 @@
+package com.thomaz.service;
+
+import com.thomaz.config.PdfCompressionProperties;
+import com.thomaz.form.PreflightReport;
+import com.thomaz.service.compressor.GhostscriptCompressor;
+import com.thomaz.service.compressor.LosslessPdfCompressor;
+import com.thomaz.service.compressor.PdfCompressor;
+import com.thomaz.service.compressor.PdfCompressors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PdfPreflightTest {
+
+    private final PdfCompressionProperties props = new PdfCompressionProperties();
+    private final PdfPreflight preflight = new PdfPreflight(props);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void passesThroughACompressedTextOnlyFile() throws IOException {
+        final Path pdf = write(new Pdf().textPage().trailer());
+
+        final PreflightReport report = preflight.analyze(pdf);
+
+        assertThat(report.pages()).isEqualTo(1);
+        assertThat(report.textOnly()).isTrue();
+        assertThat(report.fullyCompressed()).isTrue();
+        assertThat(report.truncated()).isFalse();
+        assertThat(report.uncertain()).isFalse();
+        assertThat(preflight.canPassThrough(report, Files.size(pdf))).isTrue();
+        assertThat(compressors().select(report).name()).isEqualTo(LosslessPdfCompressor.NAME);
+    }
+
+    // the update appends objects and a second trailer; what it replaced is only known by following the xref chain
+    @Test
+    void fallsBackWhenAnIncrementalUpdateFollows() throws IOException {
+        final Path pdf = write(new Pdf().textPage().trailer()
+                .object("3 0 obj\n<< /Type /Page /Parent 2 0 R /Contents 4 0 R /Annots [6 0 R] >>\nendobj\n")
+                .object("6 0 obj\n<< /Type /Annot /Subtype /Text /Rect [0 0 10 10] >>\nendobj\n")
+                .trailer());
+
+        final PreflightReport report = preflight.analyze(pdf);
+
+        assertThat(report.truncated()).isFalse();
+        assertThat(report.uncertain()).isTrue();
+        assertThat(preflight.canPassThrough(report, Files.size(pdf))).isFalse();
+        assertThat(compressors().select(report).name()).isEqualTo(GhostscriptCompressor.NAME);
+    }
+
+    // page dictionaries and image headers inside a compressed object stream never show up in the scan
+    @Test
+    void fallsBackWhenObjectsArePackedIntoObjectStreams() throws IOException {
+        final Path pdf = write(new Pdf().textPage()
+                .stream("5 0 obj\n<< /Type /ObjStm /N 1 /First 4 /Filter /FlateDecode", 200)
+                .trailer());
+
+        final PreflightReport report = preflight.analyze(pdf);
+
+        assertThat(report.uncertain()).isTrue();
+        assertThat(preflight.canPassThrough(report, Files.size(pdf))).isFalse();
+    }
+
+    // without a direct /Length the body is walked, and whatever it holds may read as markers
+    @Test
+    void fallsBackWhenAStreamLengthIsIndirect() throws IOException {
+        final Path pdf = write(new Pdf()
+                .object("1 0 obj\n<< /Type /Catalog /Pages 2 0 R >>\nendobj\n")
+                .object("2 0 obj\n<< /Type /Pages /Kids [3 0 R] /Count 1 >>\nendobj\n")
+                .object("3 0 obj\n<< /Type /Page /Parent 2 0 R /Contents 4 0 R >>\nendobj\n")
+                .object("4 0 obj\n<< /Length 5 0 R /Filter /FlateDecode >>\nstream\nBT ET\nendstream\nendobj\n")
+                .object("5 0 obj\n5\nendobj\n")
+                .trailer());
+
+        final PreflightReport report = preflight.analyze(pdf);
+
+        assertThat(report.uncertain()).isTrue();
+        assertThat(preflight.canPassThrough(report, Files.size(pdf))).isFalse();
+    }
+
+    // junk after the last %%EOF is tolerated by readers, so it is no reason to reject the file
+    @Test
+    void treatsTrailingBytesAsUnsureNotTruncated() throws IOException {
+        final Pdf pdf = new Pdf().textPage().trailer();
+        pdf.out.writeBytes(new byte[2048]);
+        final Path file = write(pdf);
+
+        final PreflightReport report = preflight.analyze(file);
+
+        assertThat(report.truncated()).isFalse();
+        assertThat(report.uncertain()).isTrue();
+        assertThat(preflight.canPassThrough(report, Files.size(file))).isFalse();
+    }
+
+    @Test
+    void reportsAStreamCutOffByTheEndOfFile() throws IOException {
+        final Pdf pdf = new Pdf()
+                .object("1 0 obj\n<< /Type /Catalog /Pages 2 0 R >>\nendobj\n")
+                .object("2 0 obj\n<< /Type /Pages /Kids [3 0 R] /Count 1 >>\nendobj\n")
+                .object("3 0 obj\n<< /Type /Page /Parent 2 0 R /Contents 4 0 R >>\nendobj\n")
+                .object("4 0 obj\n<< /Length 100000 /Filter /FlateDecode >>\nstream\n");
+        pdf.out.writeBytes(filler(500, 1));
+        final Path file = write(pdf);
+
+        final PreflightReport report = preflight.analyze(file);
+
+        assertThat(report.truncated()).isTrue();
+        assertThat(preflight.canPassThrough(report, Files.size(file))).isFalse();
+    }
+
+    private Path write(Pdf pdf) throws IOException {
+        return Files.write(dir.resolve("in.pdf"), pdf.out.toByteArray());
+    }
+
+    private PdfCompressors compressors() {
+        return new PdfCompressors(List.of(compressor(LosslessPdfCompressor.NAME), compressor(GhostscriptCompressor.NAME)), props);
+    }
+
+    private static PdfCompressor compressor(String name) {
+        final PdfCompressor compressor = mock(PdfCompressor.class);
+        when(compressor.name()).thenReturn(name);
+        return compressor;
+    }
+
+    // stream data without '/' or '%', so a mis-skipped body cannot fake a name or an end-of-file marker
+    private static byte[] filler(int size, long seed) {
+        final byte[] bytes = new byte[size];
+        new Random(seed).nextBytes(bytes);
+        for (int i = 0; i < size; i++) {
+            if (bytes[i] == '/' || bytes[i] == '%') {
+                bytes[i] = 0;
+            }
+        }
+        return bytes;
+    }
+
+    // just enough structure for the scan: it never reads the xref table, so offsets stay zero
+    private static final class Pdf {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        private Pdf() {
+            ascii("%PDF-1.7\n%âãÏÓ\n");
+        }
+
+        private Pdf textPage() {
+            return object("1 0 obj\n<< /Type /Catalog /Pages 2 0 R >>\nendobj\n")
+                    .object("2 0 obj\n<< /Type /Pages /Kids [3 0 R] /Count 1 >>\nendobj\n")
+                    .object("3 0 obj\n<< /Type /Page /Parent 2 0 R /MediaBox [0 0 612 792] /Contents 4 0 R >>\nendobj\n")
+                    .stream("4 0 obj\n<< /Filter /FlateDecode", 300);
+        }
+
+        private Pdf object(String text) {
+            ascii(text);
+            return this;
+        }
+
+        private Pdf stream(String dictionaryStart, int length) {
+            ascii(dictionaryStart + " /Length " + length + " >>\nstream\n");
+            out.writeBytes(filler(length, length));
+            ascii("\nendstream\nendobj\n");
+            return this;
+        }
+
+        private Pdf trailer() {
+            return object("xref\n0 1\n0000000000 65535 f \ntrailer\n<< /Size 7 /Root 1 0 R >>\nstartxref\n0\n%%EOF\n");
+        }
+
+        private void ascii(String text) {
+            out.writeBytes(text.getBytes(StandardCharsets.ISO_8859_1));
+        }
+    }
+}
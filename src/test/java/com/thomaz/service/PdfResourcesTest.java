@@ -0,0 +1,111 @@
+package com.thomaz.service;
+
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PdfResourcesTest {
+
+    // what a merge of page-range parts looks like: every part brought its own copy of the logo
+    @Test
+    void foldsByteIdenticalImagesIntoOne() throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            final BufferedImage logo = new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB);
+            logo.setRGB(3, 3, 0xff0000);
+            final PDResources first = page(document);
+            final PDResources second = page(document);
+            first.getCOSObject().setItem(COSName.XOBJECT, xobjects(LosslessFactory.createFromImage(document, logo).getCOSObject()));
+            second.getCOSObject().setItem(COSName.XOBJECT, xobjects(LosslessFactory.createFromImage(document, logo).getCOSObject()));
+
+            assertThat(PdfResources.deduplicate(document)).isEqualTo(1);
+            assertThat(image(second)).isSameAs(image(first));
+        }
+    }
+
+    @Test
+    void sharesIdenticalFontProgramsButNotTheFontDictionaries() throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            final PDResources first = page(document);
+            final PDResources second = page(document);
+            final COSDictionary firstFont = font(stream(document, "program"));
+            final COSDictionary secondFont = font(stream(document, "program"));
+            first.getCOSObject().setItem(COSName.FONT, fonts(firstFont));
+            second.getCOSObject().setItem(COSName.FONT, fonts(secondFont));
+
+            assertThat(PdfResources.deduplicate(document)).isEqualTo(1);
+            assertThat(fontFile(secondFont)).isSameAs(fontFile(firstFont));
+            assertThat(secondFont).isNotSameAs(firstFont);
+        }
+    }
+
+    @Test
+    void keepsStreamsThatDiffer() throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            final COSDictionary firstFont = font(stream(document, "subset A"));
+            final COSDictionary secondFont = font(stream(document, "subset B"));
+            page(document).getCOSObject().setItem(COSName.FONT, fonts(firstFont));
+            page(document).getCOSObject().setItem(COSName.FONT, fonts(secondFont));
+
+            assertThat(PdfResources.deduplicate(document)).isZero();
+            assertThat(fontFile(secondFont)).isNotSameAs(fontFile(firstFont));
+        }
+    }
+
+    private static PDResources page(PDDocument document) {
+        final PDPage page = new PDPage();
+        page.setResources(new PDResources());
+        document.addPage(page);
+        return page.getResources();
+    }
+
+    private static COSDictionary xobjects(COSStream image) {
+        final COSDictionary xobjects = new COSDictionary();
+        xobjects.setItem(COSName.getPDFName("Im0"), image);
+        return xobjects;
+    }
+
+    private static COSDictionary fonts(COSDictionary font) {
+        final COSDictionary fonts = new COSDictionary();
+        fonts.setItem(COSName.getPDFName("F1"), font);
+        return fonts;
+    }
+
+    private static COSDictionary font(COSStream program) {
+        final COSDictionary descriptor = new COSDictionary();
+        descriptor.setItem(COSName.TYPE, COSName.FONT_DESC);
+        descriptor.setItem(COSName.FONT_FILE2, program);
+        final COSDictionary font = new COSDictionary();
+        font.setItem(COSName.TYPE, COSName.FONT);
+        font.setItem(COSName.SUBTYPE, COSName.TRUE_TYPE);
+        font.setItem(COSName.FONT_DESC, descriptor);
+        return font;
+    }
+
+    private static COSStream stream(PDDocument document, String content) throws IOException {
+        final COSStream stream = document.getDocument().createCOSStream();
+        try (OutputStream out = stream.createRawOutputStream()) {
+            out.write(content.getBytes(StandardCharsets.US_ASCII));
+        }
+        return stream;
+    }
+
+    private static Object image(PDResources resources) {
+        return PdfResources.dereference(resources.getCOSObject().getCOSDictionary(COSName.XOBJECT).getItem(COSName.getPDFName("Im0")));
+    }
+
+    private static Object fontFile(COSDictionary font) {
+        return PdfResources.dereference(font.getCOSDictionary(COSName.FONT_DESC).getItem(COSName.FONT_FILE2));
+    }
+}
@@ -0,0 +1,121 @@
+package com.thomaz.service.compressor;
+
+import com.thomaz.form.QualityTier;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdfwriter.compress.CompressParameters;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LosslessPdfCompressorTest {
+
+    private static final COSName FORM_FONT = COSName.getPDFName("F1");
+    private static final COSName APPEARANCE_FONT = COSName.getPDFName("F2");
+    private static final COSName UNUSED_FONT = COSName.getPDFName("F9");
+
+    @TempDir
+    Path dir;
+
+    // page 1 draws a form that shares the page's resource dictionary, page 2 has an appearance
+    // stream without resources of its own; only page 3's font is really unused
+    @Test
+    void keepsResourcesThatFormsAndAppearancesDrawWith() throws IOException {
+        final Path in = dir.resolve("in.pdf");
+        final Path out = dir.resolve("out.pdf");
+        try (PDDocument document = new PDDocument()) {
+            final COSDictionary shared = resources(FORM_FONT);
+            shared.setDirect(false);
+            final COSStream form = form(document, "BT /F1 12 Tf ET");
+            form.setItem(COSName.RESOURCES, shared);
+            final COSDictionary xobjects = new COSDictionary();
+            xobjects.setItem(COSName.getPDFName("Fm0"), form);
+            shared.setItem(COSName.XOBJECT, xobjects);
+            page(document, shared, "q /Fm0 Do Q");
+
+            final PDPage annotated = page(document, resources(APPEARANCE_FONT), "");
+            final COSDictionary appearance = new COSDictionary();
+            appearance.setItem(COSName.N, form(document, "BT /F2 12 Tf ET"));
+            final COSDictionary annotation = new COSDictionary();
+            annotation.setItem(COSName.TYPE, COSName.ANNOT);
+            annotation.setItem(COSName.SUBTYPE, COSName.getPDFName("Square"));
+            annotation.setItem(COSName.RECT, new PDRectangle(0, 0, 10, 10).getCOSArray());
+            annotation.setItem(COSName.AP, appearance);
+            final COSArray annotations = new COSArray();
+            annotations.add(annotation);
+            annotated.getCOSObject().setItem(COSName.ANNOTS, annotations);
+
+            page(document, resources(UNUSED_FONT), "");
+            document.save(in.toFile(), CompressParameters.NO_COMPRESSION);
+        }
+
+        new LosslessPdfCompressor().compress(in, out, QualityTier.ORIGINAL);
+
+        try (PDDocument document = Loader.loadPDF(out.toFile())) {
+            assertThat(fonts(document, 0).containsKey(FORM_FONT)).isTrue();
+            assertThat(fonts(document, 1).containsKey(APPEARANCE_FONT)).isTrue();
+            assertThat(fonts(document, 2).containsKey(UNUSED_FONT)).isFalse();
+        }
+    }
+
+    @Test
+    void reportsAFileItCannotRewriteInsteadOfFallingBack() throws IOException {
+        final Path in = Files.writeString(dir.resolve("broken.pdf"), "not a pdf");
+
+        assertThatThrownBy(() -> new LosslessPdfCompressor().compress(in, dir.resolve("out.pdf"), QualityTier.ORIGINAL))
+                .isInstanceOf(LosslessRewriteException.class)
+                .hasCauseInstanceOf(IOException.class);
+    }
+
+    private static PDPage page(PDDocument document, COSDictionary resources, String content) throws IOException {
+        final PDPage page = new PDPage();
+        page.setResources(new PDResources(resources));
+        page.setContents(new PDStream(document, new ByteArrayInputStream(content.getBytes(StandardCharsets.US_ASCII))));
+        document.addPage(page);
+        return page;
+    }
+
+    private static COSDictionary resources(COSName fontName) {
+        final COSDictionary font = new COSDictionary();
+        font.setItem(COSName.TYPE, COSName.FONT);
+        font.setItem(COSName.SUBTYPE, COSName.TYPE1);
+        font.setItem(COSName.BASE_FONT, COSName.getPDFName("Helvetica"));
+        final COSDictionary fonts = new COSDictionary();
+        fonts.setItem(fontName, font);
+        final COSDictionary resources = new COSDictionary();
+        resources.setItem(COSName.FONT, fonts);
+        return resources;
+    }
+
+    private static COSStream form(PDDocument document, String content) throws IOException {
+        final COSStream form = document.getDocument().createCOSStream();
+        form.setItem(COSName.TYPE, COSName.XOBJECT);
+        form.setItem(COSName.SUBTYPE, COSName.FORM);
+        form.setItem(COSName.BBOX, new PDRectangle(0, 0, 10, 10).getCOSArray());
+        try (OutputStream out = form.createOutputStream()) {
+            out.write(content.getBytes(StandardCharsets.US_ASCII));
+        }
+        return form;
+    }
+
+    private static COSDictionary fonts(PDDocument document, int page) {
+        return document.getPage(page).getResources().getCOSObject().getCOSDictionary(COSName.FONT);
+    }
+}